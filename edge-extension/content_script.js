@@ -159,11 +159,13 @@ function updateOutgoingVisibility() {
   outWrap.style.display = showOutgoing ? "block" : "none";
 }
 
-function setIncomingSubtitle(translation, transcript) {
+function setIncomingSubtitle(translation, transcript, partial) {
   ensureOverlay();
   const text = document.getElementById(OVERLAY_ID + "-in-text");
   const small = document.getElementById(OVERLAY_ID + "-in-small");
-  if (text) text.textContent = translation || "—";
+  // Partial updates arrive while the translation is still streaming: show what we have so far.
+  if (text) text.textContent = translation || (partial ? "…" : "—");
+  if (text) text.style.opacity = partial ? "0.8" : "1";
   if (small) small.textContent = transcript ? `Heard: ${transcript}` : "";
 }
 
@@ -195,7 +197,7 @@ chrome.runtime.onMessage.addListener((msg) => {
   if (ch === "outgoing") {
     setOutgoingSubtitle(msg.translation || "", msg.transcript || "");
   } else {
-    setIncomingSubtitle(msg.translation || "", msg.transcript || "");
+    setIncomingSubtitle(msg.translation || "", msg.transcript || "", !!msg.partial);
   }
 });
 
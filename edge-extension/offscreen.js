@@ -33,6 +33,42 @@ const VAD_ENABLED = true;
 const VAD_THRESHOLD = 0.015; // RMS in [0..1] (heuristic)
 const MUTE_MIC_DURING_TTS = true;
 
+// Incoming channel: use the SSE endpoint so the transcript shows up before the translation is done.
+// Falls back to the plain JSON endpoint if the bridge does not know the streaming route.
+const STREAM_SUBTITLES = true;
+let streamEndpointMissing = false;
+
+// Send audio chunks as the raw request body (languages in the query string) instead of base64-in-JSON.
+// Saves ~33% on the wire and several copies of every chunk on both sides. Set to false for old bridges.
+const RAW_AUDIO_UPLOAD = true;
+
+// Ask /tts for raw chunked audio ("stream": true) and start playback on the first bytes (MediaSource),
+// instead of waiting for the whole clip as base64 JSON. Older bridges answer JSON; that is still handled.
+const TTS_STREAM = true;
+
+// Ask the bridge to synthesize outgoing translations right away (needs TTS_PREFETCH=true on the bridge).
+// The answer then carries a ttsId, and /tts with that id usually finds the audio ready. Unused ids expire.
+const TTS_PREFETCH = true;
+
+// Follow the bridge's recommendedChunkSeconds: longer chunks while it is slow or busy, shorter ones when it
+// keeps up. The configured chunk length applies until the first hint arrives (and when this is false).
+const ADAPTIVE_CHUNKS = true;
+const chunkHints = { incoming: 0, outgoing: 0 };
+const concurrencyHints = { incoming: 0, outgoing: 0 };
+const chunksInFlight = { incoming: 0, outgoing: 0 };
+
+// Opt-in: one long-lived bridge session per channel instead of restarting MediaRecorder every few seconds.
+// Raw PCM frames are posted continuously and the bridge decides where segments end (pauses in speech),
+// so words are no longer cut at fixed chunk boundaries. Falls back to chunks if /session/open is missing.
+const SESSION_INGEST = false;
+// 0 = capture at the device's own rate and let the bridge resample (its PCM ingest); skips the
+// browser's resampler. A fixed rate (e.g. 16000) is needed for bridges without PCM ingest below 48 kHz.
+const SESSION_SAMPLE_RATE = 0;
+const SESSION_POST_MS = 250;
+
+let tabSession = null;
+let micSession = null;
+
 let tabMeter = null;
 let micMeter = null;
 let ttsPlaying = false;
@@ -56,6 +92,10 @@ let lastMicAt = 0;
 let lastSpokenNorm = "";
 let lastSpokenAt = 0;
 
+// Names this run to the bridge, which keeps the recent transcript per client channel and
+// does not translate repeats ("skipped": "repeat") or the overlapping start of a chunk.
+const CLIENT_ID = Math.random().toString(36).slice(2, 12);
+
 function status(kind, text, log) {
   chrome.runtime.sendMessage({ type: "STATUS", kind, text, log }).catch(() => {});
 }
@@ -164,46 +204,38 @@ async function setSinkIfSupported(el, deviceId) {
 
 async function playTtsAudio(base64, mime, sinkDeviceId) {
   if (!base64) return;
-
-  try {
-    if (audioEl) { audioEl.pause(); audioEl.src = ""; audioEl = null; }
-  } catch (_) {}
-
   const bytes = base64ToBytes(base64);
-  const blob = new Blob([bytes], { type: mime || "audio/mpeg" });
-  const url = URL.createObjectURL(blob);
-
-  audioEl = new Audio(url);
-  await setSinkIfSupported(audioEl, sinkDeviceId);
-  audioEl.onended = () => { try { URL.revokeObjectURL(url); } catch (_) {} };
-
-  // Guard against feedback loops: if mic is capturing a virtual cable output, it can hear its own TTS.
-  ttsPlaying = true;
-  audioEl.onended = () => {
-    ttsPlaying = false;
-    try { URL.revokeObjectURL(url); } catch (_) {}
-  };
-  audioEl.onerror = () => {
-    ttsPlaying = false;
-    try { URL.revokeObjectURL(url); } catch (_) {}
-  };
-
-  await audioEl.play().catch((e) => {
-    status("err", "TTS play blocked", String(e));
-    ttsPlaying = false;
-    try { URL.revokeObjectURL(url); } catch (_) {}
-  });
+  await playTtsBlob(new Blob([bytes], { type: mime || "audio/mpeg" }), sinkDeviceId);
 }
 
-async function requestTts(text) {
-  const payload = {
-    text: text,
+function ttsOptions() {
+  return {
     voice: ttsVoice || "onyx",
     model: "gpt-4o-mini-tts",
     response_format: "mp3",
     speed: ttsSpeed || 1.0,
     instructions: "Speak in a calm, low male voice."
   };
+}
+
+// captureTs: when the audio behind this text was recorded; the bridge skips synthesis once it is too old.
+// ttsId: a clip the bridge prefetched for this text (see TTS_PREFETCH).
+function ttsPayload(text, captureTs, ttsId) {
+  return { text: text, captureTs: captureTs, ...ttsOptions(), ...(ttsId ? { ttsId } : {}) };
+}
+
+// Lets the bridge drop a prefetched clip that will not be played.
+function cancelTts(ttsId) {
+  if (!ttsId) return;
+  fetch(`${serverUrl}/tts/cancel`, {
+    method: "POST",
+    headers: { "Content-Type": "application/json", "X-Auth-Token": authToken },
+    body: JSON.stringify({ ttsId })
+  }).catch(() => {});
+}
+
+async function requestTts(text, captureTs, ttsId) {
+  const payload = ttsPayload(text, captureTs, ttsId);
 
   const resp = await fetch(`${serverUrl}/tts`, {
     method: "POST",
@@ -219,36 +251,425 @@ async function requestTts(text) {
   return data;
 }
 
-async function transcribeAndTranslate(blob, sourceLang, targetLang) {
-  const base64 = await blobToBase64(blob);
+// Requests TTS and plays it; with TTS_STREAM the audio starts while the bridge is still receiving it.
+async function speak(text, sinkDeviceId, captureTs, ttsId) {
+  if (!TTS_STREAM) {
+    const tts = await requestTts(text, captureTs, ttsId);
+    if (tts) await playTtsAudio(tts.audioBase64, tts.audioMime, sinkDeviceId);
+    return;
+  }
+
+  const resp = await fetch(`${serverUrl}/tts`, {
+    method: "POST",
+    headers: { "Content-Type": "application/json", "X-Auth-Token": authToken },
+    body: JSON.stringify({ ...ttsPayload(text, captureTs, ttsId), stream: true })
+  });
+
+  const type = (resp.headers.get("Content-Type") || "").split(";")[0].trim().toLowerCase();
+  if (!resp.ok || type === "application/json") {
+    const data = await resp.json().catch(() => ({}));
+    if (!resp.ok) {
+      status("err", "TTS error", `HTTP ${resp.status}: ${JSON.stringify(data)}`);
+      return;
+    }
+    if (data.skipped === "stale") {
+      status("run", "Running", `TTS skipped: ${data.lagMs} ms behind`);
+      return;
+    }
+    // Bridge without streaming TTS: same JSON answer as requestTts().
+    await playTtsAudio(data.audioBase64, data.audioMime, sinkDeviceId);
+    return;
+  }
+
+  if (window.MediaSource && MediaSource.isTypeSupported(type)) {
+    await playTtsStream(resp, type, sinkDeviceId);
+  } else {
+    // Not appendable (e.g. wav/pcm/opus-in-ogg): play once the clip has arrived.
+    const blob = await resp.blob();
+    await playTtsBlob(blob, sinkDeviceId);
+  }
+}
+
+// Feeds a streamed audio response into a MediaSource and starts playing after the first chunk.
+async function playTtsStream(resp, mime, sinkDeviceId) {
+  try {
+    if (audioEl) { audioEl.pause(); audioEl.src = ""; audioEl = null; }
+  } catch (_) {}
 
+  const ms = new MediaSource();
+  const url = URL.createObjectURL(ms);
+  const el = new Audio(url);
+  audioEl = el;
+  await setSinkIfSupported(el, sinkDeviceId);
+
+  ttsPlaying = true;
+  const finish = () => {
+    ttsPlaying = false;
+    try { URL.revokeObjectURL(url); } catch (_) {}
+  };
+  el.onended = finish;
+  el.onerror = finish;
+
+  await new Promise((resolve) => ms.addEventListener("sourceopen", resolve, { once: true }));
+  const sb = ms.addSourceBuffer(mime);
+  const append = (chunk) => new Promise((resolve, reject) => {
+    sb.addEventListener("updateend", resolve, { once: true });
+    sb.addEventListener("error", reject, { once: true });
+    sb.appendBuffer(chunk);
+  });
+
+  const reader = resp.body.getReader();
+  let started = false;
+  try {
+    for (;;) {
+      const { value, done } = await reader.read();
+      if (done) break;
+      if (audioEl !== el) { reader.cancel().catch(() => {}); return; } // replaced by a newer clip
+      await append(value);
+      if (!started) {
+        started = true;
+        el.play().catch((e) => { status("err", "TTS play blocked", String(e)); finish(); });
+      }
+    }
+    if (ms.readyState === "open") ms.endOfStream();
+    if (!started) finish();
+  } catch (e) {
+    status("err", "TTS stream error", String(e));
+    finish();
+  }
+}
+
+async function playTtsBlob(blob, sinkDeviceId) {
+  try {
+    if (audioEl) { audioEl.pause(); audioEl.src = ""; audioEl = null; }
+  } catch (_) {}
+
+  const url = URL.createObjectURL(blob);
+  audioEl = new Audio(url);
+  await setSinkIfSupported(audioEl, sinkDeviceId);
+
+  // Guard against feedback loops: if mic is capturing a virtual cable output, it can hear its own TTS.
+  ttsPlaying = true;
+  const finish = () => {
+    ttsPlaying = false;
+    try { URL.revokeObjectURL(url); } catch (_) {}
+  };
+  audioEl.onended = finish;
+  audioEl.onerror = finish;
+
+  await audioEl.play().catch((e) => {
+    status("err", "TTS play blocked", String(e));
+    finish();
+  });
+}
+
+// POSTs one recorded chunk to a transcribe endpoint, as a raw body or as the legacy base64 JSON envelope.
+// channel ("incoming" or "outgoing") and captureTs (Date.now() when the chunk was recorded) let the bridge
+// serve the incoming channel first and drop chunks that waited too long ("skipped": "stale").
+async function postAudioChunk(path, blob, sourceLang, targetLang, channel, captureTs) {
   // Keep full mime; server will normalize it (and choose extension).
   const mime = (blob && blob.type) ? blob.type : "audio/ogg;codecs=opus";
+  // Outgoing translations are spoken, so the bridge may start synthesizing before we ask.
+  const prefetchTts = TTS_PREFETCH && channel === "outgoing";
+
+  if (RAW_AUDIO_UPLOAD) {
+    const qs = new URLSearchParams({
+      sourceLang: sourceLang || "auto",
+      targetLang: targetLang || "ru",
+      channel: channel || "incoming",
+      client: CLIENT_ID,
+      captureTs: String(captureTs || Date.now())
+    });
+    if (prefetchTts) {
+      const o = ttsOptions();
+      qs.set("tts", "1");
+      qs.set("ttsVoice", o.voice);
+      qs.set("ttsModel", o.model);
+      qs.set("ttsFormat", o.response_format);
+      qs.set("ttsSpeed", String(o.speed));
+      qs.set("ttsInstructions", o.instructions);
+    }
+    return fetch(`${serverUrl}${path}?${qs}`, {
+      method: "POST",
+      headers: { "Content-Type": mime, "X-Auth-Token": authToken },
+      body: blob
+    });
+  }
 
-  status("run", "Running", `Sending: ${blob.size} bytes, type=${mime || "?"}`);
-
+  const base64 = await blobToBase64(blob);
   const payload = {
     audioBase64: base64,
     audioMime: mime,
     sourceLang: sourceLang || "auto",
-    targetLang: targetLang || "ru"
+    targetLang: targetLang || "ru",
+    channel: channel || "incoming",
+    client: CLIENT_ID,
+    captureTs: captureTs || Date.now()
   };
-
-  const resp = await fetch(`${serverUrl}/transcribe-and-translate`, {
+  if (prefetchTts) payload.tts = ttsOptions();
+  return fetch(`${serverUrl}${path}`, {
     method: "POST",
     headers: { "Content-Type": "application/json", "X-Auth-Token": authToken },
     body: JSON.stringify(payload)
   });
+}
 
-  const data = await resp.json().catch(() => ({}));
+function hintKey(channel) {
+  return channel === "outgoing" ? "outgoing" : "incoming";
+}
+
+// Load hints from a bridge answer: chunk length (smoothed) and how many requests to keep open.
+function noteHints(channel, data) {
+  const key = hintKey(channel);
+  if (typeof data.recommendedChunkSeconds === "number") {
+    const prev = chunkHints[key];
+    chunkHints[key] = prev ? (prev + data.recommendedChunkSeconds) / 2 : data.recommendedChunkSeconds;
+  }
+  if (typeof data.recommendedConcurrency === "number") concurrencyHints[key] = data.recommendedConcurrency;
+}
+
+// 429: the chunk was turned away; record longer chunks, at least until the bridge's Retry-After.
+function noteBusy(channel, resp, data) {
+  const key = hintKey(channel);
+  noteHints(channel, data);
+  const retryAfter = Number(resp.headers.get("Retry-After")) || 0;
+  const current = chunkHints[key] || (key === "outgoing" ? micTxChunkSeconds : tabChunkSeconds);
+  chunkHints[key] = Math.max(current * 1.5, retryAfter);
+  status("run", "Running", `${key}: bridge busy, recording ${Math.round(Math.min(15, chunkHints[key]))} s chunks`);
+}
+
+// Recorder length for the next chunk of a channel, in ms (2-15 s).
+function chunkMs(channel, configuredSeconds) {
+  const key = hintKey(channel);
+  let seconds = (ADAPTIVE_CHUNKS && chunkHints[key]) || configuredSeconds;
+  // More chunks open than the bridge suggests: record longer ones so fewer are sent.
+  if (ADAPTIVE_CHUNKS && concurrencyHints[key] && chunksInFlight[key] >= concurrencyHints[key]) seconds *= 1.5;
+  return Math.max(2000, Math.min(15000, seconds * 1000));
+}
+
+async function transcribeAndTranslate(blob, sourceLang, targetLang, channel, captureTs) {
+  status("run", "Running", `Sending: ${blob.size} bytes, type=${blob.type || "?"}`);
+
+  const key = hintKey(channel);
+  chunksInFlight[key]++;
+  let resp, data;
+  try {
+    resp = await postAudioChunk("/transcribe-and-translate", blob, sourceLang, targetLang, channel, captureTs);
+    data = await resp.json().catch(() => ({}));
+  } finally {
+    chunksInFlight[key]--;
+  }
+  if (resp.status === 429) {
+    noteBusy(channel, resp, data);
+    return null;
+  }
+  noteHints(channel, data);
   if (!resp.ok) {
     status("err", "Bridge/API error", `HTTP ${resp.status}: ${JSON.stringify(data)}`);
     return null;
   }
+  if (data.skipped === "stale") {
+    // The bridge is behind; a late subtitle would only be confusing.
+    status("run", "Running", `${channel || "incoming"}: bridge dropped a stale chunk (${data.reason}, ${data.lagMs} ms behind)`);
+    return null;
+  }
+  if (data.skipped === "repeat") return null;
   status("run", "Running", `Received: transcriptLen=${(data.transcript||"").length}, translationLen=${(data.translation||"").length}`);
   return data;
 }
 
+// Reads a text/event-stream response body and calls onEvent(name, data) for every event.
+async function readSseEvents(resp, onEvent) {
+  const reader = resp.body.getReader();
+  const decoder = new TextDecoder();
+  let buf = "";
+  for (;;) {
+    const { value, done } = await reader.read();
+    if (done) break;
+    buf += decoder.decode(value, { stream: true });
+
+    let sep;
+    while ((sep = buf.indexOf("\n\n")) >= 0) {
+      const raw = buf.slice(0, sep);
+      buf = buf.slice(sep + 2);
+
+      let name = "message";
+      let data = "";
+      for (const line of raw.split("\n")) {
+        if (line.startsWith("event:")) name = line.slice(6).trim();
+        else if (line.startsWith("data:")) data += line.slice(5).trim();
+      }
+      let parsed = {};
+      try { parsed = data ? JSON.parse(data) : {}; } catch (_) {}
+      onEvent(name, parsed);
+    }
+  }
+}
+
+// Streaming variant of transcribeAndTranslate.
+// onTranscript(transcript) fires as soon as Whisper returns; onDelta(textSoFar) for every translation delta.
+// Resolves with the same { transcript, translation } shape as the JSON endpoint, or null on error.
+async function transcribeAndTranslateStream(blob, sourceLang, targetLang, captureTs, onTranscript, onDelta) {
+  status("run", "Running", `Sending (stream): ${blob.size} bytes, type=${blob.type || "?"}`);
+
+  chunksInFlight.incoming++;
+  try {
+    return await readTranscribeStream(blob, sourceLang, targetLang, captureTs, onTranscript, onDelta);
+  } finally {
+    chunksInFlight.incoming--;
+  }
+}
+
+async function readTranscribeStream(blob, sourceLang, targetLang, captureTs, onTranscript, onDelta) {
+  const resp = await postAudioChunk("/transcribe-and-translate-stream", blob, sourceLang, targetLang, "incoming", captureTs);
+
+  if (resp.status === 404) {
+    streamEndpointMissing = true;
+    return transcribeAndTranslate(blob, sourceLang, targetLang, "incoming", captureTs);
+  }
+  if (!resp.ok) {
+    const data = await resp.json().catch(() => ({}));
+    if (resp.status === 429) {
+      noteBusy("incoming", resp, data);
+      return null;
+    }
+    status("err", "Bridge/API error", `HTTP ${resp.status}: ${JSON.stringify(data)}`);
+    return null;
+  }
+
+  let transcript = "";
+  let translation = "";
+  let partial = "";
+  let failed = null;
+  let stale = null;
+  let repeat = false;
+
+  await readSseEvents(resp, (name, data) => {
+    if (data.skipped === "stale") stale = data;
+    if (data.skipped === "repeat") repeat = true;
+    if (name === "transcript") {
+      transcript = data.transcript || "";
+      if (onTranscript) onTranscript(transcript);
+    } else if (name === "translation-delta") {
+      partial += data.delta || "";
+      if (onDelta) onDelta(partial);
+    } else if (name === "translation") {
+      translation = data.translation || "";
+    } else if (name === "error") {
+      failed = data;
+    } else if (name === "done") {
+      noteHints("incoming", data);
+    }
+  });
+
+  if (failed) {
+    status("err", "Bridge/API error", JSON.stringify(failed));
+    return transcript ? { transcript, translation: "" } : null;
+  }
+  if (stale) {
+    status("run", "Running", `incoming: bridge dropped a stale chunk (${stale.reason}, ${stale.lagMs} ms behind)`);
+    return null;
+  }
+  if (repeat) return null;
+  status("run", "Running", `Received (stream): transcriptLen=${transcript.length}, translationLen=${translation.length}`);
+  return { transcript, translation };
+}
+
+// Opens a bridge session for one channel and streams the captured audio into it as s16le mono PCM.
+// handlers.onTranscript(data) / handlers.onTranslation(data) receive the session's SSE event payloads.
+// handlers.muted() may return true to send silence instead of the captured audio (e.g. during TTS).
+// Resolves with { stop } or null if the bridge does not support sessions.
+async function startPcmSession(stream, channel, sourceLang, targetLang, handlers) {
+  const ctx = SESSION_SAMPLE_RATE ? new AudioContext({ sampleRate: SESSION_SAMPLE_RATE }) : new AudioContext();
+  const rate = ctx.sampleRate;
+  const qs = new URLSearchParams({
+    channel,
+    sourceLang: sourceLang || "auto",
+    targetLang: targetLang || "ru",
+    sampleRate: String(rate)
+  });
+  let opened;
+  try {
+    const resp = await fetch(`${serverUrl}/session/open?${qs}`, { method: "POST", headers: { "X-Auth-Token": authToken } });
+    if (resp.status === 404) {
+      ctx.close().catch(() => {});
+      return null;
+    }
+    opened = await resp.json().catch(() => ({}));
+    if (!resp.ok) throw new Error(`session/open HTTP ${resp.status}: ${JSON.stringify(opened)}`);
+  } catch (e) {
+    ctx.close().catch(() => {});
+    throw e;
+  }
+  const id = encodeURIComponent(opened.sessionId);
+
+  await ctx.audioWorklet.addModule("pcm_worklet.js");
+  const src = ctx.createMediaStreamSource(stream);
+  const node = new AudioWorkletNode(ctx, "pcm-capture", { numberOfOutputs: 0 });
+  src.connect(node);
+
+  let pending = [];
+  let pendingBytes = 0;
+  let posting = false;
+  let stopped = false;
+
+  node.port.onmessage = (e) => {
+    if (stopped) return;
+    const block = (handlers.muted && handlers.muted()) ? new ArrayBuffer(e.data.byteLength) : e.data;
+    pending.push(new Uint8Array(block));
+    pendingBytes += block.byteLength;
+  };
+
+  // Posts are sequential so the bridge receives frames in capture order.
+  const flush = async () => {
+    if (posting || pendingBytes === 0) return;
+    posting = true;
+    const body = new Uint8Array(pendingBytes);
+    let off = 0;
+    for (const p of pending) { body.set(p, off); off += p.byteLength; }
+    pending = [];
+    pendingBytes = 0;
+    try {
+      const r = await fetch(`${serverUrl}/session/audio?id=${id}`, {
+        method: "POST",
+        headers: { "Content-Type": `audio/pcm;rate=${rate};channels=1`, "X-Auth-Token": authToken },
+        body
+      });
+      if (!r.ok && !stopped) status("err", "Session error", `${channel}: session/audio HTTP ${r.status}`);
+    } catch (e) {
+      if (!stopped) status("err", "Session error", `${channel}: ${String(e)}`);
+    } finally {
+      posting = false;
+    }
+  };
+  const timer = setInterval(flush, SESSION_POST_MS);
+
+  (async () => {
+    const r = await fetch(`${serverUrl}/session/events?id=${id}`, { headers: { "X-Auth-Token": authToken } });
+    if (!r.ok) throw new Error(`session/events HTTP ${r.status}`);
+    await readSseEvents(r, (name, data) => {
+      if (name === "transcript" && handlers.onTranscript) handlers.onTranscript(data);
+      else if (name === "translation" && handlers.onTranslation) handlers.onTranslation(data);
+      else if (name === "error") status("err", "Bridge/API error", JSON.stringify(data));
+      else if (name === "dropped") status("run", "Running", `${channel}: bridge dropped segment ${data.segment} (${data.reason || "backlog"})`);
+    });
+  })().catch(e => { if (!stopped) status("err", "Session error", `${channel}: ${String(e)}`); });
+
+  status("run", "Running", `${channel}: session ${opened.sessionId} @ ${rate} Hz` + (opened.segmentRate && opened.segmentRate !== rate ? ` (bridge resamples to ${opened.segmentRate} Hz)` : ""));
+
+  return {
+    stop: async () => {
+      clearInterval(timer);
+      try { src.disconnect(); } catch (_) {}
+      try { node.port.onmessage = null; } catch (_) {}
+      try { await flush(); } catch (_) {}
+      stopped = true;
+      try { await fetch(`${serverUrl}/session/close?id=${id}`, { method: "POST", headers: { "X-Auth-Token": authToken } }); } catch (_) {}
+      try { await ctx.close(); } catch (_) {}
+    }
+  };
+}
+
 // Prefer OGG/Opus first, then WebM/Opus.
 function pickMimeType() {
   const candidates = [
@@ -267,6 +688,25 @@ async function startTabCapture(streamId) {
   const constraints = { audio: { mandatory: { chromeMediaSource: "tab", chromeMediaSourceId: streamId } }, video: false };
   tabStream = await navigator.mediaDevices.getUserMedia(constraints);
   tabMeter = createLevelMeter(tabStream);
+
+  if (SESSION_INGEST) {
+    tabSession = await startPcmSession(tabStream, "incoming", tabSourceLang, tabTargetLang, {
+      onTranscript: (d) => {
+        const transcript = (d.transcript || "").trim();
+        if (!transcript) return;
+        chrome.runtime.sendMessage({ type: "SUBTITLE", tabId, channel: "incoming", translation: "", transcript, partial: true, ts: Date.now() }).catch(() => {});
+      },
+      onTranslation: (d) => {
+        if (d.skipped === "repeat") return;
+        const transcript = (d.transcript || "").trim();
+        const translation = (d.translation || "").trim();
+        if (!transcript && !translation) return;
+        chrome.runtime.sendMessage({ type: "SUBTITLE", tabId, channel: "incoming", translation, transcript, ts: Date.now() }).catch(() => {});
+      }
+    });
+    if (tabSession) return;
+    status("run", "Running", "Bridge has no /session endpoints; using recorder chunks.");
+  }
   await startTabRecorder();
 }
 
@@ -278,13 +718,42 @@ async function startTabRecorder() {
 
   tabRecorder.ondataavailable = async (ev) => {
     if (!ev.data || ev.data.size === 0) return;
+    const captureTs = Date.now();
 
     if (VAD_ENABLED && tabMeter && tabMeter.getPeak() < VAD_THRESHOLD) {
       // Skip likely silence chunks to reduce random hallucinations.
       return;
     }
 
-    const data = await transcribeAndTranslate(ev.data, tabSourceLang, tabTargetLang);
+    if (STREAM_SUBTITLES && !streamEndpointMissing) {
+      // Dedupe on the transcript as soon as it arrives; a duplicate suppresses the partial and final subtitle.
+      let duplicate = false;
+      let shownTranscript = "";
+      const data = await transcribeAndTranslateStream(ev.data, tabSourceLang, tabTargetLang, captureTs,
+        (t) => {
+          shownTranscript = (t || "").trim();
+          if (!shownTranscript) return;
+          const now = Date.now();
+          const norm = normalizeForDedupe(shownTranscript);
+          if (isNearDuplicate(norm, lastTabNorm, now, lastTabAt)) { duplicate = true; return; }
+          lastTabNorm = norm; lastTabAt = now;
+          chrome.runtime.sendMessage({ type: "SUBTITLE", tabId, channel: "incoming", translation: "", transcript: shownTranscript, partial: true, ts: now }).catch(() => {});
+        },
+        (soFar) => {
+          if (duplicate || !shownTranscript) return;
+          chrome.runtime.sendMessage({ type: "SUBTITLE", tabId, channel: "incoming", translation: soFar, transcript: shownTranscript, partial: true, ts: Date.now() }).catch(() => {});
+        });
+      if (!data || duplicate) return;
+
+      const transcript = (data.transcript || "").trim();
+      const translation = (data.translation || "").trim();
+      if (!transcript && !translation) return;
+
+      chrome.runtime.sendMessage({ type: "SUBTITLE", tabId, channel: "incoming", translation, transcript, ts: Date.now() }).catch(() => {});
+      return;
+    }
+
+    const data = await transcribeAndTranslate(ev.data, tabSourceLang, tabTargetLang, "incoming", captureTs);
     if (!data) return;
 
     const transcript = (data.transcript || "").trim();
@@ -306,7 +775,7 @@ async function startTabRecorder() {
   tabRecorder.start();
   if (tabStopTimer) clearTimeout(tabStopTimer);
   tabStopTimer = setTimeout(() => { try { if (tabRecorder && tabRecorder.state !== "inactive") tabRecorder.stop(); } catch (_) {} },
-    Math.max(2000, Math.min(15000, tabChunkSeconds * 1000)));
+    chunkMs("incoming", tabChunkSeconds));
 }
 
 async function startMicCapture() {
@@ -314,6 +783,14 @@ async function startMicCapture() {
   if (micDeviceId) audio.deviceId = { exact: micDeviceId };
   micStream = await navigator.mediaDevices.getUserMedia({ audio, video: false });
   micMeter = createLevelMeter(micStream);
+
+  if (SESSION_INGEST) {
+    micSession = await startPcmSession(micStream, "outgoing", micTxSourceLang, micTxTargetLang, {
+      muted: () => MUTE_MIC_DURING_TTS && ttsPlaying,
+      onTranslation: (d) => { if (d.skipped !== "repeat") deliverMicResult(d).catch(e => status("err", "TTS error", String(e))); }
+    });
+    if (micSession) return;
+  }
   await startMicRecorder();
 }
 
@@ -332,6 +809,7 @@ async function startMicRecorder() {
 
   micRecorder.ondataavailable = async (ev) => {
     if (!ev.data || ev.data.size === 0) return;
+    const captureTs = Date.now();
 
     if (MUTE_MIC_DURING_TTS && ttsPlaying) {
       // Prevent "talking to itself" loops.
@@ -342,29 +820,9 @@ async function startMicRecorder() {
       return;
     }
 
-    const data = await transcribeAndTranslate(ev.data, micTxSourceLang, micTxTargetLang);
+    const data = await transcribeAndTranslate(ev.data, micTxSourceLang, micTxTargetLang, "outgoing", captureTs);
     if (!data) return;
-
-    const transcript = (data.transcript || "").trim();
-    const translation = (data.translation || "").trim();
-    if (!transcript && !translation) return;
-
-    const now = Date.now();
-    const norm = normalizeForDedupe(transcript);
-    if (isNearDuplicate(norm, lastMicNorm, now, lastMicAt)) return;
-    lastMicNorm = norm; lastMicAt = now;
-
-    if (showOutgoingSubtitles) {
-      chrome.runtime.sendMessage({ type: "SUBTITLE", tabId, channel: "outgoing", translation, transcript: "YOU: " + transcript, ts: now }).catch(() => {});
-    }
-
-    if (!translation) return;
-    const tNorm = normalizeForDedupe(translation);
-    if (isNearDuplicate(tNorm, lastSpokenNorm, now, lastSpokenAt)) return;
-    lastSpokenNorm = tNorm; lastSpokenAt = now;
-
-    const tts = await requestTts(translation);
-    if (tts) await playTtsAudio(tts.audioBase64, tts.audioMime, ttsSinkDeviceId);
+    await deliverMicResult(data, captureTs);
   };
 
   micRecorder.onstop = () => {
@@ -374,7 +832,32 @@ async function startMicRecorder() {
   micRecorder.start();
   if (micStopTimer) clearTimeout(micStopTimer);
   micStopTimer = setTimeout(() => { try { if (micRecorder && micRecorder.state !== "inactive") micRecorder.stop(); } catch (_) {} },
-    Math.max(2000, Math.min(15000, micTxChunkSeconds * 1000)));
+    chunkMs("outgoing", micTxChunkSeconds));
+}
+
+// Outgoing result (from a recorder chunk or a session segment): optional subtitle, then TTS into the virtual mic.
+async function deliverMicResult(data, captureTs) {
+  const transcript = (data.transcript || "").trim();
+  const translation = (data.translation || "").trim();
+  if (!transcript && !translation) return;
+  // Every early return below means the prefetched clip (if any) will not be played.
+  const skip = () => cancelTts(data.ttsId);
+
+  const now = Date.now();
+  const norm = normalizeForDedupe(transcript);
+  if (isNearDuplicate(norm, lastMicNorm, now, lastMicAt)) return skip();
+  lastMicNorm = norm; lastMicAt = now;
+
+  if (showOutgoingSubtitles) {
+    chrome.runtime.sendMessage({ type: "SUBTITLE", tabId, channel: "outgoing", translation, transcript: "YOU: " + transcript, ts: now }).catch(() => {});
+  }
+
+  if (!translation) return skip();
+  const tNorm = normalizeForDedupe(translation);
+  if (isNearDuplicate(tNorm, lastSpokenNorm, now, lastSpokenAt)) return skip();
+  lastSpokenNorm = tNorm; lastSpokenAt = now;
+
+  await speak(translation, ttsSinkDeviceId, captureTs, data.ttsId);
 }
 
 async function stopAll() {
@@ -386,6 +869,10 @@ async function stopAll() {
   try { if (tabRecorder && tabRecorder.state !== "inactive") tabRecorder.stop(); } catch (_) {}
   try { if (micRecorder && micRecorder.state !== "inactive") micRecorder.stop(); } catch (_) {}
 
+  try { if (tabSession) await tabSession.stop(); } catch (_) {}
+  try { if (micSession) await micSession.stop(); } catch (_) {}
+  tabSession = null; micSession = null;
+
   try { if (tabStream) for (const t of tabStream.getTracks()) t.stop(); } catch (_) {}
   try { if (micStream) for (const t of micStream.getTracks()) t.stop(); } catch (_) {}
 
@@ -413,6 +900,9 @@ chrome.runtime.onMessage.addListener((msg, sender, sendResponse) => {
         tabSourceLang = msg.sourceLang || "auto";
         tabTargetLang = msg.targetLang || "ru";
         tabChunkSeconds = msg.chunkSeconds || 5;
+        // Hints describe the bridge as it was; a new run starts from the configured lengths.
+        chunkHints.incoming = chunkHints.outgoing = 0;
+        concurrencyHints.incoming = concurrencyHints.outgoing = 0;
 
         ttsEnabled = !!msg.ttsEnabled;
         ttsVoice = msg.ttsVoice || "onyx";
@@ -430,6 +920,7 @@ chrome.runtime.onMessage.addListener((msg, sender, sendResponse) => {
         lastTabNorm = ""; lastTabAt = 0;
         lastMicNorm = ""; lastMicAt = 0;
         lastSpokenNorm = ""; lastSpokenAt = 0;
+        streamEndpointMissing = false;
 
         if (!serverUrl || !authToken || !msg.streamId) {
           status("err", "Missing config", "serverUrl/authToken/streamId is missing.");
@@ -0,0 +1,33 @@
+// AudioWorklet for session ingest: downmixes the input to mono s16le PCM and posts it to the main thread
+// in ~128 ms blocks (at the context's sample rate). Loaded by offscreen.js via audioWorklet.addModule().
+class PcmCaptureProcessor extends AudioWorkletProcessor {
+  constructor() {
+    super();
+    this.block = new Int16Array(2048);
+    this.fill = 0;
+  }
+
+  process(inputs) {
+    const input = inputs[0];
+    if (!input || input.length === 0) return true;
+
+    const channels = input.length;
+    const frames = input[0].length;
+    for (let i = 0; i < frames; i++) {
+      let sum = 0;
+      for (let c = 0; c < channels; c++) sum += input[c][i];
+      let v = sum / channels;
+      if (v > 1) v = 1; else if (v < -1) v = -1;
+      this.block[this.fill++] = v < 0 ? v * 0x8000 : v * 0x7fff;
+
+      if (this.fill === this.block.length) {
+        const out = this.block.buffer.slice(0);
+        this.port.postMessage(out, [out]);
+        this.fill = 0;
+      }
+    }
+    return true;
+  }
+}
+
+registerProcessor("pcm-capture", PcmCaptureProcessor);
@@ -1,5 +1,7 @@
 plugins {
     application
+    // JMH benchmarks in src/jmh/java: ./gradlew jmh
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 repositories {
@@ -25,3 +27,22 @@ tasks.jar {
         attributes["Main-Class"] = "local.meettranslator.Main"
     }
 }
+
+// AppCDS archive for fast on-demand startup (same as mvn -Pcds): ./gradlew cdsArchive
+// Training run of the jar: free port, warm-up, exit; no upstream calls.
+tasks.register<JavaExec>("cdsArchive") {
+    dependsOn(tasks.jar)
+    classpath = files(tasks.jar) + configurations.runtimeClasspath.get()
+    mainClass.set("local.meettranslator.Main")
+    args("--cds-training")
+    jvmArgs(
+        "-XX:ArchiveClassesAtExit=${layout.buildDirectory.get().asFile}/local-meet-bridge.jsa",
+        "-Xlog:cds=off",
+        "-Xlog:cds+dynamic=off",
+    )
+}
+
+jmh {
+    jmhVersion.set("1.37")
+    profilers.add("gc")
+}
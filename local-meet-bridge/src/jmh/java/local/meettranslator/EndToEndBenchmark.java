@@ -0,0 +1,185 @@
+package local.meettranslator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The whole bridge in one JVM: Main.main() is started against an in-process stub of the
+ * OpenAI API (transcriptions, responses, speech), and requests go through real sockets.
+ *
+ * The translation cache is off so every request pays for a translate call. The stub does no
+ * work beyond draining the upload, so the numbers are the bridge's own overhead. Note that
+ * -prof gc also counts the stub's allocations (it runs in the same JVM).
+ *
+ * Run with allocation profiling (this class has a main that adds the GC profiler):
+ *   java -cp target/benchmarks.jar local.meettranslator.EndToEndBenchmark
+ * or
+ *   java -jar target/benchmarks.jar EndToEndBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class EndToEndBenchmark {
+
+    private static final String TOKEN = "bench";
+    private static final int CHUNK_BYTES = 80_000; // ~5 s of Opus at 128 kbit/s
+    private static final int TTS_BYTES = 48_000;   // ~3 s of mp3
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private HttpServer stub;
+    private HttpClient http;
+    private String bridge;
+
+    private byte[] chunk;
+    private byte[] envelope;
+    private byte[] ttsRequest;
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        // The JDK HttpServer leaves Nagle on by default, so each response waits for the client's delayed
+        // ACK (~40 ms per hop). A real upstream does not stall like that. The property is read once, when the
+        // first server starts, so it applies to the bridge in this JVM as well.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        stub = startStub(mapper);
+        int port = freePort();
+
+        System.setProperty("OPENAI_API_KEY", "bench");
+        System.setProperty("OPENAI_BASE_URL", "http://127.0.0.1:" + stub.getAddress().getPort());
+        System.setProperty("LOCAL_MEET_TRANSLATOR_PORT", Integer.toString(port));
+        System.setProperty("LOCAL_MEET_TRANSLATOR_TOKEN", TOKEN);
+        System.setProperty("ENABLE_TTS", "true");
+        System.setProperty("TRANSLATION_CACHE_SIZE", "0");
+        Main.main(new String[0]);
+
+        bridge = "http://127.0.0.1:" + port;
+        http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+
+        chunk = new byte[CHUNK_BYTES];
+        new Random(42).nextBytes(chunk);
+        envelope = mapper.writeValueAsBytes(mapper.createObjectNode()
+                .put("audioBase64", Base64.getEncoder().encodeToString(chunk))
+                .put("audioMime", "audio/webm;codecs=opus")
+                .put("sourceLang", "en")
+                .put("targetLang", "ru"));
+        ttsRequest = mapper.writeValueAsBytes(mapper.createObjectNode()
+                .put("text", "Let's move on to the next item on the agenda."));
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        // The bridge has no stop hook; the forked JVM exits after the trial.
+        stub.stop(0);
+    }
+
+    @Benchmark
+    public byte[] transcribeRaw() throws Exception {
+        return post("/transcribe-and-translate?sourceLang=en&targetLang=ru", "audio/webm;codecs=opus", chunk);
+    }
+
+    @Benchmark
+    public byte[] transcribeJsonEnvelope() throws Exception {
+        return post("/transcribe-and-translate", "application/json", envelope);
+    }
+
+    @Benchmark
+    public byte[] tts() throws Exception {
+        return post("/tts", "application/json", ttsRequest);
+    }
+
+    private byte[] post(String path, String contentType, byte[] body) throws Exception {
+        HttpResponse<byte[]> resp = http.send(HttpRequest.newBuilder(URI.create(bridge + path))
+                .header("X-Auth-Token", TOKEN)
+                .header("Content-Type", contentType)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build(), HttpResponse.BodyHandlers.ofByteArray());
+        if (resp.statusCode() != 200) {
+            throw new IllegalStateException(path + ": HTTP " + resp.statusCode() + " " + new String(resp.body(), StandardCharsets.UTF_8));
+        }
+        return resp.body();
+    }
+
+    // -------------------- Stub upstream --------------------
+
+    /** The OpenAI stub on a free port; StartupCheck uses it as well. */
+    static HttpServer startStub(ObjectMapper mapper) throws IOException {
+        HttpServer s = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        byte[] transcription = "{\"text\":\"Let's move on to the next item on the agenda.\"}".getBytes(StandardCharsets.UTF_8);
+        byte[] responses = ResponsesParsingBenchmark.responsesPayload(mapper, "Давайте перейдём к следующему пункту повестки.")
+                .getBytes(StandardCharsets.UTF_8);
+        byte[] speech = new byte[TTS_BYTES];
+        new Random(7).nextBytes(speech);
+
+        s.createContext("/v1/audio/transcriptions", ex -> reply(ex, "application/json", transcription));
+        s.createContext("/v1/responses", ex -> reply(ex, "application/json", responses));
+        s.createContext("/v1/audio/speech", ex -> reply(ex, "audio/mpeg", speech));
+        s.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        s.start();
+        return s;
+    }
+
+    private static void reply(HttpExchange ex, String contentType, byte[] body) throws IOException {
+        try (InputStream in = ex.getRequestBody()) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        ex.getResponseHeaders().set("Content-Type", contentType);
+        ex.sendResponseHeaders(200, body.length);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket s = new ServerSocket(0)) {
+            return s.getLocalPort();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(EndToEndBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(opt).run();
+    }
+}
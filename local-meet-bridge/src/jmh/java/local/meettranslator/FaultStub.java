@@ -0,0 +1,162 @@
+package local.meettranslator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stub of the OpenAI API (transcriptions, responses, speech) that misbehaves on request,
+ * for exercising UpstreamGuard through the whole bridge:
+ *
+ *  - retryAfter(n, ms): the next n calls answer 503 with retry-after-ms, then it recovers;
+ *  - down(ms): every call answers 503 with retry-after-ms until healthy() is called;
+ *  - stalls(p, ms): each call stalls for ms with probability p before answering normally.
+ *
+ * GET /v1/models (the bridge's pre-connect and keep-alive) always answers, so a fault does not turn
+ * into a startup failure. The fault can be changed while the bridge is running.
+ */
+final class FaultStub implements AutoCloseable {
+
+    private static final int TTS_BYTES = 48_000;
+
+    private enum Fault { NONE, RETRY_AFTER, DOWN, STALLS }
+
+    private final HttpServer server;
+
+    private volatile Fault fault = Fault.NONE;
+    private volatile long retryAfterMs;
+    private volatile double stallChance;
+    private volatile long stallMs;
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong stalled = new AtomicLong();
+
+    private FaultStub(HttpServer server) {
+        this.server = server;
+    }
+
+    static FaultStub start() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        byte[] transcription = "{\"text\":\"Let's move on to the next item on the agenda.\"}".getBytes(StandardCharsets.UTF_8);
+        byte[] responses = ResponsesParsingBenchmark.responsesPayload(mapper, "Давайте перейдём к следующему пункту повестки.")
+                .getBytes(StandardCharsets.UTF_8);
+        byte[] speech = new byte[TTS_BYTES];
+        new Random(7).nextBytes(speech);
+
+        HttpServer s = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        FaultStub stub = new FaultStub(s);
+        s.createContext("/v1/models", ex -> reply(ex, "application/json", "{\"data\":[]}".getBytes(StandardCharsets.UTF_8)));
+        s.createContext("/v1/audio/transcriptions", ex -> stub.answer(ex, "application/json", transcription));
+        s.createContext("/v1/responses", ex -> stub.answer(ex, "application/json", responses));
+        s.createContext("/v1/audio/speech", ex -> stub.answer(ex, "audio/mpeg", speech));
+        s.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        s.start();
+        return stub;
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    void healthy() {
+        fault = Fault.NONE;
+    }
+
+    void retryAfter(int failures, long retryAfterMs) {
+        this.retryAfterMs = retryAfterMs;
+        failuresLeft.set(failures);
+        fault = Fault.RETRY_AFTER;
+    }
+
+    void down(long retryAfterMs) {
+        this.retryAfterMs = retryAfterMs;
+        fault = Fault.DOWN;
+    }
+
+    void stalls(double chance, long stallMs) {
+        this.stallChance = chance;
+        this.stallMs = stallMs;
+        fault = Fault.STALLS;
+    }
+
+    /** Calls to the transcription, responses and speech endpoints so far. */
+    long calls() {
+        return calls.get();
+    }
+
+    long failed() {
+        return failed.get();
+    }
+
+    long stalled() {
+        return stalled.get();
+    }
+
+    private void answer(HttpExchange ex, String contentType, byte[] body) throws IOException {
+        calls.incrementAndGet();
+        switch (fault) {
+            case RETRY_AFTER -> {
+                if (failuresLeft.getAndDecrement() > 0) {
+                    unavailable(ex);
+                    return;
+                }
+            }
+            case DOWN -> {
+                unavailable(ex);
+                return;
+            }
+            case STALLS -> {
+                if (ThreadLocalRandom.current().nextDouble() < stallChance) {
+                    stalled.incrementAndGet();
+                    try {
+                        Thread.sleep(stallMs);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+            case NONE -> {
+            }
+        }
+        reply(ex, contentType, body);
+    }
+
+    private void unavailable(HttpExchange ex) throws IOException {
+        failed.incrementAndGet();
+        ex.getResponseHeaders().set("retry-after-ms", Long.toString(retryAfterMs));
+        reply(ex, 503, "application/json", "{\"error\":{\"message\":\"overloaded\"}}".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void reply(HttpExchange ex, String contentType, byte[] body) throws IOException {
+        reply(ex, 200, contentType, body);
+    }
+
+    private static void reply(HttpExchange ex, int status, String contentType, byte[] body) throws IOException {
+        try (InputStream in = ex.getRequestBody()) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        ex.getResponseHeaders().set("Content-Type", contentType);
+        ex.sendResponseHeaders(status, body.length);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,111 @@
+package local.meettranslator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allocation per Whisper upload: the old ByteArrayOutputStream multipart + ofByteArray
+ * versus the composed MultipartBody publisher. Both variants are drained the way the
+ * HttpClient would drain them.
+ *
+ * Run with the GC profiler to see bytes allocated per request:
+ *   mvn -Pbench -DskipTests clean package
+ *   java -jar target/benchmarks.jar MultipartBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MultipartBenchmark {
+
+    @Param({"80000", "1000000", "12000000"})
+    int audioBytes;
+
+    private byte[] audio;
+    private MultipartBody multipart;
+
+    @Setup
+    public void setup() {
+        audio = new byte[audioBytes];
+        new Random(42).nextBytes(audio);
+        multipart = new MultipartBody("----LocalMeetTranslatorBoundaryBENCHMARK", "whisper-1");
+    }
+
+    @Benchmark
+    public void legacyByteArray(Blackhole bh) throws IOException {
+        byte[] body = legacyBuildMultipart("----LocalMeetTranslatorBoundaryBENCHMARK", audio, "audio/webm", "whisper-1");
+        drain(HttpRequest.BodyPublishers.ofByteArray(body), bh);
+    }
+
+    @Benchmark
+    public void composedPublisher(Blackhole bh) {
+        drain(multipart.publisher(audio, 0, audio.length, "audio/webm"), bh);
+    }
+
+    static void drain(HttpRequest.BodyPublisher publisher, Blackhole bh) {
+        publisher.subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                s.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                bh.consume(item.remaining());
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                throw new IllegalStateException(t);
+            }
+
+            @Override
+            public void onComplete() {
+                bh.consume(true);
+            }
+        });
+    }
+
+    /** The multipart builder as it was before MultipartBody, kept here as the baseline. */
+    static byte[] legacyBuildMultipart(String boundary, byte[] audioBytes, String audioMime, String model) throws IOException {
+        String filename = "audio" + MultipartBody.guessExt(audioMime);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        out.write(("--" + boundary + "\r\n").getBytes(StandardCharsets.UTF_8));
+        out.write(("Content-Disposition: form-data; name=\"model\"\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        out.write(model.getBytes(StandardCharsets.UTF_8));
+        out.write("\r\n".getBytes(StandardCharsets.UTF_8));
+
+        out.write(("--" + boundary + "\r\n").getBytes(StandardCharsets.UTF_8));
+        out.write(("Content-Disposition: form-data; name=\"file\"; filename=\"" + filename + "\"\r\n").getBytes(StandardCharsets.UTF_8));
+        out.write(("Content-Type: " + audioMime + "\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        out.write(audioBytes);
+        out.write("\r\n".getBytes(StandardCharsets.UTF_8));
+
+        out.write(("--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,107 @@
+package local.meettranslator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-request work the bridge does on its own side, one stage at a time:
+ *  - readBodyLimited on a request body of audioBytes (raw upload or JSON envelope)
+ *  - Jackson parsing of the {"audioBase64": ...} envelope down to the base64 string
+ *  - base64 decode of the audio and base64 encode of a TTS answer of the same size
+ *  - readAudioEnvelope: the streaming parse + decode that replaces the three steps above
+ *  - writeJson of the /tts response ({"audioMime", "audioBase64"})
+ *
+ *   java -jar target/benchmarks.jar RequestPathBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestPathBenchmark {
+
+    @Param({"1000000", "4000000", "12000000"})
+    int audioBytes;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private byte[] audio;
+    private byte[] envelope;
+    private String audioBase64;
+    private ObjectNode ttsResponse;
+
+    @Setup
+    public void setup() throws IOException {
+        audio = new byte[audioBytes];
+        new Random(42).nextBytes(audio);
+        audioBase64 = Base64.getEncoder().encodeToString(audio);
+
+        envelope = mapper.writeValueAsBytes(mapper.createObjectNode()
+                .put("audioBase64", audioBase64)
+                .put("audioMime", "audio/webm;codecs=opus")
+                .put("sourceLang", "en")
+                .put("targetLang", "ru"));
+
+        ttsResponse = mapper.createObjectNode()
+                .put("audioMime", "audio/mpeg")
+                .put("audioBase64", audioBase64);
+    }
+
+    @Benchmark
+    public byte[] readBodyRaw() throws IOException {
+        return Main.readBodyLimited(new BenchExchange("POST", "/transcribe-and-translate", audio), Main.MAX_AUDIO_BODY_BYTES);
+    }
+
+    @Benchmark
+    public byte[] readBodyEnvelope() throws IOException {
+        // The envelope is ~4/3 of the audio; the limit is raised so 12 MB of audio still fits.
+        return Main.readBodyLimited(new BenchExchange("POST", "/transcribe-and-translate", envelope), Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public String parseEnvelope() throws IOException {
+        JsonNode req = mapper.readTree(envelope);
+        return req.path("audioBase64").asText("");
+    }
+
+    @Benchmark
+    public int readAudioEnvelope() throws IOException {
+        return Main.readAudioEnvelope(new ByteArrayInputStream(envelope), envelope.length).audioLength();
+    }
+
+    @Benchmark
+    public byte[] base64Decode() {
+        return Base64.getDecoder().decode(audioBase64);
+    }
+
+    @Benchmark
+    public String base64Encode() {
+        return Base64.getEncoder().encodeToString(audio);
+    }
+
+    @Benchmark
+    public long writeJsonTts() throws IOException {
+        BenchExchange ex = new BenchExchange("POST", "/tts", new byte[0]);
+        Main.writeJson(ex, 200, ttsResponse);
+        return ex.responseBytes();
+    }
+}
@@ -0,0 +1,128 @@
+package local.meettranslator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing /v1/responses answers: readTree of the whole body plus extractOutputText.
+ *
+ * Payload shapes follow real answers: a reasoning item before the message, annotations and
+ * logprobs arrays, usage details. "sentence" is a typical subtitle, "paragraph" a long
+ * utterance, "batch" a TRANSLATE_BATCH_MAX=8 JSON-array answer.
+ *
+ *   java -jar target/benchmarks.jar ResponsesParsingBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponsesParsingBenchmark {
+
+    @Param({"sentence", "paragraph", "batch"})
+    String shape;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private byte[] body;
+    private JsonNode parsed;
+
+    @Setup
+    public void setup() throws IOException {
+        String text = switch (shape) {
+            case "sentence" -> "Давайте перейдём к следующему пункту повестки.";
+            case "paragraph" -> ("Хорошо, тогда я коротко подведу итоги: мы согласовали бюджет на третий квартал, "
+                    + "перенесли запуск на две недели и договорились, что команда поддержки получит доступ к "
+                    + "новой панели до конца месяца. ").repeat(4);
+            case "batch" -> "[\"Да, я вас слышу.\",\"Подождите секунду.\",\"Можете повторить?\",\"Отлично, спасибо.\","
+                    + "\"Я пришлю ссылку в чат.\",\"Видно мой экран?\",\"Давайте начнём.\",\"До встречи!\"]";
+            default -> throw new IllegalArgumentException(shape);
+        };
+        body = responsesPayload(mapper, text).getBytes(StandardCharsets.UTF_8);
+        parsed = mapper.readTree(body);
+    }
+
+    @Benchmark
+    public String parseAndExtract() throws IOException {
+        return Main.OpenAiClient.extractOutputText(mapper.readTree(body));
+    }
+
+    @Benchmark
+    public String extractOnly() {
+        return Main.OpenAiClient.extractOutputText(parsed);
+    }
+
+    /** A /v1/responses answer with the given output_text, shaped like the real API. */
+    static String responsesPayload(ObjectMapper mapper, String outputText) throws IOException {
+        String quoted = mapper.writeValueAsString(outputText);
+        return """
+                {
+                  "id": "resp_67ccd2bed1ec8190b14f964abc0542670bb6a6b452d3795b",
+                  "object": "response",
+                  "created_at": 1741476542,
+                  "status": "completed",
+                  "error": null,
+                  "incomplete_details": null,
+                  "instructions": null,
+                  "max_output_tokens": null,
+                  "model": "gpt-4o-mini-2024-07-18",
+                  "output": [
+                    {
+                      "type": "reasoning",
+                      "id": "rs_67ccd2bf17f0819081ff3bb2cf6508e60bb6a6b452d3795b",
+                      "summary": []
+                    },
+                    {
+                      "type": "message",
+                      "id": "msg_67ccd2bf17f0819081ff3bb2cf6508e60bb6a6b452d3795b",
+                      "status": "completed",
+                      "role": "assistant",
+                      "content": [
+                        {
+                          "type": "output_text",
+                          "text": %s,
+                          "annotations": [],
+                          "logprobs": []
+                        }
+                      ]
+                    }
+                  ],
+                  "parallel_tool_calls": true,
+                  "previous_response_id": null,
+                  "reasoning": { "effort": null, "summary": null },
+                  "store": true,
+                  "temperature": 0.0,
+                  "text": { "format": { "type": "text" } },
+                  "tool_choice": "auto",
+                  "tools": [],
+                  "top_p": 1.0,
+                  "truncation": "disabled",
+                  "usage": {
+                    "input_tokens": 96,
+                    "input_tokens_details": { "cached_tokens": 0 },
+                    "output_tokens": 42,
+                    "output_tokens_details": { "reasoning_tokens": 0 },
+                    "total_tokens": 138
+                  },
+                  "user": null,
+                  "metadata": {}
+                }
+                """.formatted(quoted);
+    }
+}
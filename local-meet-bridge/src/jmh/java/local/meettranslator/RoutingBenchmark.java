@@ -0,0 +1,74 @@
+package local.meettranslator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BackendRouter in front of in-process FakeBackends without latency: what ranking and bookkeeping
+ * cost per call, next to calling one backend directly.
+ *
+ * "flaky" adds a second backend that fails one call in five, so part of the calls also pay for a
+ * failover.
+ *
+ *   java -jar target/benchmarks.jar RoutingBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class RoutingBenchmark {
+
+    @Param({"1", "3", "flaky"})
+    String backends;
+
+    private FakeBackend direct;
+    private BackendRouter router;
+
+    @Setup
+    public void setup() {
+        EnumSet<SpeechBackend.Capability> all = EnumSet.allOf(SpeechBackend.Capability.class);
+        direct = new FakeBackend("direct", all, 0, 0, 0);
+        List<BackendRouter.Route> routes = new ArrayList<>();
+        switch (backends) {
+            case "1" -> routes.add(new BackendRouter.Route(new FakeBackend("a", all, 0, 0, 0), 1));
+            case "3" -> {
+                for (String n : List.of("a", "b", "c")) routes.add(new BackendRouter.Route(new FakeBackend(n, all, 0, 0, 0), 1));
+            }
+            case "flaky" -> {
+                routes.add(new BackendRouter.Route(new FakeBackend("flaky", all, 0, 0, 0.2), 2));
+                routes.add(new BackendRouter.Route(new FakeBackend("steady", all, 0, 0, 0), 1));
+            }
+            default -> throw new IllegalArgumentException(backends);
+        }
+        router = new BackendRouter(routes);
+    }
+
+    @Benchmark
+    public String directTranslate() throws IOException {
+        return direct.translateText("en", "ru", "Can you hear me?");
+    }
+
+    @Benchmark
+    public String routedTranslate() throws IOException {
+        return router.translateText("en", "ru", "Can you hear me?");
+    }
+}
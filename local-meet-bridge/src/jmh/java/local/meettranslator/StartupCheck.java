@@ -0,0 +1,130 @@
+package local.meettranslator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Cold-start timings of the bridge against the EndToEndBenchmark stub, each run in a fresh JVM:
+ *
+ *  - listening: from starting the java process until the port accepts a connection;
+ *  - first:     the first /transcribe-and-translate (raw 80 KB chunk) after that, cold paths included;
+ *  - second:    the next one, for comparison.
+ *
+ * Not a JMH benchmark: JMH cannot time a JVM's own start. The child runs Main from this classpath;
+ * extra arguments are passed to its JVM, so an AppCDS archive can be compared with none:
+ *
+ *   java -cp target/benchmarks.jar local.meettranslator.StartupCheck 5
+ *   java -cp target/benchmarks.jar local.meettranslator.StartupCheck 5 -XX:SharedArchiveFile=target/local-meet-bridge.jsa
+ */
+public class StartupCheck {
+
+    private static final String TOKEN = "startup";
+    private static final int CHUNK_BYTES = 80_000;
+    private static final long LISTEN_TIMEOUT_MS = 30_000;
+
+    public static void main(String[] args) throws Exception {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        List<String> jvmArgs = args.length > 1 ? Arrays.asList(args).subList(1, args.length) : List.of();
+
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        HttpServer stub = EndToEndBenchmark.startStub(new ObjectMapper());
+        byte[] chunk = new byte[CHUNK_BYTES];
+        new Random(42).nextBytes(chunk);
+        HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+
+        long[] listening = new long[runs];
+        long[] first = new long[runs];
+        long[] second = new long[runs];
+        try {
+            for (int i = 0; i < runs; i++) {
+                int port = freePort();
+                List<String> cmd = new ArrayList<>();
+                cmd.add(ProcessHandle.current().info().command().orElse("java"));
+                cmd.addAll(jvmArgs);
+                cmd.addAll(List.of("-cp", System.getProperty("java.class.path"), "local.meettranslator.Main"));
+                ProcessBuilder pb = new ProcessBuilder(cmd)
+                        .redirectErrorStream(true)
+                        .redirectOutput(ProcessBuilder.Redirect.to(new File(System.getProperty("java.io.tmpdir"), "startup-check-bridge.log")));
+                pb.environment().put("OPENAI_API_KEY", "startup");
+                pb.environment().put("OPENAI_BASE_URL", "http://127.0.0.1:" + stub.getAddress().getPort());
+                pb.environment().put("LOCAL_MEET_TRANSLATOR_PORT", Integer.toString(port));
+                pb.environment().put("LOCAL_MEET_TRANSLATOR_TOKEN", TOKEN);
+                pb.environment().put("TRANSLATION_CACHE_SIZE", "0");
+
+                long t = System.nanoTime();
+                Process bridge = pb.start();
+                try {
+                    awaitListening(port, bridge);
+                    listening[i] = (System.nanoTime() - t) / 1_000_000;
+                    first[i] = transcribe(http, port, chunk);
+                    second[i] = transcribe(http, port, chunk);
+                } finally {
+                    bridge.destroy();
+                    bridge.waitFor();
+                }
+                System.out.printf("run %d: listening %d ms, first request %d ms, second %d ms%n", i + 1, listening[i], first[i], second[i]);
+            }
+        } finally {
+            stub.stop(0);
+        }
+        System.out.printf("median: listening %d ms, first request %d ms, second %d ms%n",
+                median(listening), median(first), median(second));
+    }
+
+    private static void awaitListening(int port, Process bridge) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + LISTEN_TIMEOUT_MS;
+        while (true) {
+            try (Socket s = new Socket()) {
+                s.connect(new InetSocketAddress("127.0.0.1", port), 100);
+                return;
+            } catch (IOException notYet) {
+                if (!bridge.isAlive()) throw new IOException("Bridge exited with " + bridge.exitValue() + " before listening");
+                if (System.currentTimeMillis() > deadline) throw new IOException("Bridge not listening after " + LISTEN_TIMEOUT_MS + " ms");
+                Thread.sleep(2);
+            }
+        }
+    }
+
+    /** One raw-body request; returns its latency in ms. */
+    private static long transcribe(HttpClient http, int port, byte[] chunk) throws IOException, InterruptedException {
+        long t = System.nanoTime();
+        HttpResponse<byte[]> resp = http.send(HttpRequest.newBuilder(
+                        URI.create("http://127.0.0.1:" + port + "/transcribe-and-translate?sourceLang=en&targetLang=ru"))
+                .header("X-Auth-Token", TOKEN)
+                .header("Content-Type", "audio/webm;codecs=opus")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(chunk))
+                .build(), HttpResponse.BodyHandlers.ofByteArray());
+        if (resp.statusCode() != 200) throw new IOException("HTTP " + resp.statusCode() + " " + new String(resp.body()));
+        return (System.nanoTime() - t) / 1_000_000;
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket s = new ServerSocket(0)) {
+            return s.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package local.meettranslator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The bridge's upstream resilience (UpstreamGuard) against a FaultStub, through /translate-text:
+ *
+ *  1. retry-after: two 503 answers with retry-after-ms, then success -> the client sees one 200;
+ *  2. stalls: one call in ten stalls for 3 s -> hedged requests keep the tail near the normal latency;
+ *  3. down: every call 503 -> the breaker opens and fails fast without calling the stub, then one
+ *     probe after OPENAI_BREAKER_OPEN_MS closes it once the stub is healthy again.
+ *
+ * One bridge (Main.main) in this JVM, configured through system properties. Exits with 1 if a check fails.
+ *
+ *   java -cp target/benchmarks.jar local.meettranslator.UpstreamFaultCheck
+ */
+public class UpstreamFaultCheck {
+
+    private static final String TOKEN = "fault";
+    private static final long BREAKER_OPEN_MS = 2_000;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final FaultStub stub;
+    private final String bridge;
+    private int text;
+    private boolean failed;
+
+    private UpstreamFaultCheck(FaultStub stub, String bridge) {
+        this.stub = stub;
+        this.bridge = bridge;
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        FaultStub stub = FaultStub.start();
+        int port = freePort();
+
+        System.setProperty("OPENAI_API_KEY", "fault");
+        System.setProperty("OPENAI_BASE_URL", stub.baseUrl());
+        System.setProperty("LOCAL_MEET_TRANSLATOR_PORT", Integer.toString(port));
+        System.setProperty("LOCAL_MEET_TRANSLATOR_TOKEN", TOKEN);
+        System.setProperty("TRANSLATION_CACHE_SIZE", "0");
+        System.setProperty("TRANSLATE_BATCH_WINDOW_MS", "0");
+        System.setProperty("WARMUP_ITERATIONS", "0");
+        System.setProperty("OPENAI_MAX_RETRIES", "2");
+        System.setProperty("OPENAI_BREAKER_FAILURES", "5");
+        System.setProperty("OPENAI_BREAKER_OPEN_MS", Long.toString(BREAKER_OPEN_MS));
+        System.setProperty("OPENAI_HEDGE_TRANSLATE", "true");
+        Main.main(new String[0]);
+
+        UpstreamFaultCheck check = new UpstreamFaultCheck(stub, "http://127.0.0.1:" + port);
+        check.retryAfter();
+        check.stalls();
+        check.down();
+        stub.close();
+        System.out.println(check.failed ? "FAILED" : "OK");
+        System.exit(check.failed ? 1 : 0);
+    }
+
+    private void retryAfter() throws Exception {
+        System.out.println("== retry-after: two 503 with retry-after-ms=200, then success");
+        stub.retryAfter(2, 200);
+        long before = stub.calls();
+        long t = System.nanoTime();
+        int status = translate();
+        long ms = (System.nanoTime() - t) / 1_000_000;
+        System.out.printf("   HTTP %d in %d ms, %d upstream calls%n", status, ms, stub.calls() - before);
+        expect(status == 200, "answered 200");
+        expect(stub.calls() - before == 3, "three upstream calls (two retries)");
+        expect(ms >= 400, "waited retry-after-ms before each retry");
+        stub.healthy();
+        System.out.println("   guard: " + guard());
+    }
+
+    private void stalls() throws Exception {
+        System.out.println("== stalls: 10% of calls stall for 3 s, translate hedged after p95");
+        stub.healthy();
+        for (int i = 0; i < 30; i++) translate(); // latency samples for the p95
+        stub.stalls(0.1, 3_000);
+        List<Long> latencies = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            long t = System.nanoTime();
+            int status = translate();
+            latencies.add((System.nanoTime() - t) / 1_000_000);
+            expect(status == 200, "answered 200");
+        }
+        stub.healthy();
+        Collections.sort(latencies);
+        long p50 = latencies.get(49);
+        long p99 = latencies.get(98);
+        JsonNode g = guard();
+        System.out.printf("   p50 %d ms, p99 %d ms, max %d ms; %d calls stalled%n", p50, p99, latencies.get(99), stub.stalled());
+        System.out.println("   guard: " + g);
+        expect(g.path("hedges").asLong() > 0, "hedged at least once");
+        expect(p99 < 1_500, "p99 well below the 3 s stall");
+    }
+
+    private void down() throws Exception {
+        System.out.println("== down: every call 503; breaker opens, then a probe closes it");
+        stub.down(100);
+        int status = 0;
+        int requests = 0;
+        while (requests < 20) {
+            requests++;
+            status = translate();
+            if (status == 503) break;
+        }
+        long before = stub.calls();
+        long t = System.nanoTime();
+        int fast = translate();
+        long ms = (System.nanoTime() - t) / 1_000_000;
+        System.out.printf("   breaker open after %d requests; next one HTTP %d in %d ms, %d upstream calls%n",
+                requests, fast, ms, stub.calls() - before);
+        expect(status == 503 && fast == 503, "fails fast with 503");
+        expect(stub.calls() == before, "no upstream call while open");
+        expect(guard().path("breakerOpen").asBoolean(), "breakerOpen on /health");
+
+        stub.healthy();
+        Thread.sleep(BREAKER_OPEN_MS + 200);
+        int probe = translate();
+        JsonNode g = guard();
+        System.out.printf("   after %d ms: probe HTTP %d%n", BREAKER_OPEN_MS, probe);
+        System.out.println("   guard: " + g);
+        expect(probe == 200, "probe answered 200");
+        expect(!g.path("breakerOpen").asBoolean(), "breaker closed again");
+    }
+
+    private int translate() throws IOException, InterruptedException {
+        byte[] body = mapper.writeValueAsBytes(mapper.createObjectNode()
+                .put("text", "Let's move on to item " + (++text) + " on the agenda.")
+                .put("sourceLang", "en")
+                .put("targetLang", "ru"));
+        HttpResponse<Void> resp = http.send(HttpRequest.newBuilder(URI.create(bridge + "/translate-text"))
+                .header("X-Auth-Token", TOKEN)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build(), HttpResponse.BodyHandlers.discarding());
+        return resp.statusCode();
+    }
+
+    /** The translate guard of the (only) backend on /health. */
+    private JsonNode guard() throws IOException, InterruptedException {
+        HttpResponse<byte[]> resp = http.send(HttpRequest.newBuilder(URI.create(bridge + "/health"))
+                .header("X-Auth-Token", TOKEN)
+                .build(), HttpResponse.BodyHandlers.ofByteArray());
+        JsonNode guards = mapper.readTree(resp.body()).path("upstreamGuard");
+        return guards.elements().hasNext() ? guards.elements().next().path("translate") : mapper.createObjectNode();
+    }
+
+    private void expect(boolean ok, String what) {
+        if (!ok) {
+            failed = true;
+            System.out.println("   FAIL: " + what);
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket s = new ServerSocket(0)) {
+            return s.getLocalPort();
+        }
+    }
+}
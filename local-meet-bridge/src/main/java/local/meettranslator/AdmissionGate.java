@@ -0,0 +1,145 @@
+package local.meettranslator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admission control for one kind of client request, in front of its EndpointLimiter.
+ *
+ * At most slots + maxQueued requests are admitted at a time: slots talk to the upstream, the rest
+ * wait for a slot. Anything beyond that is turned away before its body is read, with a Retry-After
+ * estimated from recent latency, instead of piling up in the limiter queue until it goes stale.
+ *
+ * Latency is upstream time only (waiting for a slot plus the upstream call), added up per request
+ * over its upstream calls; requests answered without one (silence, dedupe, caches, translation memory)
+ * are not sampled, so they do not pull the estimate down.
+ *
+ * The same latency drives the hints for the extension: how long its audio chunks should be so that
+ * one chunk is answered before the next one is recorded (recommendedChunkSeconds), and how many
+ * requests it may have open at once (recommendedConcurrency).
+ */
+final class AdmissionGate {
+
+    private static final double ALPHA = 0.2;
+    private static final double CHUNK_HEADROOM = 1.25;
+    private static final long MIN_RETRY_AFTER_MS = 1_000;
+    private static final long MAX_RETRY_AFTER_MS = 30_000;
+
+    /** One admitted request; close() when it is done. */
+    final class Pass implements AutoCloseable {
+        private long upstreamNanos; // guarded by "this"
+        private boolean closed;
+
+        /** Adds an upstream call that took nanos (slot wait included); sampled once, on close(). */
+        synchronized void upstream(long nanos) {
+            if (nanos > 0) upstreamNanos += nanos;
+        }
+
+        /** Adds the time since sinceNanos (a System.nanoTime()) as an upstream call. */
+        void upstreamSince(long sinceNanos) {
+            upstream(System.nanoTime() - sinceNanos);
+        }
+
+        @Override
+        public void close() {
+            long nanos;
+            synchronized (this) {
+                if (closed) return;
+                closed = true;
+                nanos = upstreamNanos;
+            }
+            if (nanos > 0) sample(nanos);
+            leave();
+        }
+    }
+
+    private final String name;
+    private final int slots;
+    private final int maxQueued;
+
+    // Guarded by "this".
+    private int inFlight;
+    private double latencyMs = -1;
+
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /** maxQueued < 0 admits everything (hints only). */
+    AdmissionGate(String name, int slots, int maxQueued) {
+        this.name = name;
+        this.slots = Math.max(1, slots);
+        this.maxQueued = maxQueued;
+    }
+
+    String name() {
+        return name;
+    }
+
+    /** Admits a request, or returns null if the gate is full. */
+    synchronized Pass enter() {
+        if (maxQueued >= 0 && inFlight >= slots + maxQueued) {
+            rejected.incrementAndGet();
+            return null;
+        }
+        inFlight++;
+        admitted.incrementAndGet();
+        return new Pass();
+    }
+
+    private synchronized void leave() {
+        inFlight--;
+    }
+
+    private synchronized void sample(long nanos) {
+        double ms = nanos / 1_000_000.0;
+        latencyMs = latencyMs < 0 ? ms : latencyMs + ALPHA * (ms - latencyMs);
+    }
+
+    /** Roughly when a slot frees up: one recent request time per round of slots ahead of the caller. */
+    synchronized long retryAfterMillis() {
+        if (latencyMs < 0) return MIN_RETRY_AFTER_MS;
+        int rounds = Math.max(1, (inFlight - slots) / slots + 1);
+        return Math.max(MIN_RETRY_AFTER_MS, Math.min(MAX_RETRY_AFTER_MS, Math.round(latencyMs * rounds)));
+    }
+
+    /**
+     * Adds recommendedChunkSeconds and recommendedConcurrency, once there is a latency to go by.
+     *
+     * A chunk should take a little longer to record than to answer (recent latency plus headroom); when
+     * requests already queue for slots, proportionally longer, so fewer and larger requests are sent.
+     * Rounded to half seconds within [minChunkSeconds, maxChunkSeconds].
+     */
+    void putHints(ObjectNode json, double minChunkSeconds, double maxChunkSeconds) {
+        double latency;
+        int busy;
+        synchronized (this) {
+            latency = latencyMs;
+            busy = inFlight;
+        }
+        if (latency < 0) return;
+        double load = Math.max(1.0, (double) busy / slots);
+        double chunk = latency / 1000.0 * CHUNK_HEADROOM * load;
+        chunk = Math.max(minChunkSeconds, Math.min(maxChunkSeconds, Math.ceil(chunk * 2) / 2));
+        json.put("recommendedChunkSeconds", chunk);
+        // The caller's own request is in flight too.
+        json.put("recommendedConcurrency", Math.max(1, slots - Math.max(0, busy - 1)));
+    }
+
+    ObjectNode statsJson(ObjectMapper mapper) {
+        int busy;
+        double latency;
+        synchronized (this) {
+            busy = inFlight;
+            latency = latencyMs;
+        }
+        return mapper.createObjectNode()
+                .put("inFlight", busy)
+                .put("slots", slots)
+                .put("maxQueued", maxQueued)
+                .put("admitted", admitted.get())
+                .put("rejected", rejected.get())
+                .put("latencyMs", latency < 0 ? 0 : Math.round(latency));
+    }
+}
@@ -0,0 +1,246 @@
+package local.meettranslator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Sends each call to the backend that is doing best at that kind of work right now, and to the next
+ * one if it fails.
+ *
+ * Per backend and capability the router keeps an EWMA of the latency of successful calls and of the
+ * error rate (0/1 per call). Candidates are ranked by
+ *
+ *     score = (latencyMs + 1) * (1 + ERROR_PENALTY * errorRate) / weight
+ *
+ * lowest first; a backend without samples yet scores 0, so every backend is tried early on. A backend
+ * that has not been used for PROBE_MS is moved to the front once, so a backend that was slow or down a
+ * minute ago gets a chance to show it has recovered (a backend whose breaker is still open fails fast
+ * and costs almost nothing).
+ *
+ * A failed call (IOException) is retried on the next candidate, unless part of the work already
+ * reached the caller (a streamed upload, or translation deltas already handed out). A
+ * BatchFormatException is the model's answer, not a backend failure, and is passed through.
+ */
+final class BackendRouter implements SpeechBackend {
+
+    private static final double ALPHA = 0.2;
+    private static final double ERROR_PENALTY = 10.0;
+    private static final long PROBE_MS = 30_000;
+
+    /** One configured backend; weight > 1 makes it preferred at equal latency. */
+    record Route(SpeechBackend backend, double weight) {
+    }
+
+    @FunctionalInterface
+    private interface Call<T> {
+        T run(SpeechBackend backend) throws IOException;
+    }
+
+    private static final class Stats {
+        // Guarded by "this".
+        double latencyMs = -1;
+        double errorRate;
+        long lastUsedMillis;
+
+        final AtomicLong calls = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+
+        synchronized double score(double weight) {
+            if (latencyMs < 0) return 0;
+            return (latencyMs + 1) * (1 + ERROR_PENALTY * errorRate) / weight;
+        }
+
+        synchronized boolean isStale(long now) {
+            return latencyMs >= 0 && now - lastUsedMillis > PROBE_MS;
+        }
+
+        synchronized void touch(long now) {
+            lastUsedMillis = now;
+        }
+
+        synchronized void success(long nanos) {
+            double ms = nanos / 1_000_000.0;
+            latencyMs = latencyMs < 0 ? ms : latencyMs + ALPHA * (ms - latencyMs);
+            errorRate += ALPHA * (0 - errorRate);
+        }
+
+        synchronized void failure() {
+            errorRate += ALPHA * (1 - errorRate);
+            // A backend that never answered still needs a latency, or it would keep scoring 0.
+            if (latencyMs < 0) latencyMs = 1_000;
+        }
+    }
+
+    private final List<Route> routes;
+    private final Map<Capability, List<Stats>> stats = new EnumMap<>(Capability.class);
+    private final Set<Capability> capabilities = EnumSet.noneOf(Capability.class);
+    private final AtomicLong failovers = new AtomicLong();
+
+    BackendRouter(List<Route> routes) {
+        if (routes.isEmpty()) throw new IllegalArgumentException("At least one backend is required");
+        this.routes = List.copyOf(routes);
+        for (Capability c : Capability.values()) {
+            List<Stats> perRoute = new ArrayList<>(routes.size());
+            for (int i = 0; i < routes.size(); i++) perRoute.add(new Stats());
+            stats.put(c, perRoute);
+        }
+        for (Route r : routes) capabilities.addAll(r.backend().capabilities());
+    }
+
+    @Override
+    public String name() {
+        return "router";
+    }
+
+    @Override
+    public Set<Capability> capabilities() {
+        return capabilities;
+    }
+
+    List<Route> routes() {
+        return routes;
+    }
+
+    // -------------------- SpeechBackend --------------------
+
+    @Override
+    public String transcribe(byte[] audio, int offset, int length, String audioMime) throws IOException {
+        return call(Capability.TRANSCRIBE, true, b -> b.transcribe(audio, offset, length, audioMime));
+    }
+
+    @Override
+    public String transcribe(InputStream audio, long length, String audioMime) throws IOException {
+        // The body is consumed by the first attempt.
+        return call(Capability.TRANSCRIBE, false, b -> b.transcribe(audio, length, audioMime));
+    }
+
+    @Override
+    public String translateText(String sourceLang, String targetLang, String text) throws IOException {
+        return call(Capability.TRANSLATE, true, b -> b.translateText(sourceLang, targetLang, text));
+    }
+
+    @Override
+    public List<String> translateBatch(String sourceLang, String targetLang, List<String> texts) throws IOException {
+        return call(Capability.TRANSLATE, true, b -> b.translateBatch(sourceLang, targetLang, texts));
+    }
+
+    @Override
+    public String translateTextStreaming(String sourceLang, String targetLang, String text, SpeechBackend.DeltaListener onDelta)
+            throws IOException {
+        boolean[] delivered = new boolean[1];
+        SpeechBackend.DeltaListener tracking = delta -> {
+            delivered[0] = true;
+            onDelta.onDelta(delta);
+        };
+        return call(Capability.TRANSLATE, () -> !delivered[0],
+                b -> b.translateTextStreaming(sourceLang, targetLang, text, tracking));
+    }
+
+    @Override
+    public byte[] ttsAudio(SpeechBackend.TtsParams p) throws IOException {
+        return call(Capability.TTS, true, b -> b.ttsAudio(p));
+    }
+
+    @Override
+    public InputStream ttsAudioStream(SpeechBackend.TtsParams p) throws IOException {
+        // Backends throw before returning the stream, so nothing has reached the caller yet.
+        return call(Capability.TTS, true, b -> b.ttsAudioStream(p));
+    }
+
+    // -------------------- Routing --------------------
+
+    private <T> T call(Capability c, boolean failover, Call<T> call) throws IOException {
+        return call(c, () -> failover, call);
+    }
+
+    private <T> T call(Capability c, BooleanSupplier mayFailOver, Call<T> call) throws IOException {
+        List<Integer> order = rank(c);
+        if (order.isEmpty()) throw new IOException("No backend is configured for " + c.label());
+        List<Stats> perRoute = stats.get(c);
+        for (int n = 0; ; n++) {
+            int i = order.get(n);
+            Stats s = perRoute.get(i);
+            s.calls.incrementAndGet();
+            long t = System.nanoTime();
+            try {
+                T result = call.run(routes.get(i).backend());
+                s.success(System.nanoTime() - t);
+                return result;
+            } catch (SpeechBackend.BatchFormatException e) {
+                s.success(System.nanoTime() - t);
+                throw e;
+            } catch (IOException e) {
+                s.errors.incrementAndGet();
+                s.failure();
+                if (n + 1 >= order.size() || !mayFailOver.getAsBoolean()) throw e;
+                failovers.incrementAndGet();
+                System.err.println("Backend " + routes.get(i).backend().name() + " failed (" + c.label() + "): "
+                        + e.getMessage() + "; trying " + routes.get(order.get(n + 1)).backend().name());
+            }
+        }
+    }
+
+    /** Indexes of the routes that can do c, best first. */
+    private List<Integer> rank(Capability c) {
+        List<Stats> perRoute = stats.get(c);
+        List<Integer> order = new ArrayList<>(routes.size());
+        for (int i = 0; i < routes.size(); i++) {
+            if (routes.get(i).backend().capabilities().contains(c)) order.add(i);
+        }
+        if (order.size() <= 1) return order;
+
+        double[] scores = new double[routes.size()];
+        for (int i : order) scores[i] = perRoute.get(i).score(routes.get(i).weight());
+        order.sort(Comparator.comparingDouble(i -> scores[i]));
+
+        long now = System.currentTimeMillis();
+        for (int k = 1; k < order.size(); k++) {
+            int i = order.get(k);
+            if (perRoute.get(i).isStale(now)) {
+                order.remove(k);
+                order.add(0, i);
+                break;
+            }
+        }
+        perRoute.get(order.get(0)).touch(now);
+        return order;
+    }
+
+    // -------------------- Stats --------------------
+
+    ObjectNode statsJson(ObjectMapper mapper) {
+        ObjectNode json = mapper.createObjectNode().put("failovers", failovers.get());
+        ObjectNode all = json.putObject("backends");
+        for (int i = 0; i < routes.size(); i++) {
+            Route r = routes.get(i);
+            ObjectNode b = all.putObject(r.backend().name()).put("weight", r.weight());
+            for (Capability c : r.backend().capabilities()) {
+                Stats s = stats.get(c).get(i);
+                double latency;
+                double errorRate;
+                synchronized (s) {
+                    latency = s.latencyMs;
+                    errorRate = s.errorRate;
+                }
+                b.putObject(c.label())
+                        .put("calls", s.calls.get())
+                        .put("errors", s.errors.get())
+                        .put("latencyMs", latency < 0 ? 0 : Math.round(latency))
+                        .put("errorRate", Math.round(errorRate * 1000) / 1000.0);
+            }
+        }
+        return json;
+    }
+}
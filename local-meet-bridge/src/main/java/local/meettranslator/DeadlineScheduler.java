@@ -0,0 +1,189 @@
+package local.meettranslator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deadlines and priorities for upstream work.
+ *
+ * Every request gets a Ticket: its lane (which channel it serves) and a deadline, the capture time
+ * of its audio plus the lane's maximum age. The EndpointLimiters hand free slots to the most urgent
+ * lane first and, within a lane, to the earliest deadline. A request whose deadline passes before it
+ * gets a slot, or that is pushed out of a full lane queue by newer audio of the same channel, is not
+ * sent upstream at all: it fails with a StaleException and the handler answers "skipped": "stale".
+ *
+ * Under overload the bridge therefore drops old chunks instead of queueing them, and the lag of what
+ * it does deliver stays bounded by the lane's maximum age.
+ *
+ * Lanes, most urgent first:
+ *  - incoming: the other participants (tab audio), what the subtitles are for
+ *  - outgoing: the user's microphone
+ *  - tts:      speech synthesis of the outgoing translation
+ */
+final class DeadlineScheduler {
+
+    enum Lane {
+        INCOMING, OUTGOING, TTS;
+
+        /** Lane of a channel name as sent by the extension; unknown or missing means incoming. */
+        static Lane of(String channel) {
+            if (channel == null) return INCOMING;
+            return switch (channel.trim().toLowerCase(Locale.ROOT)) {
+                case "outgoing", "mic" -> OUTGOING;
+                case "tts" -> TTS;
+                default -> INCOMING;
+            };
+        }
+
+        String label() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * One request's place in line.
+     *
+     * @param captureMillis  wall-clock time the audio was captured (arrival time if the client did not say)
+     * @param deadlineMillis after this the result is no longer worth producing; Long.MAX_VALUE = never
+     */
+    record Ticket(Lane lane, long captureMillis, long deadlineMillis) {
+
+        long ageMillis() {
+            return System.currentTimeMillis() - captureMillis;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() >= deadlineMillis;
+        }
+
+        /** The ticket of a batch: most urgent lane, oldest capture, and the latest deadline of its items. */
+        static Ticket merge(Iterable<Ticket> tickets) {
+            Ticket merged = null;
+            for (Ticket t : tickets) {
+                if (t == null) continue;
+                if (merged == null) {
+                    merged = t;
+                    continue;
+                }
+                merged = new Ticket(
+                        t.lane().ordinal() < merged.lane().ordinal() ? t.lane() : merged.lane(),
+                        Math.min(t.captureMillis(), merged.captureMillis()),
+                        Math.max(t.deadlineMillis(), merged.deadlineMillis()));
+            }
+            return merged;
+        }
+    }
+
+    /** The request was dropped before it reached the upstream. reason: "deadline" or "superseded". */
+    static final class StaleException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Ticket ticket; // only meaningful in this process
+        private final String reason;
+
+        private StaleException(Ticket ticket, String reason) {
+            super(ticket.lane().label() + " request dropped (" + reason + ", " + ticket.ageMillis() + " ms after capture)");
+            this.ticket = ticket;
+            this.reason = reason;
+        }
+
+        Ticket ticket() {
+            return ticket;
+        }
+
+        String reason() {
+            return reason;
+        }
+    }
+
+    /** A client clock this far ahead of ours is not trusted; the arrival time is used instead. */
+    private static final long MAX_CLOCK_SKEW_MS = 5_000;
+
+    private final long[] maxAgeMillis = new long[Lane.values().length];
+    private final int maxQueuedPerLane;
+
+    private final AtomicLong[] admitted = counters();
+    private final AtomicLong[] expired = counters();
+    private final AtomicLong[] superseded = counters();
+    private final Metrics.Histogram[] admittedAge = new Metrics.Histogram[Lane.values().length];
+
+    /**
+     * The max ages say how long after capture a request of that lane is still worth sending upstream
+     * (0 = no deadline, priority only).
+     *
+     * @param maxQueuedPerLane waiting requests of one lane per limiter; a newer one pushes the oldest out (0 = no cap)
+     */
+    DeadlineScheduler(long incomingMaxAgeMs, long outgoingMaxAgeMs, long ttsMaxAgeMs, int maxQueuedPerLane) {
+        maxAgeMillis[Lane.INCOMING.ordinal()] = Math.max(0, incomingMaxAgeMs);
+        maxAgeMillis[Lane.OUTGOING.ordinal()] = Math.max(0, outgoingMaxAgeMs);
+        maxAgeMillis[Lane.TTS.ordinal()] = Math.max(0, ttsMaxAgeMs);
+        this.maxQueuedPerLane = Math.max(0, maxQueuedPerLane);
+        for (Lane lane : Lane.values()) {
+            admittedAge[lane.ordinal()] = Main.METRICS.histogram("local_meet_scheduler_age_seconds",
+                    "Time from audio capture until the request got an upstream slot", "lane", lane.label());
+        }
+    }
+
+    private static AtomicLong[] counters() {
+        AtomicLong[] a = new AtomicLong[Lane.values().length];
+        for (int i = 0; i < a.length; i++) a[i] = new AtomicLong();
+        return a;
+    }
+
+    /**
+     * Ticket for a request of the given channel.
+     *
+     * @param captureMillis epoch ms when the audio was captured (the extension's Date.now()); 0 or less = now
+     */
+    Ticket ticket(String channel, long captureMillis) {
+        return ticket(Lane.of(channel), captureMillis);
+    }
+
+    Ticket ticket(Lane lane, long captureMillis) {
+        long now = System.currentTimeMillis();
+        long captured = (captureMillis <= 0 || captureMillis > now + MAX_CLOCK_SKEW_MS) ? now : captureMillis;
+        long maxAge = maxAgeMillis[lane.ordinal()];
+        return new Ticket(lane, captured, maxAge == 0 ? Long.MAX_VALUE : captured + maxAge);
+    }
+
+    /** Throws if the ticket is already past its deadline. */
+    void check(Ticket ticket) throws StaleException {
+        if (ticket != null && ticket.isExpired()) throw expired(ticket);
+    }
+
+    int maxQueuedPerLane() {
+        return maxQueuedPerLane;
+    }
+
+    StaleException expired(Ticket ticket) {
+        expired[ticket.lane().ordinal()].incrementAndGet();
+        return new StaleException(ticket, "deadline");
+    }
+
+    StaleException superseded(Ticket ticket) {
+        superseded[ticket.lane().ordinal()].incrementAndGet();
+        return new StaleException(ticket, "superseded");
+    }
+
+    void admitted(Ticket ticket) {
+        admitted[ticket.lane().ordinal()].incrementAndGet();
+        admittedAge[ticket.lane().ordinal()].recordNanos(Math.max(0, ticket.ageMillis()) * 1_000_000L);
+    }
+
+    ObjectNode statsJson(ObjectMapper mapper) {
+        ObjectNode json = mapper.createObjectNode().put("maxQueuedPerLane", maxQueuedPerLane);
+        for (Lane lane : Lane.values()) {
+            int i = lane.ordinal();
+            String l = lane.label();
+            json.put(l + "MaxAgeMs", maxAgeMillis[i]);
+            json.put(l + "Admitted", admitted[i].get());
+            json.put(l + "Expired", expired[i].get());
+            json.put(l + "Superseded", superseded[i].get());
+        }
+        return json;
+    }
+}
@@ -0,0 +1,136 @@
+package local.meettranslator;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process backend with canned answers, for tests, benchmarks and trying the bridge without an API key.
+ *
+ * Every call sleeps latencyMs (plus up to jitterMs) and then fails with probability failRate, so a router
+ * in front of it can be exercised against a slow or flaky "upstream" without any network.
+ *  - transcribe:  "fake transcript of N bytes"
+ *  - translate:   "[targetLang] text", streamed word by word
+ *  - tts:         a silent 16 kHz mono WAV, 60 ms per word (whatever format was asked for)
+ */
+final class FakeBackend implements SpeechBackend {
+
+    private static final int TTS_SAMPLE_RATE = 16_000;
+    private static final int TTS_MS_PER_WORD = 60;
+
+    private final String name;
+    private final Set<Capability> capabilities;
+    private final long latencyMs;
+    private final long jitterMs;
+    private final double failRate;
+
+    private final AtomicLong calls = new AtomicLong();
+
+    FakeBackend(String name, Set<Capability> capabilities, long latencyMs, long jitterMs, double failRate) {
+        this.name = name;
+        this.capabilities = Collections.unmodifiableSet(EnumSet.copyOf(capabilities));
+        this.latencyMs = Math.max(0, latencyMs);
+        this.jitterMs = Math.max(0, jitterMs);
+        this.failRate = failRate;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public Set<Capability> capabilities() {
+        return capabilities;
+    }
+
+    long calls() {
+        return calls.get();
+    }
+
+    @Override
+    public String transcribe(byte[] audio, int offset, int length, String audioMime) throws IOException {
+        work("transcribe");
+        return "fake transcript of " + length + " bytes";
+    }
+
+    @Override
+    public String transcribe(InputStream audio, long length, String audioMime) throws IOException {
+        long n = audio.transferTo(OutputStream.nullOutputStream());
+        work("transcribe");
+        return "fake transcript of " + n + " bytes";
+    }
+
+    @Override
+    public String translateText(String sourceLang, String targetLang, String text) throws IOException {
+        if (text == null || text.isBlank()) return "";
+        work("translate");
+        return translated(targetLang, text);
+    }
+
+    @Override
+    public List<String> translateBatch(String sourceLang, String targetLang, List<String> texts) throws IOException {
+        work("translate");
+        List<String> out = new ArrayList<>(texts.size());
+        for (String t : texts) out.add(translated(targetLang, t));
+        return out;
+    }
+
+    @Override
+    public String translateTextStreaming(String sourceLang, String targetLang, String text, SpeechBackend.DeltaListener onDelta)
+            throws IOException {
+        if (text == null || text.isBlank()) return "";
+        work("translate");
+        String result = translated(targetLang, text);
+        int from = 0;
+        while (from < result.length()) {
+            int space = result.indexOf(' ', from + 1);
+            int to = space < 0 ? result.length() : space;
+            onDelta.onDelta(result.substring(from, to));
+            from = to;
+        }
+        return result;
+    }
+
+    @Override
+    public byte[] ttsAudio(SpeechBackend.TtsParams p) throws IOException {
+        if (p.text().isBlank()) return new byte[0];
+        work("TTS");
+        int words = Math.max(1, p.text().trim().split("\\s+").length);
+        int dataLen = TTS_SAMPLE_RATE * 2 * TTS_MS_PER_WORD / 1000 * words;
+        return Wav.allocate(dataLen, TTS_SAMPLE_RATE, 1, 16);
+    }
+
+    @Override
+    public InputStream ttsAudioStream(SpeechBackend.TtsParams p) throws IOException {
+        return new ByteArrayInputStream(ttsAudio(p));
+    }
+
+    private static String translated(String targetLang, String text) {
+        return "[" + targetLang + "] " + text.trim();
+    }
+
+    private void work(String op) throws IOException {
+        calls.incrementAndGet();
+        long ms = latencyMs + (jitterMs > 0 ? ThreadLocalRandom.current().nextLong(jitterMs + 1) : 0);
+        if (ms > 0) {
+            try {
+                Thread.sleep(ms);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Fake " + op + " interrupted", ie);
+            }
+        }
+        if (failRate > 0 && ThreadLocalRandom.current().nextDouble() < failRate) {
+            throw new IOException("Fake " + op + " failed (backend " + name + ")");
+        }
+    }
+}
@@ -1,23 +1,58 @@
 package local.meettranslator;
+import com.fasterxml.jackson.core.Base64Variant;
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.exc.StreamReadException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.sun.net.httpserver.Headers;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpServer;
 
 import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.net.URI;
+import java.net.URLDecoder;
 import java.net.http.HttpClient;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.security.SecureRandom;
 import java.time.Duration;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
 
 /**
  * Local Meet Translator Bridge
@@ -26,23 +61,73 @@ import java.util.Objects;
  *  - Keep OPENAI_API_KEY only on your PC (server-side), not in the browser extension.
  *  - Provide localhost endpoints for the extension:
  *      GET  /health
+ *      GET  /metrics (Prometheus text)
  *      POST /translate-text
  *      POST /transcribe-and-translate
+ *      POST /transcribe-and-translate-stream (Server-Sent Events: transcript first, then translation)
  *      POST /tts (optional; disabled by default)
+ *      POST /tts/cancel (drops a prefetched clip that will not be played)
+ *      POST /session/open, POST /session/audio, GET /session/events, POST /session/close
+ *           (continuous PCM: one session per channel, events as Server-Sent Events)
+ *      GET  /journal (sessions in the transcript journal; ?session=... exports one as JSON lines)
+ *
+ *    Both transcribe endpoints accept either the JSON envelope ({"audioBase64": ...}) or the raw audio
+ *    as the request body (Content-Type: audio/..., ?sourceLang=..&targetLang=..), which is streamed
+ *    straight into the upstream multipart upload without base64 or extra copies.
  *
  * Security:
  *  - Requires header X-Auth-Token == LOCAL_MEET_TRANSLATOR_TOKEN.
  *  - Binds to 127.0.0.1 only.
+ *
+ * Concurrency:
+ *  - Handlers run on virtual threads by default (LOCAL_MEET_TRANSLATOR_EXECUTOR=virtual|fixed|dispatcher),
+ *    so a slow Whisper call on one channel does not block the other channel or TTS.
+ *  - Each upstream-bound endpoint has its own concurrency limit.
  */
 public final class Main {
 
     private static final ObjectMapper MAPPER = new ObjectMapper();
+    static final Metrics METRICS = new Metrics();
 
+    // "try": limiter permits are held by try-with-resources without being referenced in the body.
+    @SuppressWarnings("try")
     public static void main(String[] args) throws Exception {
-        String apiKey = envRequired("OPENAI_API_KEY");
+        Startup startup = new Startup();
+        // AppCDS training run (mvn -Pcds): start on a free port, run the warm-up, exit. No upstream calls.
+        boolean cdsTraining = List.of(args).contains("--cds-training");
+
+        // The JDK HttpServer leaves Nagle on, which holds each small response for the client's delayed ACK (~40 ms).
+        // Read once, when the first server is created.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+
+        // With BACKENDS set, each backend may bring its own key (or need none, like a local server).
+        String backendNames = envOr("BACKENDS", "");
+        String apiKey = cdsTraining ? envOr("OPENAI_API_KEY", "cds-training")
+                : backendNames.isBlank() ? envRequired("OPENAI_API_KEY") : envOr("OPENAI_API_KEY", "");
 
         String baseUrl = envOr("OPENAI_BASE_URL", "https://api.openai.com");
-        int port = Integer.parseInt(envOr("LOCAL_MEET_TRANSLATOR_PORT", "8799"));
+        int port = cdsTraining ? 0 : Integer.parseInt(envOr("LOCAL_MEET_TRANSLATOR_PORT", "8799"));
+
+        // Upstream HTTP client: protocol (2 or 1.1), executor for its async work (default or virtual),
+        // pre-connect at startup and keep-alive pings while idle (0 = off)
+        String httpVersion = envOr("OPENAI_HTTP_VERSION", "2");
+        String httpExecutor = envOr("OPENAI_HTTP_EXECUTOR", "default");
+        boolean preconnect = Boolean.parseBoolean(envOr("OPENAI_PRECONNECT", "true"));
+        long keepAliveSeconds = Long.parseLong(envOr("OPENAI_KEEPALIVE_SECONDS", "0"));
+        int warmupIterations = Integer.parseInt(envOr("WARMUP_ITERATIONS", "200"));
+        // Building the client loads the default SSLContext and the trust store, one of the slowest steps of
+        // startup; it runs in parallel with the rest of it and the first upstream call waits for it.
+        HttpClient.Version upstreamVersion = parseHttpVersion(httpVersion);
+        CompletableFuture<HttpClient> http = new CompletableFuture<>();
+        Thread.ofPlatform().daemon().name("http-client-init").start(() -> {
+            try {
+                http.complete(createHttpClient(upstreamVersion, httpExecutor));
+            } catch (Throwable t) {
+                http.completeExceptionally(t);
+            }
+        });
 
         // Models
         String transcribeModel = envOr("OPENAI_TRANSCRIBE_MODEL", "whisper-1");
@@ -50,6 +135,8 @@ public final class Main {
 
         // Optional TTS (disabled by default)
         boolean enableTts = Boolean.parseBoolean(envOr("ENABLE_TTS", "false"));
+        // Stream translation deltas from the Responses API on /transcribe-and-translate-stream
+        boolean translateStream = Boolean.parseBoolean(envOr("OPENAI_TRANSLATE_STREAM", "true"));
         String ttsModel = envOr("OPENAI_TTS_MODEL", "gpt-4o-mini-tts");
         String ttsVoice = envOr("OPENAI_TTS_VOICE", "onyx"); // You can change later
         String ttsFormat = envOr("OPENAI_TTS_FORMAT", "mp3"); // mp3, wav, opus, aac, flac, pcm
@@ -59,7 +146,183 @@ public final class Main {
         // Local auth token
         String authToken = envOr("LOCAL_MEET_TRANSLATOR_TOKEN", randomToken(40));
 
-        OpenAiClient client = new OpenAiClient(baseUrl, apiKey, transcribeModel, textModel, enableTts, ttsModel, ttsVoice, ttsFormat, ttsInstructions, ttsSpeed);
+        // Concurrency: executor for handlers and per-endpoint limits on in-flight upstream work
+        String executorMode = envOr("LOCAL_MEET_TRANSLATOR_EXECUTOR", "virtual"); // virtual, fixed, dispatcher
+        int fixedThreads = Integer.parseInt(envOr("LOCAL_MEET_TRANSLATOR_THREADS", "8")); // only for executor=fixed
+
+        // Deadlines: how long after capture a chunk is still worth sending upstream (0 = never stale),
+        // and how many chunks of one channel may wait for a slot before the oldest is dropped (0 = no cap)
+        DeadlineScheduler scheduler = new DeadlineScheduler(
+                Long.parseLong(envOr("DEADLINE_INCOMING_MS", "12000")),
+                Long.parseLong(envOr("DEADLINE_OUTGOING_MS", "15000")),
+                Long.parseLong(envOr("DEADLINE_TTS_MS", "15000")),
+                Integer.parseInt(envOr("DEADLINE_MAX_QUEUED", "4")));
+        EndpointLimiter transcribeLimiter = new EndpointLimiter("transcribe",
+                Integer.parseInt(envOr("LOCAL_MEET_TRANSLATOR_MAX_TRANSCRIBE", "4")), scheduler);
+        EndpointLimiter translateLimiter = new EndpointLimiter("translate",
+                Integer.parseInt(envOr("LOCAL_MEET_TRANSLATOR_MAX_TRANSLATE", "8")), scheduler);
+        EndpointLimiter ttsLimiter = new EndpointLimiter("tts",
+                Integer.parseInt(envOr("LOCAL_MEET_TRANSLATOR_MAX_TTS", "2")), scheduler);
+        // Admission: requests beyond slots + queue get 429 with Retry-After before their body is read (-1 = no cap)
+        AdmissionGate transcribeGate = new AdmissionGate("transcribe", transcribeLimiter.limit(),
+                Integer.parseInt(envOr("ADMISSION_QUEUE_TRANSCRIBE", "8")));
+        AdmissionGate translateGate = new AdmissionGate("translate", translateLimiter.limit(),
+                Integer.parseInt(envOr("ADMISSION_QUEUE_TRANSLATE", "16")));
+        AdmissionGate ttsGate = new AdmissionGate("tts", ttsLimiter.limit(),
+                Integer.parseInt(envOr("ADMISSION_QUEUE_TTS", "4")));
+        // Chunk-length hints for the extension's recorders, from recent transcribe round trips
+        double chunkMinSeconds = Double.parseDouble(envOr("CHUNK_HINT_MIN_SECONDS", "2"));
+        double chunkMaxSeconds = Double.parseDouble(envOr("CHUNK_HINT_MAX_SECONDS", "15"));
+        UnaryOperator<ObjectNode> withHints = json -> {
+            transcribeGate.putHints(json, chunkMinSeconds, chunkMaxSeconds);
+            return json;
+        };
+
+        // Translation cache (0 entries disables it). Snapshot file is optional.
+        int cacheSize = Integer.parseInt(envOr("TRANSLATION_CACHE_SIZE", "2000"));
+        long cacheTtlSeconds = Long.parseLong(envOr("TRANSLATION_CACHE_TTL_SECONDS", "21600"));
+        String cacheFile = envOr("TRANSLATION_CACHE_FILE", "");
+        long cacheSnapshotSeconds = Long.parseLong(envOr("TRANSLATION_CACHE_SNAPSHOT_SECONDS", "300"));
+
+        // Identical chunks from several listeners share one Whisper call; finished transcripts are reused this long (0 = off).
+        // Off by default: the key is a hash of the whole chunk, so raw bodies are buffered instead of streamed upstream.
+        TranscriptionDeduper dedupe = new TranscriptionDeduper(
+                Long.parseLong(envOr("TRANSCRIBE_DEDUPE_SECONDS", "0")) * 1000L, 256);
+        // targetLangs fan-out: the translations of one transcript run in parallel
+        ExecutorService fanOut = Executors.newVirtualThreadPerTaskExecutor();
+
+        // Rolling transcript per client channel and session: repeats are not translated, overlaps only by their new tail
+        TranscriptHistory history = new TranscriptHistory(
+                Long.parseLong(envOr("TRANSCRIPT_DEDUPE_WINDOW_MS", "12000")),
+                Integer.parseInt(envOr("TRANSCRIPT_MIN_OVERLAP_TOKENS", "2")),
+                Double.parseDouble(envOr("TRANSCRIPT_REPEAT_JACCARD", "0.85")),
+                256);
+
+        // Server-side VAD: skip Whisper for WAV/PCM chunks that are (almost) all silence
+        SpeechDetector vad = new SpeechDetector(
+                Boolean.parseBoolean(envOr("VAD_ENABLED", "true")),
+                Double.parseDouble(envOr("VAD_MIN_SPEECH_RATIO", "0.05")),
+                Double.parseDouble(envOr("VAD_ENERGY_THRESHOLD", "0.01")));
+
+        // Upstream resilience: latency budgets from recent p95, jittered retries, optional translate hedging, circuit breaker
+        UpstreamGuard.Config resilience = new UpstreamGuard.Config(
+                Integer.parseInt(envOr("OPENAI_MAX_RETRIES", "2")),
+                Long.parseLong(envOr("OPENAI_RETRY_BACKOFF_MS", "250")),
+                Long.parseLong(envOr("OPENAI_RETRY_MAX_BACKOFF_MS", "4000")),
+                Double.parseDouble(envOr("OPENAI_BUDGET_P95_FACTOR", "3")),
+                Long.parseLong(envOr("OPENAI_BUDGET_MIN_MS", "5000")),
+                Integer.parseInt(envOr("OPENAI_BREAKER_FAILURES", "5")),
+                Long.parseLong(envOr("OPENAI_BREAKER_OPEN_MS", "10000")),
+                Boolean.parseBoolean(envOr("OPENAI_HEDGE_TRANSLATE", "false")));
+
+        // Translation memory: per-pair TSV files answer known segments locally and pin glossary terms in prompts
+        String memoryDir = envOr("TRANSLATION_MEMORY_DIR", "");
+        TranslationMemory memory = new TranslationMemory(memoryDir.isBlank() ? null : Path.of(memoryDir),
+                Long.parseLong(envOr("TRANSLATION_MEMORY_RELOAD_SECONDS", "5")));
+
+        OpenAiClient.TtsDefaults ttsDefaults = new OpenAiClient.TtsDefaults(enableTts, ttsModel, ttsVoice, ttsFormat, ttsInstructions, ttsSpeed);
+
+        // Backends: OPENAI_* alone, or every name in BACKENDS (BACKEND_<NAME>_*), routed by recent latency and errors
+        List<OpenAiClient> httpBackends = new ArrayList<>();
+        List<BackendRouter.Route> routes = new ArrayList<>();
+        if (backendNames.isBlank()) {
+            OpenAiClient openai = new OpenAiClient("openai", EnumSet.allOf(SpeechBackend.Capability.class), baseUrl, apiKey,
+                    transcribeModel, textModel, ttsDefaults, memory, upstreamVersion, http, resilience);
+            httpBackends.add(openai);
+            routes.add(new BackendRouter.Route(openai, 1.0));
+        } else {
+            for (String raw : backendNames.split(",")) {
+                String name = raw.trim().toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9_]", "_");
+                if (name.isEmpty()) continue;
+                String env = "BACKEND_" + name.toUpperCase(Locale.ROOT) + "_";
+                String url = envOr(env + "URL", "");
+                Set<SpeechBackend.Capability> caps = SpeechBackend.Capability.parse(envOr(env + "CAPS", ""));
+                double weight = Double.parseDouble(envOr(env + "WEIGHT", "1"));
+                SpeechBackend backend;
+                if ("fake".equalsIgnoreCase(url)) {
+                    backend = new FakeBackend(name, caps,
+                            Long.parseLong(envOr(env + "FAKE_LATENCY_MS", "50")),
+                            Long.parseLong(envOr(env + "FAKE_JITTER_MS", "0")),
+                            Double.parseDouble(envOr(env + "FAKE_FAIL_RATE", "0")));
+                } else if (url.isBlank()) {
+                    throw new IllegalStateException("Missing " + env + "URL (an OpenAI-compatible base URL, or fake)");
+                } else {
+                    OpenAiClient c = new OpenAiClient(name, caps, url, envOr(env + "API_KEY", apiKey),
+                            envOr(env + "TRANSCRIBE_MODEL", transcribeModel), envOr(env + "TEXT_MODEL", textModel),
+                            ttsDefaults, memory, upstreamVersion, http, resilience);
+                    httpBackends.add(c);
+                    backend = c;
+                }
+                routes.add(new BackendRouter.Route(backend, weight));
+            }
+        }
+        BackendRouter client = new BackendRouter(routes);
+
+        TranslationBatcher translator = new TranslationBatcher(client, memory, translateLimiter,
+                Long.parseLong(envOr("TRANSLATE_BATCH_WINDOW_MS", "0")),
+                Integer.parseInt(envOr("TRANSLATE_BATCH_MAX", "8")));
+
+        TranslationCache translationCache = new TranslationCache(cacheSize, cacheTtlSeconds * 1000L,
+                cacheFile.isBlank() ? null : Path.of(cacheFile));
+        startCacheSnapshots(translationCache, cacheSnapshotSeconds);
+        // Cached translations may contradict the new memory (or were made with the old glossary).
+        memory.onReload(translationCache::clear);
+
+        // TTS audio cache: heap LRU (0 MB disables it) plus an optional memory-mapped disk tier
+        String ttsCacheDir = envOr("TTS_CACHE_DIR", "");
+        TtsCache ttsCache = openTtsCache(
+                Long.parseLong(envOr("TTS_CACHE_HEAP_MB", "16")) * 1024L * 1024L,
+                ttsCacheDir,
+                Long.parseLong(envOr("TTS_CACHE_DISK_MB", "256")) * 1024L * 1024L,
+                Integer.parseInt(envOr("TTS_CACHE_SEGMENT_MB", "16")) * 1024 * 1024);
+        // Speculative TTS: synthesize a translation while its answer is sent, for the /tts call that follows
+        TtsPrefetch ttsPrefetch = new TtsPrefetch(new TtsPrefetch.Config(
+                enableTts && Boolean.parseBoolean(envOr("TTS_PREFETCH", "false")) ? Long.parseLong(envOr("TTS_PREFETCH_TTL_MS", "20000")) : 0,
+                Long.parseLong(envOr("TTS_PREFETCH_MAX_MB", "8")) * 1024L * 1024L,
+                Integer.parseInt(envOr("TTS_PREFETCH_MAX_CLIPS", "16"))));
+
+        // PCM ingest: raw PCM (and WAV) chunks downmixed, resampled and trimmed into a compact WAV before upload
+        PcmIngest pcmIngest = new PcmIngest(new PcmIngest.Config(
+                Boolean.parseBoolean(envOr("PCM_INGEST", "true")),
+                Integer.parseInt(envOr("PCM_TARGET_RATE", "16000")),
+                Boolean.parseBoolean(envOr("PCM_TRIM_SILENCE", "true")) ? Double.parseDouble(envOr("VAD_ENERGY_THRESHOLD", "0.01")) : 0,
+                Integer.parseInt(envOr("PCM_TRIM_PAD_MS", "200"))));
+
+        // Transcript journal: every segment as a JSON line, written and fsynced off the request path
+        String journalDir = envOr("JOURNAL_DIR", "");
+        TranscriptJournal journal = new TranscriptJournal(MAPPER, new TranscriptJournal.Config(
+                journalDir.isBlank() ? null : Path.of(journalDir),
+                Long.parseLong(envOr("JOURNAL_SEGMENT_MB", "16")) * 1024L * 1024L,
+                Long.parseLong(envOr("JOURNAL_MAX_MB", "512")) * 1024L * 1024L,
+                Long.parseLong(envOr("JOURNAL_SYNC_MS", "200")),
+                Integer.parseInt(envOr("JOURNAL_QUEUE", "4096"))));
+        Runtime.getRuntime().addShutdownHook(new Thread(journal::close, "transcript-journal-on-exit"));
+
+        // Session ingest: continuous PCM in, segments cut by the bridge, events out on one stream
+        StreamingSessions sessions = new StreamingSessions(MAPPER, history, journal, new StreamingSessions.Pipeline() {
+            @Override
+            public String transcribe(String channel, long capturedAt, byte[] wav, String mime) throws IOException {
+                if (vad.isSilence(wav, 0, wav.length, mime)) return "";
+                try (EndpointLimiter.Permit ignored = transcribeLimiter.acquire(scheduler.ticket(channel, capturedAt))) {
+                    return client.transcribe(wav, 0, wav.length, mime);
+                }
+            }
+
+            @Override
+            public String translate(String channel, long capturedAt, String sourceLang, String targetLang, String text) throws IOException {
+                DeadlineScheduler.Ticket ticket = scheduler.ticket(channel, capturedAt);
+                return translationCache.getOrLoad(sourceLang, targetLang, text,
+                        () -> translator.translate(sourceLang, targetLang, text, ticket));
+            }
+        },
+                Integer.parseInt(envOr("SESSION_MAX", "8")),
+                Long.parseLong(envOr("SESSION_IDLE_SECONDS", "120")) * 1000L,
+                new StreamingSessions.Segmenter.Config(
+                        Double.parseDouble(envOr("VAD_ENERGY_THRESHOLD", "0.01")),
+                        Integer.parseInt(envOr("SESSION_SILENCE_MS", "700")),
+                        Integer.parseInt(envOr("SESSION_MAX_SEGMENT_MS", "12000")),
+                        Integer.parseInt(envOr("SESSION_MIN_SPEECH_MS", "300")),
+                        Integer.parseInt(envOr("SESSION_OVERLAP_MS", "300"))));
 
         HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
 
@@ -68,26 +331,110 @@ public final class Main {
             if (!checkAuth(ex, authToken)) return;
 
             try {
-                writeJson(ex, 200, MAPPER.createObjectNode()
+                var json = MAPPER.createObjectNode()
                         .put("ok", true)
-                        .put("service", "local-meet-translator-bridge"));
+                        .put("service", "local-meet-translator-bridge");
+                json.set("translationCache", translationCache.statsJson(MAPPER));
+                json.set("vad", vad.statsJson(MAPPER));
+                json.set("translateBatcher", translator.statsJson(MAPPER));
+                json.set("translationMemory", memory.statsJson(MAPPER));
+                json.set("journal", journal.statsJson(MAPPER));
+                json.set("pcmIngest", pcmIngest.statsJson(MAPPER));
+                json.set("sessions", sessions.statsJson(MAPPER));
+                json.set("ttsCache", ttsCache.statsJson(MAPPER));
+                json.set("ttsPrefetch", ttsPrefetch.statsJson(MAPPER));
+                ObjectNode admission = json.putObject("admission");
+                for (AdmissionGate g : List.of(transcribeGate, translateGate, ttsGate)) admission.set(g.name(), g.statsJson(MAPPER));
+                json.set("startup", startup.statsJson(MAPPER));
+                json.set("scheduler", scheduler.statsJson(MAPPER));
+                json.set("transcribeDedupe", dedupe.statsJson(MAPPER));
+                json.set("transcriptHistory", history.statsJson(MAPPER));
+                ObjectNode guards = json.putObject("upstreamGuard");
+                for (OpenAiClient c : httpBackends) guards.set(c.name(), c.guardStatsJson(MAPPER));
+                json.set("router", client.statsJson(MAPPER));
+                writeJson(ex, 200, json);
+            } catch (Exception e) {
+                e.printStackTrace(System.err);
+                try {
+                    writeFailure(ex, e);
+                } catch (Exception ignore) {
+                    // ignore
+                }
+            }
+        });
+
+        server.createContext("/metrics", ex -> {
+            if (!corsAndMethod(ex, "GET")) return;
+            if (!checkAuth(ex, authToken)) return;
+
+            try {
+                StringBuilder sb = new StringBuilder(METRICS.scrape());
+                Metrics.appendStats(sb, "local_meet_translation_cache", translationCache.statsJson(MAPPER));
+                Metrics.appendStats(sb, "local_meet_vad", vad.statsJson(MAPPER));
+                Metrics.appendStats(sb, "local_meet_translate_batcher", translator.statsJson(MAPPER));
+                Metrics.appendStats(sb, "local_meet_translation_memory", memory.statsJson(MAPPER));
+                Metrics.appendStats(sb, "local_meet_journal", journal.statsJson(MAPPER));
+                Metrics.appendStats(sb, "local_meet_pcm_ingest", pcmIngest.statsJson(MAPPER));
+                Metrics.appendStats(sb, "local_meet_sessions", sessions.statsJson(MAPPER));
+                Metrics.appendStats(sb, "local_meet_tts_cache", ttsCache.statsJson(MAPPER));
+                Metrics.appendStats(sb, "local_meet_tts_prefetch", ttsPrefetch.statsJson(MAPPER));
+                for (AdmissionGate g : List.of(transcribeGate, translateGate, ttsGate)) {
+                    Metrics.appendStats(sb, "local_meet_admission_" + g.name(), g.statsJson(MAPPER));
+                }
+                ObjectNode started = startup.statsJson(MAPPER);
+                Metrics.appendStats(sb, "local_meet_startup", started);
+                started.path("upstreams").fields().forEachRemaining(
+                        u -> Metrics.appendStats(sb, "local_meet_startup_upstream_" + u.getKey(), u.getValue()));
+                Metrics.appendStats(sb, "local_meet_scheduler", scheduler.statsJson(MAPPER));
+                Metrics.appendStats(sb, "local_meet_transcribe_dedupe", dedupe.statsJson(MAPPER));
+                Metrics.appendStats(sb, "local_meet_transcript_history", history.statsJson(MAPPER));
+                for (OpenAiClient c : httpBackends) {
+                    c.guardStatsJson(MAPPER).fields().forEachRemaining(
+                            g -> Metrics.appendStats(sb, "local_meet_upstream_guard_" + c.name() + "_" + g.getKey(), g.getValue()));
+                }
+                ObjectNode router = client.statsJson(MAPPER);
+                Metrics.appendStats(sb, "local_meet_router", router);
+                router.path("backends").fields().forEachRemaining(b -> b.getValue().fields().forEachRemaining(op -> {
+                    if (op.getValue().isObject()) {
+                        Metrics.appendStats(sb, "local_meet_backend_" + b.getKey() + "_" + op.getKey(), op.getValue());
+                    }
+                }));
+
+                byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+                ex.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                ex.sendResponseHeaders(200, bytes.length);
+                try (OutputStream os = ex.getResponseBody()) {
+                    os.write(bytes);
+                } finally {
+                    ex.close();
+                }
             } catch (Exception e) {
                 e.printStackTrace(System.err);
                 try {
-                    writeError(ex, 500, "Internal error: " + safeErr(e));
+                    writeFailure(ex, e);
                 } catch (Exception ignore) {
                     // ignore
                 }
             }
         });
 
+        Metrics.Endpoint translateTextMetrics = METRICS.endpoint("translate-text");
         server.createContext("/translate-text", ex -> {
             if (!corsAndMethod(ex, "POST")) return;
             if (!checkAuth(ex, authToken)) return;
+            AdmissionGate.Pass pass = translateGate.enter();
+            if (pass == null) {
+                writeBusy(ex, translateGate);
+                return;
+            }
 
+            Metrics.Endpoint m = translateTextMetrics;
+            long started = m.begin();
             try {
                 byte[] body = readBodyLimited(ex, 1_000_000);
+                m.requestBytes(body.length);
                 JsonNode req = MAPPER.readTree(body);
+                long t = m.lap("read", started);
 
                 String sourceLang = textOr(req, "sourceLang", "auto");
                 String targetLang = textOr(req, "targetLang", "ru");
@@ -97,93 +444,334 @@ public final class Main {
                     writeError(ex, 400, "text is empty");
                     return;
                 }
+                DeadlineScheduler.Ticket ticket = scheduler.ticket(textOr(req, "channel", null), req.path("captureTs").asLong(0));
 
-                String translation = client.translateText(sourceLang, targetLang, text);
+                String translation;
+                try {
+                    translation = translationCache.getOrLoad(sourceLang, targetLang, text,
+                            () -> translator.translate(sourceLang, targetLang, text, ticket, pass::upstream));
+                } catch (DeadlineScheduler.StaleException e) {
+                    writeJson(ex, 200, stale(MAPPER.createObjectNode()
+                            .put("sourceLang", sourceLang)
+                            .put("targetLang", targetLang)
+                            .put("translation", ""), e));
+                    return;
+                }
+                t = m.lap("translate", t);
 
-                writeJson(ex, 200, MAPPER.createObjectNode()
+                m.responseBytes(writeJson(ex, 200, MAPPER.createObjectNode()
                         .put("sourceLang", sourceLang)
                         .put("targetLang", targetLang)
-                        .put("translation", translation));
+                        .put("translation", translation)));
+                m.lap("write", t);
             } catch (Exception e) {
                 e.printStackTrace(System.err);
                 try {
-                    writeError(ex, 500, "Internal error: " + safeErr(e));
+                    writeFailure(ex, e);
                 } catch (Exception ignore) {
                     // ignore
                 }
+            } finally {
+                pass.close();
+                m.end(started);
             }
         });
 
+        Metrics.Endpoint transcribeMetrics = METRICS.endpoint("transcribe-and-translate");
         server.createContext("/transcribe-and-translate", ex -> {
             if (!corsAndMethod(ex, "POST")) return;
             if (!checkAuth(ex, authToken)) return;
+            AdmissionGate.Pass pass = transcribeGate.enter();
+            if (pass == null) {
+                writeBusy(ex, transcribeGate, withHints);
+                return;
+            }
 
+            Metrics.Endpoint m = transcribeMetrics;
+            long started = m.begin();
+            TranscriptJournal.Entry je = null;
             try {
-                byte[] body = readBodyLimited(ex, 12_000_000);
-                JsonNode req = MAPPER.readTree(body);
-
-                String audioBase64 = textOr(req, "audioBase64", "");
-                String audioMime = textOr(req, "audioMime", "audio/webm");
-                String sourceLang = textOr(req, "sourceLang", "auto");
-                String targetLang = textOr(req, "targetLang", "ru");
-
-                if (audioBase64.isBlank()) {
-                    writeError(ex, 400, "audioBase64 is empty");
+                TranscribeRequest tr = readTranscribeRequest(ex, vad, dedupe, pcmIngest, m);
+                if (tr == null) return;
+                String audioMime = tr.audioMime();
+                String sourceLang = tr.sourceLang();
+                String targetLang = tr.targetLang();
+                je = journal.entry("transcribe-and-translate", tr.client(), tr.channel(), tr.captureTs()).sourceLang(sourceLang);
+
+                long t = System.nanoTime();
+                boolean silence = tr.isSilence(vad);
+                t = je.lap(m, "vad", t);
+
+                // Known silence: same empty result as below, without paying for a Whisper call.
+                if (silence) {
+                    je.skipped("silence");
+                    writeJson(ex, 200, withHints.apply(MAPPER.createObjectNode()
+                            .put("audioMime", audioMime)
+                            .put("sourceLang", sourceLang)
+                            .put("targetLang", targetLang)
+                            .put("transcript", "")
+                            .put("translation", "")
+                            .put("skipped", "silence")));
                     return;
                 }
 
-                byte[] audioBytes;
+                // Too late already, or dropped while waiting for a slot: same empty shape, marked stale.
+                DeadlineScheduler.Ticket ticket = scheduler.ticket(tr.channel(), tr.captureTs());
+                String transcript;
                 try {
-                    audioBytes = Base64.getDecoder().decode(audioBase64);
-                } catch (IllegalArgumentException e) {
-                    writeError(ex, 400, "audioBase64 is not valid base64");
+                    transcript = tr.transcribe(dedupe, () -> {
+                        long u = System.nanoTime();
+                        try (EndpointLimiter.Permit ignored = transcribeLimiter.acquire(ticket)) {
+                            String text = tr.transcribe(client);
+                            pass.upstreamSince(u);
+                            return text;
+                        }
+                    });
+                } catch (DeadlineScheduler.StaleException e) {
+                    je.skipped("stale");
+                    writeJson(ex, 200, withHints.apply(stale(MAPPER.createObjectNode()
+                            .put("audioMime", audioMime)
+                            .put("sourceLang", sourceLang)
+                            .put("targetLang", targetLang)
+                            .put("transcript", "")
+                            .put("translation", ""), e)));
                     return;
                 }
-
-                String transcript = client.transcribe(audioBytes, audioMime);
+                t = je.lap(m, "transcribe", t);
 
                 // If the chunk is silence, transcription can be empty.
                 // Treat that as a valid (empty) result to avoid spamming HTTP 500.
                 if (transcript == null || transcript.isBlank()) {
-                    writeJson(ex, 200, MAPPER.createObjectNode()
+                    je.skipped("empty");
+                    writeJson(ex, 200, withHints.apply(MAPPER.createObjectNode()
                             .put("audioMime", audioMime)
                             .put("sourceLang", sourceLang)
                             .put("targetLang", targetLang)
                             .put("transcript", "")
-                            .put("translation", ""));
+                            .put("translation", "")));
                     return;
                 }
 
-                String translation = client.translateText(sourceLang, targetLang, transcript);
+                // A repeat of what this client just heard is not translated again; an overlap only by its new tail.
+                TranscriptHistory.Verdict seen = history.check(tr.historyKey(), transcript);
+                String heard = seen.text();
+                FanOut translated;
+                Set<String> loaded = ConcurrentHashMap.newKeySet(); // languages not answered by the cache
+                if (seen.isRepeat()) {
+                    Map<String, String> none = new LinkedHashMap<>();
+                    for (String lang : tr.targets()) none.put(lang, "");
+                    translated = new FanOut(none, null);
+                } else {
+                    // Languages are translated in parallel: the slowest one is the upstream time.
+                    AtomicLong slowest = new AtomicLong();
+                    translated = translateAll(tr.targets(), fanOut,
+                            lang -> translationCache.getOrLoad(sourceLang, lang, heard, () -> {
+                                loaded.add(lang);
+                                return translator.translate(sourceLang, lang, heard, ticket,
+                                        nanos -> slowest.accumulateAndGet(nanos, Math::max));
+                            }));
+                    pass.upstream(slowest.get());
+                    t = je.lap(m, "translate", t);
+                }
+                je.transcript(transcript);
+                if (seen.isRepeat()) je.skipped("repeat");
+                else if (translated.stale() != null) je.skipped("stale");
+                for (Map.Entry<String, String> e : translated.translations().entrySet()) {
+                    je.translation(e.getKey(), e.getValue());
+                    if (!seen.isRepeat() && !loaded.contains(e.getKey())) je.cached(e.getKey());
+                }
 
-                writeJson(ex, 200, MAPPER.createObjectNode()
+                ObjectNode json = MAPPER.createObjectNode()
                         .put("audioMime", audioMime)
                         .put("sourceLang", sourceLang)
                         .put("targetLang", targetLang)
                         .put("transcript", transcript)
-                        .put("translation", translation));
+                        .put("translation", translated.translations().get(targetLang));
+                if (!tr.targetLangs().isEmpty()) {
+                    ObjectNode all = json.putObject("translations");
+                    translated.translations().forEach(all::put);
+                }
+                overlap(json, seen);
+                // Speech for the primary translation starts now; the client fetches it with /tts and this id.
+                String spoken = translated.translations().get(targetLang).trim();
+                if (tr.tts() != null && ttsDefaults.enabled() && ttsPrefetch.isEnabled() && !spoken.isEmpty()) {
+                    SpeechBackend.TtsParams tts = tr.tts().resolve(ttsDefaults, spoken);
+                    String cacheKey = TtsCache.key(tts);
+                    if (!ttsCache.contains(cacheKey)) {
+                        DeadlineScheduler.Ticket ttsTicket = scheduler.ticket(DeadlineScheduler.Lane.TTS, tr.captureTs());
+                        String ttsId = ttsPrefetch.start(tts, cacheKey, p -> {
+                            try (EndpointLimiter.Permit ignored = ttsLimiter.acquire(ttsTicket)) {
+                                return client.ttsAudio(p);
+                            }
+                        });
+                        if (ttsId != null) json.put("ttsId", ttsId);
+                    }
+                }
+                // The transcript is already paid for; it goes back even if a translation was dropped.
+                if (translated.stale() != null) stale(json, translated.stale());
+                withHints.apply(json);
+                m.responseBytes(writeJson(ex, 200, json));
+                je.lap(m, "write", t);
             } catch (Exception e) {
                 e.printStackTrace(System.err);
+                if (je != null) je.failed(e);
                 try {
-                    writeError(ex, 500, "Internal error: " + safeErr(e));
+                    writeFailure(ex, e);
                 } catch (Exception ignore) {
                     // ignore
                 }
+            } finally {
+                journal.append(je);
+                pass.close();
+                m.end(started);
             }
         });
 
+        Metrics.Endpoint streamMetrics = METRICS.endpoint("transcribe-and-translate-stream");
+        server.createContext("/transcribe-and-translate-stream", ex -> {
+            if (!corsAndMethod(ex, "POST")) return;
+            if (!checkAuth(ex, authToken)) return;
+            AdmissionGate.Pass pass = transcribeGate.enter();
+            if (pass == null) {
+                writeBusy(ex, transcribeGate, withHints);
+                return;
+            }
+
+            Metrics.Endpoint m = streamMetrics;
+            long started = m.begin();
+            SseStream sse = null;
+            TranscriptJournal.Entry je = null;
+            try {
+                TranscribeRequest tr = readTranscribeRequest(ex, vad, dedupe, pcmIngest, m);
+                if (tr == null) return;
+                String audioMime = tr.audioMime();
+                String sourceLang = tr.sourceLang();
+                String targetLang = tr.targetLang();
+                je = journal.entry("transcribe-and-translate-stream", tr.client(), tr.channel(), tr.captureTs()).sourceLang(sourceLang);
+
+                long t = System.nanoTime();
+                boolean silence = tr.isSilence(vad);
+                t = je.lap(m, "vad", t);
+                DeadlineScheduler.Ticket ticket = scheduler.ticket(tr.channel(), tr.captureTs());
+                DeadlineScheduler.StaleException stale = null;
+                String transcript = "";
+                if (!silence) {
+                    try {
+                        transcript = tr.transcribe(dedupe, () -> {
+                            long u = System.nanoTime();
+                            try (EndpointLimiter.Permit ignored = transcribeLimiter.acquire(ticket)) {
+                                String text = tr.transcribe(client);
+                                pass.upstreamSince(u);
+                                return text;
+                            }
+                        });
+                    } catch (DeadlineScheduler.StaleException e) {
+                        stale = e;
+                    }
+                    if (transcript == null) transcript = "";
+                    t = je.lap(m, "transcribe", t);
+                }
+
+                // From here on errors are reported as an "error" event, not as an HTTP status.
+                sse = SseStream.open(ex);
+                var transcriptEvent = MAPPER.createObjectNode()
+                        .put("audioMime", audioMime)
+                        .put("sourceLang", sourceLang)
+                        .put("targetLang", targetLang)
+                        .put("transcript", transcript);
+                if (silence) transcriptEvent.put("skipped", "silence");
+                if (stale != null) stale(transcriptEvent, stale);
+                sse.send("transcript", transcriptEvent);
+
+                String translation = "";
+                TranscriptHistory.Verdict seen = history.check(tr.historyKey(), transcript);
+                String heard = seen.text();
+                if (!heard.isBlank()) {
+                    String remembered = memory.lookup(sourceLang, targetLang, heard);
+                    String cached = remembered != null ? remembered : translationCache.get(sourceLang, targetLang, heard);
+                    if (cached != null) {
+                        translation = cached;
+                        if (remembered == null) je.cached(targetLang);
+                    } else {
+                        try {
+                            if (translateStream) {
+                                // Deltas need their own upstream stream, so this path is never batched.
+                                long u = System.nanoTime();
+                                try (EndpointLimiter.Permit ignored = translateLimiter.acquire(ticket)) {
+                                    SseStream out = sse;
+                                    translation = client.translateTextStreaming(sourceLang, targetLang, heard,
+                                            delta -> out.send("translation-delta", MAPPER.createObjectNode().put("delta", delta)));
+                                }
+                                pass.upstreamSince(u);
+                            } else {
+                                translation = translator.translate(sourceLang, targetLang, heard, ticket, pass::upstream);
+                            }
+                            translationCache.put(sourceLang, targetLang, heard, translation);
+                        } catch (DeadlineScheduler.StaleException e) {
+                            stale = e;
+                        }
+                    }
+                    je.lap(m, "translate", t);
+                }
+                je.transcript(transcript).translation(targetLang, translation);
+                if (silence) je.skipped("silence");
+                else if (stale != null) je.skipped("stale");
+                else if (seen.isRepeat()) je.skipped("repeat");
+                else if (transcript.isBlank()) je.skipped("empty");
+
+                var translationEvent = MAPPER.createObjectNode()
+                        .put("sourceLang", sourceLang)
+                        .put("targetLang", targetLang)
+                        .put("transcript", transcript)
+                        .put("translation", translation);
+                overlap(translationEvent, seen);
+                if (stale != null) stale(translationEvent, stale);
+                sse.send("translation", translationEvent);
+                sse.send("done", withHints.apply(MAPPER.createObjectNode().put("ok", true)));
+            } catch (Exception e) {
+                e.printStackTrace(System.err);
+                if (je != null) je.failed(e);
+                try {
+                    if (sse == null) {
+                        writeFailure(ex, e);
+                    } else {
+                        sse.send("error", MAPPER.createObjectNode()
+                                .put("ok", false)
+                                .put("error", "Internal error: " + safeErr(e)));
+                    }
+                } catch (Exception ignore) {
+                    // ignore
+                }
+            } finally {
+                journal.append(je);
+                pass.close();
+                if (sse != null) sse.close();
+                m.end(started);
+            }
+        });
+
+        Metrics.Endpoint ttsMetrics = METRICS.endpoint("tts");
         server.createContext("/tts", ex -> {
             if (!corsAndMethod(ex, "POST")) return;
             if (!checkAuth(ex, authToken)) return;
+            AdmissionGate.Pass pass = ttsGate.enter();
+            if (pass == null) {
+                writeBusy(ex, ttsGate);
+                return;
+            }
 
+            Metrics.Endpoint m = ttsMetrics;
+            long started = m.begin();
             try {
-                if (!client.isTtsEnabled()) {
+                if (!ttsDefaults.enabled()) {
                     writeError(ex, 403, "TTS is disabled. Set ENABLE_TTS=true and restart.");
                     return;
                 }
 
                 byte[] body = readBodyLimited(ex, 1_500_000);
+                m.requestBytes(body.length);
                 JsonNode req = MAPPER.readTree(body);
+                long t = m.lap("read", started);
 
                 String text = textOr(req, "text", "");
                 if (text.isBlank()) {
@@ -191,50 +779,911 @@ public final class Main {
                     return;
                 }
 
-                String voice = textOr(req, "voice", "");
-                String model = textOr(req, "model", "");
-                String responseFormat = textOr(req, "response_format", "");
-                String instructions = textOr(req, "instructions", "");
-                Double speed = null;
-                JsonNode speedNode = req.get("speed");
-                if (speedNode != null && speedNode.isNumber()) {
-                    speed = speedNode.asDouble();
-                }
-
-                byte[] audio = client.ttsAudio(text,
-                        (voice == null || voice.isBlank()) ? null : voice,
-                        (model == null || model.isBlank()) ? null : model,
-                        (responseFormat == null || responseFormat.isBlank()) ? null : responseFormat,
-                        (instructions == null || instructions.isBlank()) ? null : instructions,
-                        speed);
-                String fmt = (responseFormat == null || responseFormat.isBlank()) ? ttsFormat : responseFormat;
-                String mime = guessAudioMime(fmt);
+                SpeechBackend.TtsParams tts = TtsOptions.from(req).resolve(ttsDefaults, text);
+                String mime = guessAudioMime(tts.format());
+                String cacheKey = TtsCache.key(tts);
+                boolean stream = req.path("stream").asBoolean(false);
+                // captureTs: when the audio this text was heard in was captured, so stale speech is not synthesized
+                DeadlineScheduler.Ticket ticket = scheduler.ticket(DeadlineScheduler.Lane.TTS, req.path("captureTs").asLong(0));
+
+                // ttsId: a clip prefetched for this text by /transcribe-and-translate
+                String ttsId = textOr(req, "ttsId", "");
+
+                TtsCache.Hit hit = ttsCache.get(cacheKey);
+                if (hit != null) {
+                    // Served from the cache: no upstream call, no permit, and the stored bytes are written as they are.
+                    if (!ttsId.isEmpty()) ttsPrefetch.cancel(ttsId);
+                    try (hit) {
+                        t = m.lap("cache", t);
+                        ex.getResponseHeaders().set("X-TTS-Cache", hit.fromDisk() ? "disk" : "heap");
+                        if (stream) {
+                            ex.getResponseHeaders().set("Content-Type", mime);
+                            m.responseBytes(writeBuffer(ex, hit.audio()));
+                        } else {
+                            String b64 = base64(hit.audio());
+                            t = m.lap("base64", t);
+                            m.responseBytes(writeJson(ex, 200, MAPPER.createObjectNode()
+                                    .put("audioMime", mime)
+                                    .put("audioBase64", b64)));
+                        }
+                        m.lap("write", t);
+                    }
+                    return;
+                }
+                ex.getResponseHeaders().set("X-TTS-Cache", "miss");
+
+                byte[] prefetched = ttsId.isEmpty() ? null : ttsPrefetch.claim(ttsId, cacheKey);
+                if (!ttsId.isEmpty()) ex.getResponseHeaders().set("X-TTS-Prefetch", prefetched != null ? "hit" : "miss");
+                if (prefetched != null) {
+                    t = m.lap("prefetch", t);
+                    ttsCache.put(cacheKey, prefetched);
+                    if (stream) {
+                        ex.getResponseHeaders().set("Content-Type", mime);
+                        m.responseBytes(writeBuffer(ex, ByteBuffer.wrap(prefetched)));
+                    } else {
+                        String b64 = Base64.getEncoder().encodeToString(prefetched);
+                        t = m.lap("base64", t);
+                        m.responseBytes(writeJson(ex, 200, MAPPER.createObjectNode()
+                                .put("audioMime", mime)
+                                .put("audioBase64", b64)));
+                    }
+                    m.lap("write", t);
+                    return;
+                }
+
+                if (stream) {
+                    // Raw audio, chunked, forwarded as the upstream produces it: playback can start on the first bytes.
+                    long u = System.nanoTime();
+                    try (EndpointLimiter.Permit ignored = ttsLimiter.acquire(ticket);
+                         InputStream audio = client.ttsAudioStream(tts)) {
+                        pass.upstreamSince(u); // time to first byte; the rest is paced by the client
+                        t = m.lap("tts", t); // time to first byte
+                        ex.getResponseHeaders().set("Content-Type", mime);
+                        ex.getResponseHeaders().set("Cache-Control", "no-cache");
+                        ex.sendResponseHeaders(200, 0);
+                        // Keep a copy for the cache; dropped if the clip is too large or the stream breaks.
+                        ByteArrayOutputStream copy = ttsCache.isEnabled() ? new ByteArrayOutputStream(64 * 1024) : null;
+                        long total = 0;
+                        try (OutputStream os = ex.getResponseBody()) {
+                            byte[] buf = new byte[16 * 1024];
+                            int n;
+                            while ((n = audio.read(buf)) != -1) {
+                                os.write(buf, 0, n);
+                                os.flush();
+                                total += n;
+                                if (copy != null) {
+                                    if (total <= MAX_TTS_CACHE_CLIP_BYTES) copy.write(buf, 0, n);
+                                    else copy = null;
+                                }
+                            }
+                        } finally {
+                            ex.close();
+                        }
+                        if (copy != null) ttsCache.put(cacheKey, copy.toByteArray());
+                        m.responseBytes(total);
+                        m.lap("stream", t);
+                    }
+                    return;
+                }
+
+                byte[] audio;
+                long u = System.nanoTime();
+                try (EndpointLimiter.Permit ignored = ttsLimiter.acquire(ticket)) {
+                    audio = client.ttsAudio(tts);
+                }
+                pass.upstreamSince(u);
+                t = m.lap("tts", t);
+                ttsCache.put(cacheKey, audio);
                 String b64 = Base64.getEncoder().encodeToString(audio);
+                t = m.lap("base64", t);
 
-                writeJson(ex, 200, MAPPER.createObjectNode()
+                m.responseBytes(writeJson(ex, 200, MAPPER.createObjectNode()
                         .put("audioMime", mime)
-                        .put("audioBase64", b64));
+                        .put("audioBase64", b64)));
+                m.lap("write", t);
+            } catch (DeadlineScheduler.StaleException e) {
+                // Dropped while waiting for a slot, before anything was sent: JSON in both modes, no audio.
+                try {
+                    writeJson(ex, 200, stale(MAPPER.createObjectNode()
+                            .put("audioMime", "")
+                            .put("audioBase64", ""), e));
+                } catch (Exception ignore) {
+                    // ignore
+                }
+            } catch (Exception e) {
+                e.printStackTrace(System.err);
+                try {
+                    writeFailure(ex, e);
+                } catch (Exception ignore) {
+                    // ignore
+                }
+            } finally {
+                pass.close();
+                m.end(started);
+            }
+        });
+
+        // Drops a prefetched clip the client is not going to play.
+        server.createContext("/tts/cancel", ex -> {
+            if (!corsAndMethod(ex, "POST")) return;
+            if (!checkAuth(ex, authToken)) return;
+            try {
+                JsonNode req = MAPPER.readTree(readBodyLimited(ex, 10_000));
+                writeJson(ex, 200, MAPPER.createObjectNode()
+                        .put("ok", true)
+                        .put("cancelled", ttsPrefetch.cancel(textOr(req, "ttsId", ""))));
+            } catch (Exception e) {
+                e.printStackTrace(System.err);
+                try {
+                    writeFailure(ex, e);
+                } catch (Exception ignore) {
+                    // ignore
+                }
+            }
+        });
+
+        // -------------------- Transcript journal --------------------
+
+        // GET /journal lists the journaled sessions; GET /journal?session=<id> exports one as JSON lines.
+        server.createContext("/journal", ex -> {
+            if (!corsAndMethod(ex, "GET")) return;
+            if (!checkAuth(ex, authToken)) return;
+
+            try {
+                if (!journal.isEnabled()) {
+                    writeError(ex, 404, "The transcript journal is off. Set JOURNAL_DIR and restart.");
+                    return;
+                }
+                String session = queryParams(ex).get("session");
+                if (session == null || session.isBlank()) {
+                    writeJson(ex, 200, MAPPER.createObjectNode()
+                            .put("ok", true)
+                            .set("sessions", journal.sessionsJson(MAPPER)));
+                    return;
+                }
+                List<TranscriptJournal.Ref> lines = journal.lines(session);
+                if (lines == null) {
+                    writeError(ex, 404, "No journal lines for this session");
+                    return;
+                }
+                ex.getResponseHeaders().set("Content-Type", "application/x-ndjson; charset=utf-8");
+                ex.getResponseHeaders().set("Content-Disposition", "attachment; filename=\"journal-"
+                        + session.replaceAll("[^A-Za-z0-9_.-]", "_") + ".jsonl\"");
+                ex.sendResponseHeaders(200, 0);
+                try (OutputStream os = ex.getResponseBody()) {
+                    journal.copy(lines, os);
+                } finally {
+                    ex.close();
+                }
+            } catch (Exception e) {
+                e.printStackTrace(System.err);
+                try {
+                    writeFailure(ex, e);
+                } catch (Exception ignore) {
+                    // ignore
+                }
+            }
+        });
+
+        // -------------------- Streaming sessions --------------------
+
+        server.createContext("/session/open", ex -> {
+            if (!corsAndMethod(ex, "POST")) return;
+            if (!checkAuth(ex, authToken)) return;
+
+            try {
+                Map<String, String> q = queryParams(ex);
+                int sampleRate = Integer.parseInt(q.getOrDefault("sampleRate", "16000"));
+                int channels = Integer.parseInt(q.getOrDefault("channels", "1"));
+                String format = q.getOrDefault("format", "s16le");
+                String inputMime = "audio/pcm;rate=" + sampleRate + ";channels=" + channels + ";format=" + format;
+
+                // With PCM ingest any rate, channel count and s16le/f32le is converted to mono at the target
+                // rate before segmenting; without it the frames must already be mono s16le.
+                PcmIngest.Converter converter = null;
+                int segmentRate = sampleRate;
+                if (pcmIngest.isEnabled()) {
+                    PcmIngest.Format in = PcmIngest.Format.ofMime(inputMime);
+                    if (in == null) {
+                        writeError(ex, 400, "Unsupported PCM: sampleRate 8000..192000, channels 1..8, format s16le or f32le");
+                        return;
+                    }
+                    converter = pcmIngest.sessionConverter(in);
+                    segmentRate = pcmIngest.targetRate();
+                } else {
+                    if (sampleRate < 8000 || sampleRate > 48000) {
+                        writeError(ex, 400, "sampleRate must be between 8000 and 48000");
+                        return;
+                    }
+                    if (channels != 1 || !"s16le".equals(format)) {
+                        writeError(ex, 400, "Only mono s16le PCM is supported (channels=1); set PCM_INGEST=true for more");
+                        return;
+                    }
+                }
+
+                StreamingSessions.Session s = sessions.open(
+                        q.getOrDefault("channel", "incoming"),
+                        q.getOrDefault("sourceLang", "auto"),
+                        q.getOrDefault("targetLang", "ru"),
+                        segmentRate,
+                        converter);
+                if (s == null) {
+                    writeError(ex, 503, "Too many open sessions");
+                    return;
+                }
+
+                writeJson(ex, 200, MAPPER.createObjectNode()
+                        .put("sessionId", s.id)
+                        .put("channel", s.channel)
+                        .put("sampleRate", sampleRate)
+                        .put("segmentRate", s.sampleRate)
+                        .put("audioMime", inputMime));
+            } catch (NumberFormatException e) {
+                writeError(ex, 400, "Invalid number: " + e.getMessage());
+            } catch (Exception e) {
+                e.printStackTrace(System.err);
+                try {
+                    writeFailure(ex, e);
+                } catch (Exception ignore) {
+                    // ignore
+                }
+            }
+        });
+
+        server.createContext("/session/audio", ex -> {
+            if (!corsAndMethod(ex, "POST")) return;
+            if (!checkAuth(ex, authToken)) return;
+
+            try {
+                StreamingSessions.Session s = sessions.get(queryParams(ex).get("id"));
+                if (s == null) {
+                    writeError(ex, 404, "Unknown or expired session");
+                    return;
+                }
+                if (s.isClosed()) {
+                    writeError(ex, 409, "Session is closed");
+                    return;
+                }
+                try (InputStream in = new LimitedInputStream(ex.getRequestBody(), MAX_SESSION_POST_BYTES)) {
+                    s.append(in);
+                }
+                ex.sendResponseHeaders(204, -1);
+                ex.close();
+            } catch (Exception e) {
+                e.printStackTrace(System.err);
+                try {
+                    writeFailure(ex, e);
+                } catch (Exception ignore) {
+                    // ignore
+                }
+            }
+        });
+
+        server.createContext("/session/events", ex -> {
+            if (!corsAndMethod(ex, "GET")) return;
+            if (!checkAuth(ex, authToken)) return;
+
+            StreamingSessions.Session s = sessions.get(queryParams(ex).get("id"));
+            if (s == null) {
+                writeError(ex, 404, "Unknown or expired session");
+                return;
+            }
+
+            try (SseStream out = SseStream.open(ex)) {
+                while (true) {
+                    StreamingSessions.Event e = s.nextEvent(SESSION_PING_MS);
+                    if (e == null) {
+                        // Keeps proxies and the extension's reader from treating the stream as dead.
+                        out.ping();
+                        continue;
+                    }
+                    out.send(e.name(), e.data());
+                    if ("closed".equals(e.name())) break;
+                }
+            } catch (IOException e) {
+                // listener went away; the session stays open until closed or idle
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        server.createContext("/session/close", ex -> {
+            if (!corsAndMethod(ex, "POST")) return;
+            if (!checkAuth(ex, authToken)) return;
+
+            try {
+                String id = queryParams(ex).get("id");
+                if (sessions.get(id) == null) {
+                    writeError(ex, 404, "Unknown or expired session");
+                    return;
+                }
+                sessions.close(id);
+                writeJson(ex, 200, MAPPER.createObjectNode().put("ok", true));
             } catch (Exception e) {
                 e.printStackTrace(System.err);
                 try {
-                    writeError(ex, 500, "Internal error: " + safeErr(e));
+                    writeFailure(ex, e);
                 } catch (Exception ignore) {
                     // ignore
                 }
             }
         });
 
-        server.setExecutor(null);
+        server.setExecutor(createExecutor(executorMode, fixedThreads));
         server.start();
+        long listeningMs = startup.listening();
+        URI healthUri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/health");
+
+        if (cdsTraining) {
+            long warmMs = startup.warmUp(MAPPER, warmupIterations, healthUri, authToken);
+            System.out.println("CDS training run: listening after " + listeningMs + " ms, warm-up " + warmMs + " ms");
+            System.exit(0);
+        }
+
+        // Pre-connect and warm-up run in the background; the server already accepts requests.
+        Thread.ofPlatform().daemon().name("startup").start(() -> {
+            for (OpenAiClient c : httpBackends) {
+                if (preconnect) startup.preconnect(c);
+                startup.startKeepAlive(c, keepAliveSeconds);
+            }
+            if (warmupIterations > 0) {
+                long ms = startup.warmUp(MAPPER, warmupIterations, healthUri, authToken);
+                System.out.println("Startup: warm-up done in " + ms + " ms (" + warmupIterations + " iterations)");
+            }
+        });
 
         System.out.println("Local Meet Translator bridge started");
         System.out.println("  URL:   http://127.0.0.1:" + port);
         System.out.println("  TOKEN: " + authToken);
+        System.out.println("  EXEC:  " + executorMode.toLowerCase(Locale.ROOT)
+                + " (transcribe<=" + transcribeLimiter.limit()
+                + ", translate<=" + translateLimiter.limit()
+                + ", tts<=" + ttsLimiter.limit() + ")");
         if (!enableTts) {
             System.out.println("  TTS:   disabled (set ENABLE_TTS=true later)");
         } else {
             System.out.println("  TTS:   enabled model=" + ttsModel + " voice=" + ttsVoice);
         }
+        System.out.println("  CACHE: " + (translationCache.isEnabled()
+                ? "translations<=" + cacheSize + (cacheFile.isBlank() ? "" : " snapshot=" + cacheFile)
+                : "disabled"));
+        System.out.println("  TMEM:  " + (memory.isEnabled()
+                ? envOr("TRANSLATION_MEMORY_DIR", "") + " (exact segments local, glossary terms in prompts)"
+                : "off"));
+        System.out.println("  BATCH: " + (translator.isEnabled() ? "translations coalesced within " + envOr("TRANSLATE_BATCH_WINDOW_MS", "0") + " ms" : "off"));
+        System.out.println("  VAD:   " + (vad.isEnabled() ? "on for WAV/PCM chunks" : "off"));
+        System.out.println("  PCM:   " + (pcmIngest.isEnabled()
+                ? "WAV/PCM chunks and sessions -> mono " + pcmIngest.targetRate() + " Hz 16-bit WAV"
+                        + (Boolean.parseBoolean(envOr("PCM_TRIM_SILENCE", "true")) ? ", silence trimmed" : "")
+                : "off"));
+        System.out.println("  SSE:   /transcribe-and-translate-stream (translation deltas " + (translateStream ? "on" : "off") + ")");
+        System.out.println("  PROM:  /metrics (Prometheus text format; per-stage latency, upstream status codes)");
+        System.out.println("  JRNL:  " + (journal.isEnabled()
+                ? journalDir + " (GET /journal?session=<id>, fsync every " + envOr("JOURNAL_SYNC_MS", "200") + " ms)"
+                : "off"));
+        System.out.println("  SESS:  /session/{open,audio,events,close} (max " + envOr("SESSION_MAX", "8") + " sessions, "
+                + (pcmIngest.isEnabled() ? "s16le/f32le PCM at any rate" : "s16le mono PCM") + ")");
+        System.out.println("  START: listening " + listeningMs + " ms after JVM start; upstream " + upstreamVersion
+                + (preconnect ? ", pre-connect on" : "") + (keepAliveSeconds > 0 ? ", keep-alive every " + keepAliveSeconds + " s" : ""));
+        System.out.println("  DEADL: drop chunks older than incoming=" + envOr("DEADLINE_INCOMING_MS", "12000")
+                + " outgoing=" + envOr("DEADLINE_OUTGOING_MS", "15000") + " tts=" + envOr("DEADLINE_TTS_MS", "15000")
+                + " ms (0 = never); incoming first, then mic, then TTS");
+        System.out.println("  ADMIT: 429 beyond slots+queue transcribe=" + transcribeLimiter.limit() + "+" + envOr("ADMISSION_QUEUE_TRANSCRIBE", "8")
+                + " translate=" + translateLimiter.limit() + "+" + envOr("ADMISSION_QUEUE_TRANSLATE", "16")
+                + " tts=" + ttsLimiter.limit() + "+" + envOr("ADMISSION_QUEUE_TTS", "4")
+                + "; chunk hints " + chunkMinSeconds + "-" + chunkMaxSeconds + " s");
+        System.out.println("  DEDUP: " + (dedupe.isEnabled()
+                ? "identical chunks share one transcription for " + envOr("TRANSCRIBE_DEDUPE_SECONDS", "0") + " s (raw bodies buffered); targetLangs fan-out up to " + MAX_TARGET_LANGS
+                : "off; targetLangs fan-out up to " + MAX_TARGET_LANGS));
+        System.out.println("  ROUTE: " + String.join(", ", client.routes().stream()
+                .map(r -> r.backend().name() + " " + r.backend().capabilities().stream().map(SpeechBackend.Capability::label).toList()
+                        + (r.weight() == 1.0 ? "" : " x" + r.weight()))
+                .toList()));
+        System.out.println("  RETRY: " + resilience.maxRetries() + " retries (429/5xx/timeouts, Retry-After honored), breaker after "
+                + resilience.breakerFailures() + " failures for " + resilience.breakerOpenMs() + " ms"
+                + (resilience.hedge() ? ", translate hedged after p95" : ""));
+        System.out.println("  HIST:  " + (history.isEnabled()
+                ? "repeats not translated, overlaps trimmed (window " + envOr("TRANSCRIPT_DEDUPE_WINDOW_MS", "12000") + " ms, per client channel and session)"
+                : "off"));
+        System.out.println("  TTSC:  " + (ttsCache.isEnabled()
+                ? "tts audio cache heap=" + envOr("TTS_CACHE_HEAP_MB", "16") + "MB"
+                + (ttsCache.isDiskEnabled() ? " disk=" + envOr("TTS_CACHE_DISK_MB", "256") + "MB in " + ttsCacheDir : "")
+                : "disabled"));
+        System.out.println("  TTSP:  " + (ttsPrefetch.isEnabled()
+                ? "speculative tts ttl=" + envOr("TTS_PREFETCH_TTL_MS", "20000") + "ms max=" + envOr("TTS_PREFETCH_MAX_CLIPS", "16")
+                + " clips/" + envOr("TTS_PREFETCH_MAX_MB", "8") + "MB"
+                : "disabled"));
+    }
+
+    /** OPENAI_HTTP_VERSION: "2" (HTTP/2 with fallback to 1.1, the JDK default) or "1.1". */
+    static HttpClient.Version parseHttpVersion(String version) {
+        String v = version == null ? "" : version.trim().toLowerCase(Locale.ROOT);
+        return switch (v) {
+            case "2", "http2", "http/2" -> HttpClient.Version.HTTP_2;
+            case "1.1", "http1.1", "http/1.1" -> HttpClient.Version.HTTP_1_1;
+            default -> throw new IllegalStateException("Unknown OPENAI_HTTP_VERSION: " + version + " (expected 2 or 1.1)");
+        };
+    }
+
+    /** Upstream client. executor: "default" (the JDK's cached pool) or "virtual" (a virtual thread per async task). */
+    static HttpClient createHttpClient(HttpClient.Version version, String executor) {
+        HttpClient.Builder b = HttpClient.newBuilder()
+                .version(version)
+                .connectTimeout(Duration.ofSeconds(20));
+        String e = executor == null ? "" : executor.trim().toLowerCase(Locale.ROOT);
+        switch (e) {
+            case "default" -> {
+            }
+            case "virtual" -> b.executor(Executors.newVirtualThreadPerTaskExecutor());
+            default -> throw new IllegalStateException("Unknown OPENAI_HTTP_EXECUTOR: " + executor + " (expected default or virtual)");
+        }
+        return b.build();
+    }
+
+    /**
+     * Picks the executor for HttpServer handlers.
+     *  - virtual:    one virtual thread per request (default; blocking upstream calls are cheap)
+     *  - fixed:      a bounded platform thread pool
+     *  - dispatcher: the JDK default (all handlers on the single dispatcher thread)
+     */
+    static ExecutorService createExecutor(String mode, int fixedThreads) {
+        String m = mode == null ? "" : mode.trim().toLowerCase(Locale.ROOT);
+        return switch (m) {
+            case "virtual" -> Executors.newVirtualThreadPerTaskExecutor();
+            case "fixed" -> Executors.newFixedThreadPool(Math.max(1, fixedThreads));
+            case "dispatcher" -> null;
+            default -> throw new IllegalStateException("Unknown LOCAL_MEET_TRANSLATOR_EXECUTOR: " + mode
+                    + " (expected virtual, fixed or dispatcher)");
+        };
+    }
+
+    // -------------------- Transcribe requests --------------------
+
+    static final int MAX_AUDIO_BODY_BYTES = 12_000_000;
+
+    /** One /session/audio post carries a few hundred ms of PCM; 2 MB is ~60 s at 16 kHz. */
+    static final int MAX_SESSION_POST_BYTES = 2_000_000;
+    static final long SESSION_PING_MS = 15_000;
+
+    /**
+     * Audio of one /transcribe-and-translate call, either buffered (audio[0, audioLength), decoded from the
+     * JSON envelope or read from a raw WAV/PCM body) or still sitting in the raw request body (rawBody != null).
+     */
+    record TranscribeRequest(String audioMime,
+                             String sourceLang,
+                             String targetLang,
+                             List<String> targetLangs,
+                             String channel,
+                             String client,
+                             long captureTs,
+                             byte[] audio,
+                             int audioLength,
+                             InputStream rawBody,
+                             long rawLength,
+                             TtsOptions tts) {
+
+        String transcribe(SpeechBackend client) throws IOException {
+            if (audio != null) {
+                return client.transcribe(audio, 0, audioLength, audioMime);
+            }
+            return client.transcribe(rawBody, rawLength, audioMime);
+        }
+
+        /** Through the deduper when the audio is buffered; a streamed body cannot be hashed before it is sent. */
+        String transcribe(TranscriptionDeduper dedupe, TranscriptionDeduper.Loader upstream) throws IOException {
+            if (audio == null) return upstream.load();
+            return dedupe.transcribe(audio, 0, audioLength, audioMime, upstream);
+        }
+
+        /** Rolling transcript state of this client's channel; null if the client did not name itself. */
+        String historyKey() {
+            return TranscriptHistory.key(client, channel);
+        }
+
+        /** Languages to translate into: targetLangs if the client sent a list, else targetLang alone. */
+        List<String> targets() {
+            return targetLangs.isEmpty() ? List.of(targetLang) : targetLangs;
+        }
+
+        /**
+         * VAD verdict; streamed bodies (formats the detector cannot decode) are never silence. A WAV
+         * without samples (PCM ingest trimmed it all away) always is, with VAD on or off.
+         */
+        boolean isSilence(SpeechDetector vad) {
+            if (audio == null) {
+                vad.passThrough();
+                return false;
+            }
+            if (audioLength <= Wav.HEADER_BYTES && "audio/wav".equals(audioMime)) return true;
+            return vad.isSilence(audio, 0, audioLength, audioMime);
+        }
+    }
+
+    /** The JSON envelope of a transcribe request; the decoded audio is audio[0, audioLength). */
+    record AudioEnvelope(byte[] audio, int audioLength, String audioMime, String sourceLang, String targetLang,
+                         List<String> targetLangs, String channel, String client, long captureTs, TtsOptions tts) {
+    }
+
+    /** TTS settings as a client sends them to /tts; null (or blank) fields use the bridge defaults. */
+    record TtsOptions(String voice, String model, String format, String instructions, Double speed) {
+
+        static final TtsOptions DEFAULTS = new TtsOptions(null, null, null, null, null);
+
+        /** {"voice", "model", "response_format", "instructions", "speed"} of a /tts request or a "tts" envelope field. */
+        static TtsOptions from(JsonNode n) {
+            JsonNode speed = n.get("speed");
+            return new TtsOptions(textOr(n, "voice", null), textOr(n, "model", null), textOr(n, "response_format", null),
+                    textOr(n, "instructions", null), speed != null && speed.isNumber() ? speed.asDouble() : null);
+        }
+
+        SpeechBackend.TtsParams resolve(OpenAiClient.TtsDefaults defaults, String text) {
+            return defaults.resolve(text, voice, model, format, instructions, speed);
+        }
+    }
+
+    /** Standard base64 alphabet; like Base64.getDecoder(), trailing padding is accepted but not required. */
+    private static final Base64Variant ENVELOPE_BASE64 = Base64Variants.MIME_NO_LINEFEEDS.withPaddingAllowed();
+
+    /**
+     * Reads {"audioBase64", "audioMime", "sourceLang", "targetLang", "targetLangs", "channel", "client", "captureTs", "tts"} with the
+     * streaming parser. The small fields
+     * are read as they come; audioBase64 is decoded chunk by chunk into one buffer pre-sized from the declared
+     * body length, so neither a JsonNode tree nor the multi-megabyte base64 String is ever built.
+     * Unknown fields are skipped. A body that is not a JSON object yields an empty envelope.
+     *
+     * @param contentLength declared body length, or -1 if unknown
+     * @throws IllegalArgumentException if audioBase64 is not valid base64
+     */
+    static AudioEnvelope readAudioEnvelope(InputStream in, long contentLength) throws IOException {
+        String audioMime = "audio/webm";
+        String sourceLang = "auto";
+        String targetLang = "ru";
+        List<String> targetLangs = List.of();
+        String channel = null;
+        String client = null;
+        long captureTs = 0;
+        TtsOptions tts = null;
+        // Decoded audio is at most 3/4 of the body; the rest of the envelope is a few hundred bytes.
+        AudioBuffer audio = new AudioBuffer(contentLength > 0
+                ? (int) Math.min(contentLength / 4 * 3 + 3, MAX_AUDIO_BODY_BYTES / 4 * 3 + 3)
+                : 64 * 1024);
+
+        try (JsonParser p = MAPPER.getFactory().createParser(in)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                return new AudioEnvelope(audio.array(), 0, audioMime, sourceLang, targetLang, targetLangs, channel, client, captureTs, tts);
+            }
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken value = p.nextToken();
+                switch (field) {
+                    case "audioBase64" -> {
+                        audio.reset();
+                        if (value == JsonToken.VALUE_STRING) {
+                            try {
+                                p.readBinaryValue(ENVELOPE_BASE64, audio);
+                            } catch (StreamReadException e) {
+                                throw new IllegalArgumentException("audioBase64 is not valid base64", e);
+                            }
+                        } else {
+                            p.skipChildren();
+                        }
+                    }
+                    case "audioMime" -> audioMime = scalarOr(p, audioMime);
+                    case "sourceLang" -> sourceLang = scalarOr(p, sourceLang);
+                    case "targetLang" -> targetLang = scalarOr(p, targetLang);
+                    case "targetLangs" -> targetLangs = langListOr(p, targetLangs);
+                    case "channel" -> channel = scalarOr(p, channel);
+                    case "client" -> client = scalarOr(p, client);
+                    case "captureTs" -> captureTs = parseLongOr(scalarOr(p, null), 0);
+                    case "tts" -> {
+                        if (value == JsonToken.START_OBJECT) tts = TtsOptions.from(p.readValueAsTree());
+                        else if (value == JsonToken.VALUE_TRUE) tts = TtsOptions.DEFAULTS;
+                        else p.skipChildren();
+                    }
+                    default -> p.skipChildren();
+                }
+            }
+        }
+        return new AudioEnvelope(audio.array(), audio.size(), audioMime, sourceLang, targetLang, targetLangs, channel, client, captureTs, tts);
+    }
+
+    /** Current value as text (like textOr): null keeps the default, objects and arrays are skipped. */
+    private static String scalarOr(JsonParser p, String def) throws IOException {
+        JsonToken t = p.currentToken();
+        if (t == JsonToken.VALUE_NULL) return def;
+        if (t != null && t.isScalarValue()) {
+            String v = p.getValueAsString();
+            return v == null ? def : v;
+        }
+        p.skipChildren();
+        return def;
+    }
+
+    /** targetLangs as a JSON array of strings or one comma-separated string. */
+    private static List<String> langListOr(JsonParser p, List<String> def) throws IOException {
+        if (p.currentToken() != JsonToken.START_ARRAY) {
+            String csv = scalarOr(p, null);
+            return csv == null ? def : parseLangList(csv);
+        }
+        StringBuilder csv = new StringBuilder();
+        while (p.nextToken() != JsonToken.END_ARRAY) {
+            String v = scalarOr(p, null);
+            if (v != null) csv.append(v).append(',');
+        }
+        return parseLangList(csv.toString());
+    }
+
+    /** "ru, de,ru" -> [ru, de]: trimmed, blanks and repeats dropped, order kept. */
+    static List<String> parseLangList(String csv) {
+        if (csv == null || csv.isBlank()) return List.of();
+        LinkedHashSet<String> langs = new LinkedHashSet<>();
+        for (String part : csv.split(",")) {
+            String lang = part.trim();
+            if (!lang.isEmpty()) langs.add(lang);
+        }
+        return List.copyOf(langs);
+    }
+
+    private static long parseLongOr(String v, long def) {
+        if (v == null || v.isBlank()) return def;
+        try {
+            return Long.parseLong(v.trim());
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+
+    /** ByteArrayOutputStream whose backing array is handed out as is; only [0, size()) is valid. */
+    static final class AudioBuffer extends ByteArrayOutputStream {
+        AudioBuffer(int capacity) {
+            super(capacity);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
+
+    /**
+     * Parses a transcribe request. Returns null if a 4xx response has already been written.
+     *
+     * Raw mode: Content-Type is audio/*, video/webm or application/octet-stream. Languages come from the
+     * query string (sourceLang, targetLang); audioMime may override the Content-Type.
+     * JSON mode: everything else, the original {"audioBase64", "audioMime", "sourceLang", "targetLang"} envelope.
+     * Both modes may name the channel (incoming, outgoing) and the capture time (captureTs, epoch ms) for the scheduler,
+     * and may ask for several languages at once with targetLangs (then targetLang is the first of them).
+     * A client id (client, random per extension run) keys the rolling transcript history of its channels.
+     * A client that will speak the translation may ask for it to be synthesized right away: "tts" in the envelope
+     * (true, or an object with the /tts fields), or tts=1 with ttsVoice, ttsModel, ttsFormat, ttsInstructions, ttsSpeed.
+     *
+     * Raw WAV/PCM bodies are buffered instead of streamed when VAD is on, so they can be checked for silence;
+     * with deduplication on, every raw body is buffered so it can be hashed.
+     * With PCM ingest on, raw PCM and WAV become 16-bit mono WAV at the target rate with silence trimmed
+     * (audioMime "audio/wav"); raw PCM is converted block by block as the body is read.
+     * Records the "read" stage on m (for JSON this includes the base64 decode and the PCM conversion).
+     */
+    private static TranscribeRequest readTranscribeRequest(HttpExchange ex, SpeechDetector vad, TranscriptionDeduper dedupe,
+                                                           PcmIngest pcm, Metrics.Endpoint m) throws IOException {
+        long t = System.nanoTime();
+        String contentType = ex.getRequestHeaders().getFirst("Content-Type");
+
+        if (isRawAudioContentType(contentType)) {
+            Map<String, String> q = queryParams(ex);
+            String audioMime = q.getOrDefault("audioMime", contentType);
+            String sourceLang = q.getOrDefault("sourceLang", "auto");
+            String targetLang = q.getOrDefault("targetLang", "ru");
+            List<String> targetLangs = parseLangList(q.get("targetLangs"));
+            if (!targetLangs.isEmpty()) targetLang = targetLangs.get(0);
+            String channel = q.get("channel");
+            String client = q.get("client");
+            long captureTs = parseLongOr(q.get("captureTs"), 0);
+            TtsOptions tts = null;
+            if (Boolean.parseBoolean(q.get("tts")) || "1".equals(q.get("tts"))) {
+                String speed = q.get("ttsSpeed");
+                Double ttsSpeed = null;
+                try {
+                    if (speed != null && !speed.isBlank()) ttsSpeed = Double.parseDouble(speed.trim());
+                } catch (NumberFormatException e) {
+                    // default speed
+                }
+                tts = new TtsOptions(q.get("ttsVoice"), q.get("ttsModel"), q.get("ttsFormat"), q.get("ttsInstructions"), ttsSpeed);
+            }
+            if (targetLangs.size() > MAX_TARGET_LANGS) {
+                writeError(ex, 400, "Too many targetLangs (limit " + MAX_TARGET_LANGS + ")");
+                return null;
+            }
+
+            long length = contentLength(ex);
+            if (length == 0) {
+                writeError(ex, 400, "audio body is empty");
+                return null;
+            }
+            if (length > MAX_AUDIO_BODY_BYTES) {
+                writeError(ex, 413, "Request body too large (limit " + MAX_AUDIO_BODY_BYTES + " bytes)");
+                return null;
+            }
+            // Raw PCM is converted while it is read; it never sits in memory as is.
+            PcmIngest.Format raw = pcm.isEnabled() ? PcmIngest.Format.ofMime(audioMime) : null;
+            if (raw != null) {
+                LimitedInputStream body = new LimitedInputStream(ex.getRequestBody(), MAX_AUDIO_BODY_BYTES);
+                PcmIngest.Result r = pcm.convert(body, raw, length);
+                m.requestBytes(body.count());
+                m.lap("read", t);
+                return new TranscribeRequest("audio/wav", sourceLang, targetLang, targetLangs, channel, client, captureTs, r.wav(), r.length(), null, r.length(), tts);
+            }
+            if (vad.wantsBytes(audioMime) || dedupe.isEnabled() || pcm.wants(audioMime)) {
+                byte[] audio = readBodyLimited(ex, MAX_AUDIO_BODY_BYTES);
+                m.requestBytes(audio.length);
+                PcmIngest.Result r = pcm.wants(audioMime) ? pcm.convert(audio, audio.length, audioMime) : null;
+                m.lap("read", t);
+                if (r != null) {
+                    return new TranscribeRequest("audio/wav", sourceLang, targetLang, targetLangs, channel, client, captureTs, r.wav(), r.length(), null, r.length(), tts);
+                }
+                return new TranscribeRequest(audioMime, sourceLang, targetLang, targetLangs, channel, client, captureTs, audio, audio.length, null, audio.length, tts);
+            }
+            // Streamed into the upstream upload: reading is part of the "transcribe" stage.
+            m.requestBytes(length);
+            InputStream body = new LimitedInputStream(ex.getRequestBody(), MAX_AUDIO_BODY_BYTES);
+            return new TranscribeRequest(audioMime, sourceLang, targetLang, targetLangs, channel, client, captureTs, null, 0, body, length, tts);
+        }
+
+        long length = contentLength(ex);
+        if (length > MAX_AUDIO_BODY_BYTES) {
+            writeError(ex, 413, "Request body too large (limit " + MAX_AUDIO_BODY_BYTES + " bytes)");
+            return null;
+        }
+        LimitedInputStream body = new LimitedInputStream(ex.getRequestBody(), MAX_AUDIO_BODY_BYTES);
+        AudioEnvelope env;
+        try {
+            env = readAudioEnvelope(body, length);
+        } catch (IllegalArgumentException e) {
+            writeError(ex, 400, "audioBase64 is not valid base64");
+            return null;
+        }
+        m.requestBytes(body.count());
+        m.lap("read", t);
+
+        if (env.audioLength() == 0) {
+            writeError(ex, 400, "audioBase64 is empty");
+            return null;
+        }
+        if (env.targetLangs().size() > MAX_TARGET_LANGS) {
+            writeError(ex, 400, "Too many targetLangs (limit " + MAX_TARGET_LANGS + ")");
+            return null;
+        }
+        String targetLang = env.targetLangs().isEmpty() ? env.targetLang() : env.targetLangs().get(0);
+        PcmIngest.Result r = pcm.wants(env.audioMime()) ? pcm.convert(env.audio(), env.audioLength(), env.audioMime()) : null;
+        if (r != null) {
+            return new TranscribeRequest("audio/wav", env.sourceLang(), targetLang, env.targetLangs(), env.channel(), env.client(), env.captureTs(),
+                    r.wav(), r.length(), null, -1, env.tts());
+        }
+        return new TranscribeRequest(env.audioMime(), env.sourceLang(), targetLang, env.targetLangs(), env.channel(), env.client(), env.captureTs(),
+                env.audio(), env.audioLength(), null, -1, env.tts());
+    }
+
+    /** Most languages one transcribe request may fan out to. */
+    static final int MAX_TARGET_LANGS = 8;
+
+    interface LangTranslation {
+        String translate(String targetLang) throws IOException;
+    }
+
+    /** Translations by target language, in request order. Languages dropped as stale map to "". */
+    record FanOut(Map<String, String> translations, DeadlineScheduler.StaleException stale) {
+    }
+
+    /**
+     * Translates one transcript into every target language at once: the first on the calling thread, the
+     * others on the pool. A stale language maps to "" (the first StaleException is kept); other failures are thrown.
+     */
+    static FanOut translateAll(List<String> targets, ExecutorService pool, LangTranslation task) throws IOException {
+        List<Future<String>> others = new ArrayList<>(targets.size() - 1);
+        for (String lang : targets.subList(1, targets.size())) {
+            others.add(pool.submit(() -> task.translate(lang)));
+        }
+
+        Map<String, String> translations = new LinkedHashMap<>();
+        DeadlineScheduler.StaleException stale = null;
+        try {
+            translations.put(targets.get(0), task.translate(targets.get(0)));
+        } catch (DeadlineScheduler.StaleException e) {
+            translations.put(targets.get(0), "");
+            stale = e;
+        }
+        for (int i = 0; i < others.size(); i++) {
+            String lang = targets.get(i + 1);
+            try {
+                translations.put(lang, others.get(i).get());
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the " + lang + " translation", ie);
+            } catch (ExecutionException ee) {
+                Throwable cause = ee.getCause();
+                if (cause instanceof DeadlineScheduler.StaleException se) {
+                    translations.put(lang, "");
+                    if (stale == null) stale = se;
+                } else if (cause instanceof IOException io) {
+                    throw io;
+                } else if (cause instanceof RuntimeException re) {
+                    throw re;
+                } else {
+                    throw new IOException(cause);
+                }
+            }
+        }
+        return new FanOut(translations, stale);
+    }
+
+    private static boolean isRawAudioContentType(String contentType) {
+        if (contentType == null) return false;
+        String ct = contentType.trim().toLowerCase(Locale.ROOT);
+        return ct.startsWith("audio/") || ct.startsWith("video/webm") || ct.startsWith("application/octet-stream");
+    }
+
+    /** Largest streamed clip kept for the TTS cache (~8 min of mp3 at 128 kbit/s). */
+    static final int MAX_TTS_CACHE_CLIP_BYTES = 8_000_000;
+
+    /** Opens the TTS cache; if the disk tier cannot be opened, runs with the heap tier only. */
+    private static TtsCache openTtsCache(long heapBytes, String dir, long diskBytes, int segmentBytes) throws IOException {
+        if (!dir.isBlank()) {
+            try {
+                TtsCache cache = new TtsCache(heapBytes, Path.of(dir), diskBytes, segmentBytes);
+                System.out.println("TTS cache: " + cache.statsJson(MAPPER).path("diskEntries").asInt() + " clips on disk in " + dir);
+                return cache;
+            } catch (Exception e) {
+                System.err.println("TTS cache: disk tier disabled (" + dir + "): " + safeErr(e));
+            }
+        }
+        return new TtsCache(heapBytes, null, 0, segmentBytes);
+    }
+
+    /**
+     * Loads the translation cache snapshot (if configured) and keeps it fresh:
+     * periodically on a daemon thread and once more on shutdown (Ctrl+C).
+     */
+    private static void startCacheSnapshots(TranslationCache cache, long everySeconds) {
+        try {
+            int loaded = cache.loadSnapshot(MAPPER);
+            if (loaded > 0) System.out.println("Translation cache: loaded " + loaded + " entries from snapshot");
+        } catch (Exception e) {
+            System.err.println("Translation cache: ignoring unreadable snapshot: " + safeErr(e));
+        }
+
+        Runnable save = () -> {
+            try {
+                cache.saveSnapshot(MAPPER);
+            } catch (Exception e) {
+                System.err.println("Translation cache: snapshot failed: " + safeErr(e));
+            }
+        };
+        if (everySeconds > 0) {
+            ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "translation-cache-snapshot");
+                t.setDaemon(true);
+                return t;
+            });
+            timer.scheduleWithFixedDelay(save, everySeconds, everySeconds, TimeUnit.SECONDS);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(save, "translation-cache-snapshot-on-exit"));
+    }
+
+    /** Marks a result as dropped by the scheduler: "skipped": "stale", why, and how far behind it was. */
+    private static ObjectNode stale(ObjectNode json, DeadlineScheduler.StaleException e) {
+        return json.put("skipped", "stale")
+                .put("reason", e.reason())
+                .put("lagMs", e.ticket().ageMillis());
+    }
+
+    /**
+     * Marks what the transcript history changed: "skipped": "repeat" (nothing translated), or the new
+     * tail that was translated instead of the whole transcript ("translatedText", "overlapTokens").
+     */
+    static ObjectNode overlap(ObjectNode json, TranscriptHistory.Verdict seen) {
+        return switch (seen.kind()) {
+            case REPEAT -> json.put("skipped", "repeat");
+            case TRIMMED -> json.put("translatedText", seen.text()).put("overlapTokens", seen.skippedTokens());
+            case NEW -> json;
+        };
     }
 
     private static String safeErr(Exception e) {
@@ -245,54 +1694,126 @@ public final class Main {
 
     // -------------------- OpenAI client --------------------
 
-    static final class OpenAiClient {
+    static final class OpenAiClient implements SpeechBackend {
+        private final String name;
+        private final Set<Capability> capabilities;
         private final String baseUrl;
         private final String apiKey;
         private final String transcribeModel;
         private final String textModel;
+        private final TtsDefaults tts;
+
+        private final HttpClient.Version httpVersion;
+        private final CompletableFuture<HttpClient> http; // built in the background at startup
+        private final MultipartBody multipart;
+
+        // Labelled with the backend name, so local and cloud latencies stay apart.
+        private final Metrics.Upstream upTranscribe;
+        private final Metrics.Upstream upTranslate;
+        private final Metrics.Upstream upTranslateBatch;
+        private final Metrics.Upstream upTranslateStream;
+        private final Metrics.Upstream upTts;
+        private final Metrics.Upstream upTtsStream;
+        private final Metrics.Upstream upPing;
+
+        // Budgets, retries and breakers; the fixed timeouts below are the upper bound of each budget.
+        private final UpstreamGuard guardTranscribe;
+        private final UpstreamGuard guardTranslate;
+        private final UpstreamGuard guardTts;
+
+        // Glossary terms for prompts; null = none.
+        private final TranslationMemory memory;
+
+        private volatile long lastUsedNanos = System.nanoTime();
+
+        OpenAiClient(String name,
+                     Set<Capability> capabilities,
+                     String baseUrl,
+                     String apiKey,
+                     String transcribeModel,
+                     String textModel,
+                     TtsDefaults tts,
+                     TranslationMemory memory,
+                     HttpClient.Version httpVersion,
+                     CompletableFuture<HttpClient> http,
+                     UpstreamGuard.Config resilience) {
+            this.name = Objects.requireNonNull(name);
+            this.capabilities = Collections.unmodifiableSet(EnumSet.copyOf(capabilities));
+            this.baseUrl = stripTrailingSlash(Objects.requireNonNull(baseUrl));
+            this.apiKey = Objects.requireNonNull(apiKey);
+            this.transcribeModel = Objects.requireNonNull(transcribeModel);
+            this.textModel = Objects.requireNonNull(textModel);
+            this.tts = Objects.requireNonNull(tts);
+            this.memory = memory;
+            this.multipart = new MultipartBody("----LocalMeetTranslatorBoundary" + randomToken(24), this.transcribeModel);
+            this.httpVersion = Objects.requireNonNull(httpVersion);
+            this.http = Objects.requireNonNull(http);
+            this.guardTranscribe = new UpstreamGuard(name, "transcribe", resilience, 120_000, false);
+            this.guardTranslate = new UpstreamGuard(name, "translate", resilience, 60_000, true);
+            this.guardTts = new UpstreamGuard(name, "TTS", resilience, 60_000, false);
+            this.upTranscribe = METRICS.upstream(name, "transcribe");
+            this.upTranslate = METRICS.upstream(name, "translate");
+            this.upTranslateBatch = METRICS.upstream(name, "translate_batch");
+            this.upTranslateStream = METRICS.upstream(name, "translate_stream");
+            this.upTts = METRICS.upstream(name, "tts");
+            this.upTtsStream = METRICS.upstream(name, "tts_stream");
+            this.upPing = METRICS.upstream(name, "ping");
+        }
+
+        /** Retry, hedge and breaker counters per call kind. */
+        ObjectNode guardStatsJson(ObjectMapper mapper) {
+            ObjectNode json = mapper.createObjectNode();
+            json.set("transcribe", guardTranscribe.statsJson(mapper));
+            json.set("translate", guardTranslate.statsJson(mapper));
+            json.set("tts", guardTts.statsJson(mapper));
+            return json;
+        }
 
-        private final boolean enableTts;
-        private final String ttsModel;
-        private final String ttsVoice;
-        private final String ttsFormat;
-        private final String ttsInstructions;
-        private final double ttsSpeed;
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public Set<Capability> capabilities() {
+            return capabilities;
+        }
+
+        HttpClient.Version httpVersion() {
+            return httpVersion;
+        }
 
-        private final HttpClient http;
+        private HttpClient http() throws IOException {
+            try {
+                return http.join();
+            } catch (CompletionException e) {
+                throw new IOException("HTTP client could not be created: " + e.getCause(), e.getCause());
+            }
+        }
 
-        OpenAiClient(String baseUrl,
-                     String apiKey,
-                     String transcribeModel,
-                     String textModel,
-                     boolean enableTts,
-                     String ttsModel,
-                     String ttsVoice,
-                     String ttsFormat,
-                     String ttsInstructions,
-                     double ttsSpeed) {
-            this.baseUrl = stripTrailingSlash(Objects.requireNonNull(baseUrl));
-            this.apiKey = Objects.requireNonNull(apiKey);
-            this.transcribeModel = Objects.requireNonNull(transcribeModel);
-            this.textModel = Objects.requireNonNull(textModel);
-            this.enableTts = enableTts;
-            this.ttsModel = Objects.requireNonNull(ttsModel);
-            this.ttsVoice = Objects.requireNonNull(ttsVoice);
-            this.ttsFormat = Objects.requireNonNull(ttsFormat);
-            this.ttsInstructions = ttsInstructions == null ? "" : ttsInstructions;
-            this.ttsSpeed = ttsSpeed;
-            this.http = HttpClient.newBuilder()
-                    .connectTimeout(Duration.ofSeconds(20))
-                    .build();
+        /** Time since the last upstream call started. */
+        long idleMillis() {
+            return (System.nanoTime() - lastUsedNanos) / 1_000_000;
         }
 
-        boolean isTtsEnabled() {
-            return enableTts;
+        /**
+         * GET /v1/models: opens the pooled connection (DNS, TCP, TLS, HTTP/2) or keeps it from idling out.
+         * Any HTTP status means the connection is up; the body is discarded.
+         */
+        java.net.http.HttpResponse<byte[]> ping() throws IOException {
+            java.net.http.HttpRequest request = java.net.http.HttpRequest.newBuilder()
+                    .uri(URI.create(baseUrl + "/v1/models"))
+                    .timeout(Duration.ofSeconds(20))
+                    .header("Authorization", "Bearer " + apiKey)
+                    .GET()
+                    .build();
+            return send(null, upPing, request, 0, "ping");
         }
 
         
 
         String getDefaultTtsFormat() {
-            return ttsFormat;
+            return tts.format();
         }
         private static String normalizeTranscribeMime(String mime) {
             if (mime == null) return "application/octet-stream";
@@ -316,27 +1837,41 @@ public final class Main {
             return m;
         }
 
-String transcribe(byte[] audio, String audioMime) throws IOException {
-            String endpoint = baseUrl + "/v1/audio/transcriptions";
+        String transcribe(byte[] audio, String audioMime) throws IOException {
+            return transcribe(audio, 0, audio.length, audioMime);
+        }
 
-            String boundary = "----LocalMeetTranslatorBoundary" + randomToken(12);
-            byte[] multipart = buildMultipart(boundary, audio, normalizeTranscribeMime(audioMime), transcribeModel);
+        /** Transcribes audio[offset, offset+length) without copying it into the multipart body. */
+        @Override
+        public String transcribe(byte[] audio, int offset, int length, String audioMime) throws IOException {
+            return sendTranscription(multipart.publisher(audio, offset, length, normalizeTranscribeMime(audioMime)));
+        }
+
+        /**
+         * Transcribes audio read from a stream (e.g. a raw request body) without buffering it:
+         * the audio part is pulled from the stream while the upstream request is being sent.
+         * length < 0 means unknown (chunked upload).
+         */
+        @Override
+        public String transcribe(InputStream audio, long length, String audioMime) throws IOException {
+            return sendTranscription(multipart.publisher(audio, length, normalizeTranscribeMime(audioMime)));
+        }
+
+        private String sendTranscription(java.net.http.HttpRequest.BodyPublisher body) throws IOException {
+            String endpoint = baseUrl + "/v1/audio/transcriptions";
 
             java.net.http.HttpRequest request = java.net.http.HttpRequest.newBuilder()
                     .uri(URI.create(endpoint))
                     .timeout(Duration.ofSeconds(120))
                     .header("Authorization", "Bearer " + apiKey)
-                    .header("Content-Type", "multipart/form-data; boundary=" + boundary)
-                    .POST(java.net.http.HttpRequest.BodyPublishers.ofByteArray(multipart))
+                    .header("Content-Type", multipart.contentType())
+                    .POST(body)
                     .build();
 
-            java.net.http.HttpResponse<byte[]> resp;
-            try {
-                resp = http.send(request, java.net.http.HttpResponse.BodyHandlers.ofByteArray());
-            } catch (InterruptedException ie) {
-                Thread.currentThread().interrupt();
-                throw new IOException("OpenAI transcribe interrupted", ie);
-            }
+            // A streamed body (length unknown to the publisher, or pulled from the client) cannot be sent twice.
+            boolean replayable = body instanceof MultipartBody.BuffersPublisher;
+            java.net.http.HttpResponse<byte[]> resp = send(replayable ? guardTranscribe : null, upTranscribe, request,
+                    body.contentLength(), "transcribe");
 
             if (resp.statusCode() / 100 != 2) {
                 throw new IOException("OpenAI transcribe failed: HTTP " + resp.statusCode() + " " + new String(resp.body(), StandardCharsets.UTF_8));
@@ -351,48 +1886,213 @@ String transcribe(byte[] audio, String audioMime) throws IOException {
             return textNode.asText("");
         }
 
-        String translateText(String sourceLang, String targetLang, String text) throws IOException {
+        @Override
+        public String translateText(String sourceLang, String targetLang, String text) throws IOException {
             if (text == null || text.isBlank()) {
                 return "";
             }
 
-            String endpoint = baseUrl + "/v1/responses";
+            return postResponses(buildTranslatePrompt(sourceLang, targetLang, text, glossary(sourceLang, targetLang, text)), upTranslate);
+        }
+
+        /**
+         * Translates several texts with one /v1/responses call.
+         * Throws BatchFormatException if the answer is not a JSON array of exactly texts.size() strings.
+         */
+        @Override
+        public List<String> translateBatch(String sourceLang, String targetLang, List<String> texts) throws IOException {
+            String extracted = postResponses(buildBatchTranslatePrompt(sourceLang, targetLang, texts,
+                    memory == null ? List.of() : memory.glossary(sourceLang, targetLang, texts)), upTranslateBatch);
+
+            String jsonText = extracted.trim();
+            // Models sometimes wrap JSON in a markdown fence despite the instructions.
+            if (jsonText.startsWith("```")) {
+                int firstNl = jsonText.indexOf('\n');
+                int lastFence = jsonText.lastIndexOf("```");
+                if (firstNl > 0 && lastFence > firstNl) jsonText = jsonText.substring(firstNl + 1, lastFence).trim();
+            }
+
+            JsonNode arr;
+            try {
+                arr = MAPPER.readTree(jsonText);
+            } catch (IOException e) {
+                throw new BatchFormatException("Batch translation is not JSON: " + extracted);
+            }
+            if (arr == null || !arr.isArray() || arr.size() != texts.size()) {
+                throw new BatchFormatException("Batch translation has wrong shape (expected " + texts.size() + " items): " + extracted);
+            }
+            List<String> out = new ArrayList<>(texts.size());
+            for (JsonNode n : arr) {
+                if (!n.isTextual()) throw new BatchFormatException("Batch translation item is not a string: " + extracted);
+                out.add(n.asText().trim());
+            }
+            return out;
+        }
+
+        /** One non-streaming /v1/responses call through the translate guard; returns its output_text (never blank). */
+        private String postResponses(String prompt, Metrics.Upstream metrics) throws IOException {
+            java.net.http.HttpRequest request = buildResponsesRequest(prompt, false);
+
+            java.net.http.HttpResponse<byte[]> resp = send(guardTranslate, metrics, request, request.bodyPublisher().map(java.net.http.HttpRequest.BodyPublisher::contentLength).orElse(-1L), "translate");
+
+            if (resp.statusCode() / 100 != 2) {
+                throw new IOException("OpenAI responses failed: HTTP " + resp.statusCode() + " " + new String(resp.body(), StandardCharsets.UTF_8));
+            }
+
+            JsonNode json = MAPPER.readTree(resp.body());
+            String extracted = extractOutputText(json);
+            if (extracted.isBlank()) {
+                throw new IOException("OpenAI responses returned no output_text: " + json);
+            }
+            return extracted;
+        }
+
+        /**
+         * Same as translateText, but asks the Responses API to stream and hands every
+         * output_text delta to onDelta as it arrives. Returns the full translation.
+         */
+        @Override
+        public String translateTextStreaming(String sourceLang, String targetLang, String text, DeltaListener onDelta) throws IOException {
+            if (text == null || text.isBlank()) {
+                return "";
+            }
+
+            java.net.http.HttpRequest request = buildResponsesRequest(
+                    buildTranslatePrompt(sourceLang, targetLang, text, glossary(sourceLang, targetLang, text)), true);
+
+            long started = upTranslateStream.begin();
+            long sent = request.bodyPublisher().map(java.net.http.HttpRequest.BodyPublisher::contentLength).orElse(-1L);
+            long received = 0;
+            java.net.http.HttpResponse<java.util.stream.Stream<String>> resp;
+            try {
+                lastUsedNanos = System.nanoTime();
+                resp = http().send(request, java.net.http.HttpResponse.BodyHandlers.ofLines());
+            } catch (InterruptedException ie) {
+                upTranslateStream.end(started, 0, sent, 0);
+                Thread.currentThread().interrupt();
+                throw new IOException("OpenAI translate interrupted", ie);
+            } catch (IOException e) {
+                upTranslateStream.end(started, 0, sent, 0);
+                throw e;
+            }
+
+            try (java.util.stream.Stream<String> lines = resp.body()) {
+                if (resp.statusCode() / 100 != 2) {
+                    throw new IOException("OpenAI responses failed: HTTP " + resp.statusCode() + " " + String.join("\n", (Iterable<String>) lines::iterator));
+                }
+
+                StringBuilder deltas = new StringBuilder();
+                String completed = null;
+                for (String line : (Iterable<String>) lines::iterator) {
+                    received += line.length() + 1;
+                    // Only "data:" lines carry payload; "event:" lines repeat the type that is also inside the JSON.
+                    if (!line.startsWith("data:")) continue;
+                    String data = line.substring(5).trim();
+                    if (data.isEmpty() || "[DONE]".equals(data)) continue;
+
+                    JsonNode event = MAPPER.readTree(data);
+                    String type = event.path("type").asText("");
+                    switch (type) {
+                        case "response.output_text.delta" -> {
+                            String delta = event.path("delta").asText("");
+                            if (!delta.isEmpty()) {
+                                deltas.append(delta);
+                                onDelta.onDelta(delta);
+                            }
+                        }
+                        case "response.completed" -> completed = extractOutputText(event.path("response"));
+                        case "response.failed", "response.incomplete", "error" ->
+                                throw new IOException("OpenAI responses stream failed: " + data);
+                        default -> {
+                            // created/in_progress/content_part/... carry nothing we need
+                        }
+                    }
+                }
+
+                String result = (completed != null && !completed.isBlank()) ? completed : deltas.toString().trim();
+                if (result.isBlank()) {
+                    throw new IOException("OpenAI responses stream returned no output_text");
+                }
+                return result;
+            } finally {
+                // Latency covers the whole stream; received counts characters of the event lines.
+                upTranslateStream.end(started, resp.statusCode(), sent, received);
+            }
+        }
 
-            String prompt = buildTranslatePrompt(sourceLang, targetLang, text);
+        /**
+         * Sends a request with a byte[] response and records it under metrics (op is used in error messages).
+         * Through guard (budget, retries, hedging, breaker) unless it is null; the body must then be replayable.
+         */
+        private java.net.http.HttpResponse<byte[]> send(UpstreamGuard guard,
+                                                        Metrics.Upstream metrics,
+                                                        java.net.http.HttpRequest request,
+                                                        long sentBytes,
+                                                        String op) throws IOException {
+            long started = metrics.begin();
+            java.net.http.HttpResponse<byte[]> resp = null;
+            try {
+                lastUsedNanos = System.nanoTime();
+                resp = guard == null
+                        ? http().send(request, java.net.http.HttpResponse.BodyHandlers.ofByteArray())
+                        : guard.send(http(), request, java.net.http.HttpResponse.BodyHandlers.ofByteArray(), true);
+                return resp;
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new IOException("OpenAI " + op + " interrupted", ie);
+            } finally {
+                metrics.end(started,
+                        resp == null ? 0 : resp.statusCode(),
+                        sentBytes,
+                        resp == null || resp.body() == null ? 0 : resp.body().length);
+            }
+        }
+
+        private java.net.http.HttpRequest buildResponsesRequest(String prompt, boolean stream) throws IOException {
+            String endpoint = baseUrl + "/v1/responses";
 
             var body = MAPPER.createObjectNode()
                     .put("model", textModel)
                     .put("input", prompt)
                     .put("temperature", 0);
+            if (stream) {
+                body.put("stream", true);
+            }
 
             byte[] jsonBytes = MAPPER.writeValueAsBytes(body);
 
-            java.net.http.HttpRequest request = java.net.http.HttpRequest.newBuilder()
+            return java.net.http.HttpRequest.newBuilder()
                     .uri(URI.create(endpoint))
                     .timeout(Duration.ofSeconds(60))
                     .header("Authorization", "Bearer " + apiKey)
                     .header("Content-Type", "application/json")
+                    .header("Accept", stream ? "text/event-stream" : "application/json")
                     .POST(java.net.http.HttpRequest.BodyPublishers.ofByteArray(jsonBytes))
                     .build();
+        }
 
-            java.net.http.HttpResponse<byte[]> resp;
-            try {
-                resp = http.send(request, java.net.http.HttpResponse.BodyHandlers.ofByteArray());
-            } catch (InterruptedException ie) {
-                Thread.currentThread().interrupt();
-                throw new IOException("OpenAI translate interrupted", ie);
-            }
-
-            if (resp.statusCode() / 100 != 2) {
-                throw new IOException("OpenAI responses failed: HTTP " + resp.statusCode() + " " + new String(resp.body(), StandardCharsets.UTF_8));
-            }
-
-            JsonNode json = MAPPER.readTree(resp.body());
-            String extracted = extractOutputText(json);
-            if (extracted.isBlank()) {
-                throw new IOException("OpenAI responses returned no output_text: " + json);
+        /** The configured TTS settings; shared by every backend, so a clip is the same whichever one made it. */
+        record TtsDefaults(boolean enabled, String model, String voice, String format, String instructions, double speed) {
+
+            /** Applies the defaults to the per-request overrides (null or blank = use default). */
+            TtsParams resolve(String text,
+                              String voiceOverride,
+                              String modelOverride,
+                              String responseFormatOverride,
+                              String instructionsOverride,
+                              Double speedOverride) {
+                String m = (modelOverride == null || modelOverride.isBlank()) ? model : modelOverride.trim();
+                String v = (voiceOverride == null || voiceOverride.isBlank()) ? voice : voiceOverride.trim();
+                String f = (responseFormatOverride == null || responseFormatOverride.isBlank()) ? format : responseFormatOverride.trim();
+                double s = (speedOverride == null) ? speed : speedOverride;
+
+                String i = (instructionsOverride == null || instructionsOverride.isBlank()) ? instructions : instructionsOverride;
+                // tts-1 models do not accept instructions; they are not sent, so they are not part of the identity either.
+                if (i == null || i.isBlank() || m.startsWith("tts-1")) {
+                    i = "";
+                }
+                return new TtsParams(text == null ? "" : text, v, m, f, s, i);
             }
-            return extracted;
         }
 
         byte[] ttsAudio(String text,
@@ -401,54 +2101,117 @@ String transcribe(byte[] audio, String audioMime) throws IOException {
                         String responseFormatOverride,
                         String instructionsOverride,
                         Double speedOverride) throws IOException {
-            if (text == null || text.isBlank()) {
+            return ttsAudio(tts.resolve(text, voiceOverride, modelOverride, responseFormatOverride, instructionsOverride, speedOverride));
+        }
+
+        @Override
+        public byte[] ttsAudio(TtsParams p) throws IOException {
+            if (p.text().isBlank()) {
                 return new byte[0];
             }
-        
+
+            java.net.http.HttpRequest request = buildTtsRequest(p);
+            java.net.http.HttpResponse<byte[]> resp = send(guardTts, upTts, request,
+                    request.bodyPublisher().map(java.net.http.HttpRequest.BodyPublisher::contentLength).orElse(-1L), "TTS");
+
+            if (resp.statusCode() / 100 != 2) {
+                throw new IOException("OpenAI TTS failed: HTTP " + resp.statusCode() + " " + new String(resp.body(), StandardCharsets.UTF_8));
+            }
+            return resp.body();
+        }
+
+        /**
+         * Same as ttsAudio, but returns the upstream body as it arrives instead of waiting for the whole clip.
+         * Throws before returning if the upstream answered with an error status. The caller must close the stream.
+         */
+        @Override
+        public InputStream ttsAudioStream(TtsParams p) throws IOException {
+            java.net.http.HttpRequest request = buildTtsRequest(p);
+            long sent = request.bodyPublisher().map(java.net.http.HttpRequest.BodyPublisher::contentLength).orElse(-1L);
+
+            long started = upTtsStream.begin();
+            java.net.http.HttpResponse<InputStream> resp;
+            try {
+                lastUsedNanos = System.nanoTime();
+                // Retries happen before the first audio byte is handed out, never in the middle of a clip.
+                resp = guardTts.send(http(), request, java.net.http.HttpResponse.BodyHandlers.ofInputStream(), true);
+            } catch (IOException e) {
+                upTtsStream.end(started, 0, sent, 0);
+                throw e;
+            }
+
+            if (resp.statusCode() / 100 != 2) {
+                byte[] err;
+                try (InputStream in = resp.body()) {
+                    err = in.readNBytes(64 * 1024);
+                }
+                upTtsStream.end(started, resp.statusCode(), sent, err.length);
+                throw new IOException("OpenAI TTS failed: HTTP " + resp.statusCode() + " " + new String(err, StandardCharsets.UTF_8));
+            }
+
+            int status = resp.statusCode();
+            return new FilterInputStream(resp.body()) {
+                private long received;
+                private boolean closed;
+
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b >= 0) received++;
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    int n = super.read(b, off, len);
+                    if (n > 0) received += n;
+                    return n;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    if (closed) return;
+                    closed = true;
+                    try {
+                        super.close();
+                    } finally {
+                        // Latency covers the whole clip, until the last byte was read.
+                        upTtsStream.end(started, status, sent, received);
+                    }
+                }
+            };
+        }
+
+        private java.net.http.HttpRequest buildTtsRequest(TtsParams p) throws IOException {
             String endpoint = baseUrl + "/v1/audio/speech";
-        
-            String model = (modelOverride == null || modelOverride.isBlank()) ? ttsModel : modelOverride.trim();
-            String voice = (voiceOverride == null || voiceOverride.isBlank()) ? ttsVoice : voiceOverride.trim();
-            String responseFormat = (responseFormatOverride == null || responseFormatOverride.isBlank()) ? ttsFormat : responseFormatOverride.trim();
-            double speed = (speedOverride == null) ? ttsSpeed : speedOverride;
-        
+
             var body = MAPPER.createObjectNode()
-                    .put("model", model)
-                    .put("voice", voice)
-                    .put("input", text)
-                    .put("response_format", responseFormat)
-                    .put("speed", speed);
-        
-            String instructions = (instructionsOverride == null || instructionsOverride.isBlank()) ? ttsInstructions : instructionsOverride;
-            if (instructions != null && !instructions.isBlank() && !model.startsWith("tts-1")) {
-                body.put("instructions", instructions);
+                    .put("model", p.model())
+                    .put("voice", p.voice())
+                    .put("input", p.text())
+                    .put("response_format", p.format())
+                    .put("speed", p.speed());
+            if (!p.instructions().isEmpty()) {
+                body.put("instructions", p.instructions());
             }
-        
+
             byte[] jsonBytes = MAPPER.writeValueAsBytes(body);
-        
-            java.net.http.HttpRequest request = java.net.http.HttpRequest.newBuilder()
+
+            return java.net.http.HttpRequest.newBuilder()
                     .uri(URI.create(endpoint))
                     .timeout(Duration.ofSeconds(60))
                     .header("Authorization", "Bearer " + apiKey)
                     .header("Content-Type", "application/json")
                     .POST(java.net.http.HttpRequest.BodyPublishers.ofByteArray(jsonBytes))
                     .build();
-        
-            java.net.http.HttpResponse<byte[]> resp;
-            try {
-                resp = http.send(request, java.net.http.HttpResponse.BodyHandlers.ofByteArray());
-            } catch (InterruptedException ie) {
-                Thread.currentThread().interrupt();
-                throw new IOException("OpenAI TTS interrupted", ie);
-            }
-        
-            if (resp.statusCode() / 100 != 2) {
-                throw new IOException("OpenAI TTS failed: HTTP " + resp.statusCode() + " " + new String(resp.body(), StandardCharsets.UTF_8));
-            }
-            return resp.body();
         }
-        
-                private static String buildTranslatePrompt(String sourceLang, String targetLang, String text) {
+
+        private List<TranslationMemory.Term> glossary(String sourceLang, String targetLang, String text) {
+            return memory == null ? List.of() : memory.glossary(sourceLang, targetLang, text);
+        }
+
+        private static String buildTranslatePrompt(String sourceLang, String targetLang, String text,
+                                                   List<TranslationMemory.Term> terms) {
             String src = (sourceLang == null || sourceLang.isBlank()) ? "auto" : sourceLang.trim();
             String tgt = (targetLang == null || targetLang.isBlank()) ? "ru" : targetLang.trim();
 
@@ -460,12 +2223,44 @@ String transcribe(byte[] audio, String audioMime) throws IOException {
                     + "1) Return ONLY the translation.\n"
                     + "2) Preserve meaning, numbers, names, and formatting.\n"
                     + "3) If the source is already in target language, return it unchanged.\n"
+                    + glossaryRule(4, terms)
                     + "\n"
                     + "Text:\n"
                     + text;
         }
 
-        private static String extractOutputText(JsonNode responseJson) {
+        private static String buildBatchTranslatePrompt(String sourceLang, String targetLang, List<String> texts,
+                                                        List<TranslationMemory.Term> terms) throws IOException {
+            String src = (sourceLang == null || sourceLang.isBlank()) ? "auto" : sourceLang.trim();
+            String tgt = (targetLang == null || targetLang.isBlank()) ? "ru" : targetLang.trim();
+
+            return ""
+                    + "Task: Translate each item of the JSON array below.\n"
+                    + "Source language: " + src + "\n"
+                    + "Target language: " + tgt + "\n"
+                    + "Rules:\n"
+                    + "1) Return ONLY a JSON array of strings with exactly " + texts.size() + " items, in the same order.\n"
+                    + "2) Item i of the answer is the translation of item i of the input. Do not merge, split or drop items.\n"
+                    + "3) Preserve meaning, numbers, names, and formatting.\n"
+                    + "4) If an item is already in target language, return it unchanged.\n"
+                    + glossaryRule(5, terms)
+                    + "\n"
+                    + "Items:\n"
+                    + MAPPER.writeValueAsString(texts);
+        }
+
+        /** Rule n pinning translation-memory terms, or nothing without terms. */
+        private static String glossaryRule(int n, List<TranslationMemory.Term> terms) {
+            if (terms.isEmpty()) return "";
+            StringBuilder sb = new StringBuilder()
+                    .append(n).append(") Translate these terms exactly as given (source => target):\n");
+            for (TranslationMemory.Term t : terms) {
+                sb.append("   - ").append(t.source()).append(" => ").append(t.target()).append('\n');
+            }
+            return sb.toString();
+        }
+
+        static String extractOutputText(JsonNode responseJson) {
             StringBuilder sb = new StringBuilder();
 
             JsonNode output = responseJson.get("output");
@@ -489,46 +2284,244 @@ String transcribe(byte[] audio, String audioMime) throws IOException {
             return sb.toString().trim();
         }
 
-        private static byte[] buildMultipart(String boundary, byte[] audioBytes, String audioMime, String model) throws IOException {
-            String filename = "audio" + guessExt(audioMime);
+        private static String stripTrailingSlash(String s) {
+            while (s.endsWith("/")) s = s.substring(0, s.length() - 1);
+            return s;
+        }
+    }
+
+    // -------------------- Concurrency --------------------
+
+    /**
+     * Caps the number of requests of one kind that may talk to the upstream at the same time.
+     * Callers beyond the limit wait for a slot (cheap on virtual threads).
+     *
+     * A released slot goes straight to the most urgent waiter: lane first (incoming, outgoing, tts,
+     * then requests without a ticket), earliest deadline next, arrival order last. A waiter whose
+     * deadline passes, or that is the oldest of more than maxQueuedPerLane waiters of its lane, leaves
+     * the queue with a StaleException instead of a slot.
+     */
+    static final class EndpointLimiter {
+        private final String name;
+        private final int limit;
+        private final DeadlineScheduler scheduler;
+        private final Metrics.Histogram waited;
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final PriorityQueue<Waiter> queue = new PriorityQueue<>(); // guarded by lock
+        private int inUse; // guarded by lock
+        private long arrivals; // guarded by lock
+
+        private static final class Waiter implements Comparable<Waiter> {
+            final DeadlineScheduler.Ticket ticket;
+            final int rank;
+            final long deadline;
+            final long seq;
+            final Condition ready;
+            boolean granted;
+            boolean superseded;
+
+            Waiter(DeadlineScheduler.Ticket ticket, long seq, Condition ready) {
+                this.ticket = ticket;
+                this.rank = ticket == null ? DeadlineScheduler.Lane.values().length : ticket.lane().ordinal();
+                this.deadline = ticket == null ? Long.MAX_VALUE : ticket.deadlineMillis();
+                this.seq = seq;
+                this.ready = ready;
+            }
 
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            @Override
+            public int compareTo(Waiter o) {
+                if (rank != o.rank) return Integer.compare(rank, o.rank);
+                if (deadline != o.deadline) return Long.compare(deadline, o.deadline);
+                return Long.compare(seq, o.seq);
+            }
+        }
 
-            out.write(("--" + boundary + "\r\n").getBytes(StandardCharsets.UTF_8));
-            out.write(("Content-Disposition: form-data; name=\"model\"\r\n\r\n").getBytes(StandardCharsets.UTF_8));
-            out.write(model.getBytes(StandardCharsets.UTF_8));
-            out.write("\r\n".getBytes(StandardCharsets.UTF_8));
+        EndpointLimiter(String name, int limit, DeadlineScheduler scheduler) {
+            if (limit < 1) {
+                throw new IllegalStateException("Concurrency limit for " + name + " must be >= 1, got " + limit);
+            }
+            this.name = name;
+            this.limit = limit;
+            this.scheduler = scheduler;
+            this.waited = METRICS.histogram("local_meet_limiter_wait_seconds", "Time spent waiting for an upstream slot", "limiter", name);
+            METRICS.gauge("local_meet_limiter_in_use", "Upstream slots in use", this::inUse, "limiter", name);
+            METRICS.gauge("local_meet_limiter_queued", "Requests waiting for an upstream slot", this::queued, "limiter", name);
+        }
 
-            out.write(("--" + boundary + "\r\n").getBytes(StandardCharsets.UTF_8));
-            out.write(("Content-Disposition: form-data; name=\"file\"; filename=\"" + filename + "\"\r\n").getBytes(StandardCharsets.UTF_8));
-            out.write(("Content-Type: " + audioMime + "\r\n\r\n").getBytes(StandardCharsets.UTF_8));
-            out.write(audioBytes);
-            out.write("\r\n".getBytes(StandardCharsets.UTF_8));
+        int limit() {
+            return limit;
+        }
 
-            out.write(("--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        /** A slot with no deadline, behind every request that has a ticket. */
+        Permit acquire() throws IOException {
+            return acquire(null);
+        }
 
-            return out.toByteArray();
+        /**
+         * Waits for a slot in the ticket's lane and deadline order.
+         *
+         * @throws DeadlineScheduler.StaleException if the deadline passes first, or newer requests of the lane push this one out
+         */
+        Permit acquire(DeadlineScheduler.Ticket ticket) throws IOException {
+            long t = System.nanoTime();
+            lock.lock();
+            try {
+                scheduler.check(ticket);
+                if (inUse < limit && queue.isEmpty()) {
+                    inUse++;
+                    return admitted(ticket, t);
+                }
+
+                Waiter w = new Waiter(ticket, arrivals++, lock.newCondition());
+                queue.add(w);
+                shedOverflow(w);
+                try {
+                    while (!w.granted && !w.superseded) {
+                        if (w.deadline == Long.MAX_VALUE) {
+                            w.ready.await();
+                            continue;
+                        }
+                        long left = w.deadline - System.currentTimeMillis();
+                        if (left <= 0) break;
+                        w.ready.await(left, TimeUnit.MILLISECONDS);
+                    }
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    leave(w);
+                    throw new IOException("Interrupted while waiting for a " + name + " slot", ie);
+                }
+                if (w.superseded) throw scheduler.superseded(ticket);
+                if (!w.granted) {
+                    queue.remove(w);
+                    throw scheduler.expired(ticket);
+                }
+                return admitted(ticket, t);
+            } finally {
+                lock.unlock();
+            }
         }
 
-        private static String guessExt(String mime) {
-            if (mime == null) return ".bin";
-            String m = mime.toLowerCase(Locale.ROOT);
-            if (m.contains("webm")) return ".webm";
-            if (m.contains("wav")) return ".wav";
-            if (m.contains("mpeg") || m.contains("mp3")) return ".mp3";
-            if (m.contains("mp4") || m.contains("m4a")) return ".m4a";
-            if (m.contains("ogg")) return ".ogg";
-            return ".bin";
+        private Permit admitted(DeadlineScheduler.Ticket ticket, long waitStart) {
+            waited.recordNanos(System.nanoTime() - waitStart);
+            if (ticket != null) scheduler.admitted(ticket);
+            return this::release;
         }
 
-        private static String stripTrailingSlash(String s) {
-            while (s.endsWith("/")) s = s.substring(0, s.length() - 1);
-            return s;
+        /** Hands the slot to the most urgent waiter, or frees it. */
+        private void release() {
+            lock.lock();
+            try {
+                Waiter next = queue.poll();
+                if (next == null) {
+                    inUse--;
+                } else {
+                    next.granted = true;
+                    next.ready.signal();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /** An interrupted waiter gives back a slot it was granted in the meantime. */
+        private void leave(Waiter w) {
+            if (!queue.remove(w) && w.granted) release();
+        }
+
+        /** Too many waiters in one lane: the oldest of them would only produce a late result. */
+        private void shedOverflow(Waiter joined) {
+            int cap = scheduler.maxQueuedPerLane();
+            if (cap == 0 || joined.ticket == null) return;
+            Waiter oldest = null;
+            int count = 0;
+            for (Waiter w : queue) {
+                if (w.ticket == null || w.ticket.lane() != joined.ticket.lane()) continue;
+                count++;
+                if (oldest == null || w.ticket.captureMillis() < oldest.ticket.captureMillis()) oldest = w;
+            }
+            if (count > cap) {
+                queue.remove(oldest);
+                oldest.superseded = true;
+                oldest.ready.signal();
+            }
+        }
+
+        private long inUse() {
+            lock.lock();
+            try {
+                return inUse;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private long queued() {
+            lock.lock();
+            try {
+                return queue.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        interface Permit extends AutoCloseable {
+            @Override
+            void close();
         }
     }
 
     // -------------------- HTTP helpers --------------------
 
+    /**
+     * Minimal Server-Sent Events writer on top of an HttpExchange.
+     * The response is sent with chunked transfer encoding and every event is flushed immediately.
+     */
+    static final class SseStream implements AutoCloseable {
+        private final HttpExchange ex;
+        private final OutputStream os;
+
+        private SseStream(HttpExchange ex, OutputStream os) {
+            this.ex = ex;
+            this.os = os;
+        }
+
+        static SseStream open(HttpExchange ex) throws IOException {
+            Headers h = ex.getResponseHeaders();
+            h.set("Content-Type", "text/event-stream; charset=utf-8");
+            h.set("Cache-Control", "no-cache");
+            addCors(h);
+            ex.sendResponseHeaders(200, 0);
+            return new SseStream(ex, ex.getResponseBody());
+        }
+
+        synchronized void send(String event, JsonNode data) throws IOException {
+            // JSON from Jackson never contains raw newlines, so one data: line per event is enough.
+            byte[] json = MAPPER.writeValueAsBytes(data);
+            os.write(("event: " + event + "\ndata: ").getBytes(StandardCharsets.UTF_8));
+            os.write(json);
+            os.write("\n\n".getBytes(StandardCharsets.UTF_8));
+            os.flush();
+        }
+
+        /** SSE comment line; ignored by EventSource and readers, but keeps an idle stream alive. */
+        synchronized void ping() throws IOException {
+            os.write(": ping\n\n".getBytes(StandardCharsets.UTF_8));
+            os.flush();
+        }
+
+        @Override
+        public void close() {
+            try {
+                os.close();
+            } catch (IOException ignore) {
+                // client went away
+            } finally {
+                ex.close();
+            }
+        }
+    }
+
     private static boolean corsAndMethod(HttpExchange ex, String expectedMethod) throws IOException {
         addCors(ex.getResponseHeaders());
 
@@ -561,7 +2554,7 @@ String transcribe(byte[] audio, String audioMime) throws IOException {
         return true;
     }
 
-    private static byte[] readBodyLimited(HttpExchange ex, int maxBytes) throws IOException {
+    static byte[] readBodyLimited(HttpExchange ex, int maxBytes) throws IOException {
         try (InputStream in = ex.getRequestBody();
              ByteArrayOutputStream out = new ByteArrayOutputStream()) {
 
@@ -579,13 +2572,104 @@ String transcribe(byte[] audio, String audioMime) throws IOException {
         }
     }
 
+    /** Declared request body length, 0 for an empty body, -1 if unknown (chunked). */
+    private static long contentLength(HttpExchange ex) {
+        String v = ex.getRequestHeaders().getFirst("Content-Length");
+        if (v == null || v.isBlank()) return -1;
+        try {
+            return Long.parseLong(v.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static Map<String, String> queryParams(HttpExchange ex) {
+        Map<String, String> out = new HashMap<>();
+        String raw = ex.getRequestURI().getRawQuery();
+        if (raw == null || raw.isEmpty()) return out;
+        for (String pair : raw.split("&")) {
+            if (pair.isEmpty()) continue;
+            int eq = pair.indexOf('=');
+            String k = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String v = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            if (!v.isBlank()) out.putIfAbsent(k, v.trim());
+        }
+        return out;
+    }
+
+    /** Request body stream that fails once more than maxBytes have been read. */
+    static final class LimitedInputStream extends FilterInputStream {
+        private final long maxBytes;
+        private long total;
+
+        LimitedInputStream(InputStream in, long maxBytes) {
+            super(in);
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count(1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count(n);
+            return n;
+        }
+
+        /** Bytes read so far. */
+        long count() {
+            return total;
+        }
+
+        private void count(int n) throws IOException {
+            total += n;
+            if (total > maxBytes) {
+                throw new IOException("Request body too large (limit " + maxBytes + " bytes)");
+            }
+        }
+    }
+
+    /**
+     * 503 with Retry-After while the upstream circuit breaker is open (the client may simply try the
+     * next chunk), 500 for everything else.
+     */
+    private static void writeFailure(HttpExchange ex, Exception e) throws IOException {
+        if (e instanceof UpstreamGuard.CircuitOpenException open) {
+            ex.getResponseHeaders().set("Retry-After", String.valueOf(Math.max(1, (open.retryAfterMillis() + 999) / 1000)));
+            writeError(ex, 503, "Upstream unavailable: " + safeErr(e));
+            return;
+        }
+        writeError(ex, 500, "Internal error: " + safeErr(e));
+    }
+
+    /** 429 for a request the gate turned away, with Retry-After. */
+    private static void writeBusy(HttpExchange ex, AdmissionGate gate) throws IOException {
+        writeBusy(ex, gate, UnaryOperator.identity());
+    }
+
+    /** 429 for a transcribe request the gate turned away, with Retry-After and the current chunk hints. */
+    private static void writeBusy(HttpExchange ex, AdmissionGate gate, UnaryOperator<ObjectNode> withHints) throws IOException {
+        long retryAfter = gate.retryAfterMillis();
+        ex.getResponseHeaders().set("Retry-After", String.valueOf(Math.max(1, (retryAfter + 999) / 1000)));
+        writeJson(ex, 429, withHints.apply(MAPPER.createObjectNode()
+                .put("ok", false)
+                .put("error", "Bridge busy: too many " + gate.name() + " requests")
+                .put("retryAfterMs", retryAfter)));
+    }
+
     private static void writeError(HttpExchange ex, int status, String message) throws IOException {
         writeJson(ex, status, MAPPER.createObjectNode()
                 .put("ok", false)
                 .put("error", message));
     }
 
-    private static void writeJson(HttpExchange ex, int status, JsonNode json) throws IOException {
+    /** Writes the response and closes the exchange; returns the body size. */
+    static int writeJson(HttpExchange ex, int status, JsonNode json) throws IOException {
         byte[] bytes = MAPPER.writeValueAsBytes(json);
         ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
         addCors(ex.getResponseHeaders());
@@ -595,6 +2679,28 @@ String transcribe(byte[] audio, String audioMime) throws IOException {
         } finally {
             ex.close();
         }
+        return bytes.length;
+    }
+
+    /**
+     * Writes a 200 with the buffer as the body (Content-Type set by the caller) and closes the exchange.
+     * The channel writes straight from the buffer, so a mapped or read-only buffer is not copied first.
+     */
+    static int writeBuffer(HttpExchange ex, ByteBuffer body) throws IOException {
+        int len = body.remaining();
+        ex.sendResponseHeaders(200, len);
+        try (OutputStream os = ex.getResponseBody()) {
+            WritableByteChannel ch = Channels.newChannel(os);
+            while (body.hasRemaining()) ch.write(body);
+        } finally {
+            ex.close();
+        }
+        return len;
+    }
+
+    private static String base64(ByteBuffer audio) {
+        ByteBuffer encoded = Base64.getEncoder().encode(audio);
+        return new String(encoded.array(), encoded.arrayOffset(), encoded.remaining(), StandardCharsets.ISO_8859_1);
     }
 
     private static String textOr(JsonNode node, String field, String def) {
@@ -620,13 +2726,15 @@ String transcribe(byte[] audio, String audioMime) throws IOException {
         };
     }
 
+    /** Environment variable, or a -D system property of the same name (used by the in-JVM benchmarks). */
     private static String envOr(String name, String def) {
         String v = System.getenv(name);
+        if (v == null || v.isBlank()) v = System.getProperty(name);
         return (v == null || v.isBlank()) ? def : v.trim();
     }
 
     private static String envRequired(String name) {
-        String v = System.getenv(name);
+        String v = envOr(name, null);
         if (v == null || v.isBlank()) {
             throw new IllegalStateException("Missing required environment variable: " + name);
         }
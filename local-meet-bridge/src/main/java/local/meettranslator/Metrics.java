@@ -0,0 +1,354 @@
+package local.meettranslator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.math.BigDecimal;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * In-process metrics with a Prometheus text exposition (GET /metrics).
+ *
+ * Recording is allocation-free: histograms are log-linear bucket arrays (HDR-style, 8 sub-buckets per
+ * power of two, so any recorded latency is within 12.5% of its bucket bound), counters are LongAdders,
+ * and per-stage timers are looked up by constant names. All the formatting cost is paid on scrape.
+ */
+final class Metrics {
+
+    private final Map<String, Family> families = new LinkedHashMap<>(); // guarded by this
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private final Map<String, Upstream> upstreams = new ConcurrentHashMap<>();
+
+    // -------------------- Registration --------------------
+
+    /** labels are name/value pairs: histogram("x_seconds", "help", "endpoint", "tts", "stage", "parse"). */
+    Histogram histogram(String name, String help, String... labels) {
+        return (Histogram) family(name, help, "histogram").child(labels, Histogram::new);
+    }
+
+    LongAdder counter(String name, String help, String... labels) {
+        return (LongAdder) family(name, help, "counter").child(labels, LongAdder::new);
+    }
+
+    /** Up/down gauge; callers increment() and decrement(). */
+    LongAdder gauge(String name, String help, String... labels) {
+        return (LongAdder) family(name, help, "gauge").child(labels, LongAdder::new);
+    }
+
+    /** Gauge read from a supplier on scrape (queue lengths, pool sizes, ...). */
+    void gauge(String name, String help, LongSupplier value, String... labels) {
+        family(name, help, "gauge").child(labels, () -> value);
+    }
+
+    private synchronized Family family(String name, String help, String type) {
+        Family f = families.computeIfAbsent(name, n -> new Family(n, help, type));
+        if (!f.type.equals(type)) {
+            throw new IllegalStateException("Metric " + name + " is a " + f.type + ", not a " + type);
+        }
+        return f;
+    }
+
+    /** Per-handler timers, byte counters and in-flight gauge, created on first use. */
+    Endpoint endpoint(String name) {
+        return endpoints.computeIfAbsent(name, n -> new Endpoint(this, n));
+    }
+
+    /** Per-upstream-call latency, status codes and bytes of one backend, created on first use. */
+    Upstream upstream(String backend, String op) {
+        return upstreams.computeIfAbsent(backend + "/" + op, k -> new Upstream(this, backend, op));
+    }
+
+    // -------------------- Endpoint / upstream views --------------------
+
+    static final class Endpoint {
+        private final Metrics registry;
+        private final String name;
+        private final Map<String, Histogram> stages = new ConcurrentHashMap<>();
+        private final Histogram total;
+        private final LongAdder inFlight;
+        private final LongAdder requestBytes;
+        private final LongAdder responseBytes;
+
+        private Endpoint(Metrics registry, String name) {
+            this.registry = registry;
+            this.name = name;
+            this.total = registry.histogram("local_meet_request_seconds", "Handler latency, from dispatch to response", "endpoint", name);
+            this.inFlight = registry.gauge("local_meet_requests_in_flight", "Requests currently being handled", "endpoint", name);
+            this.requestBytes = registry.counter("local_meet_request_bytes_total", "Request body bytes read", "endpoint", name);
+            this.responseBytes = registry.counter("local_meet_response_bytes_total", "Response body bytes written (JSON responses)", "endpoint", name);
+        }
+
+        /** Marks a request in flight; pass the result to end(). */
+        long begin() {
+            inFlight.increment();
+            return System.nanoTime();
+        }
+
+        void end(long startNanos) {
+            inFlight.decrement();
+            total.recordNanos(System.nanoTime() - startNanos);
+        }
+
+        /** Records now - sinceNanos for the stage and returns now, so stages can be chained. */
+        long lap(String stage, long sinceNanos) {
+            long now = System.nanoTime();
+            stage(stage).recordNanos(now - sinceNanos);
+            return now;
+        }
+
+        Histogram stage(String stage) {
+            Histogram h = stages.get(stage);
+            if (h == null) {
+                h = stages.computeIfAbsent(stage, s -> registry.histogram("local_meet_stage_seconds",
+                        "Time spent in one stage of a handler", "endpoint", name, "stage", s));
+            }
+            return h;
+        }
+
+        void requestBytes(long n) {
+            if (n > 0) requestBytes.add(n);
+        }
+
+        void responseBytes(long n) {
+            if (n > 0) responseBytes.add(n);
+        }
+    }
+
+    static final class Upstream {
+        private static final int MAX_STATUS = 600;
+
+        private final Histogram latency;
+        private final LongAdder inFlight;
+        private final LongAdder sent;
+        private final LongAdder received;
+        private final AtomicLongArray statuses = new AtomicLongArray(MAX_STATUS);
+        private final LongAdder failures;
+
+        private Upstream(Metrics registry, String backend, String op) {
+            this.latency = registry.histogram("local_meet_upstream_seconds", "OpenAI call latency, until the response body is read", "backend", backend, "op", op);
+            this.inFlight = registry.gauge("local_meet_upstream_in_flight", "OpenAI calls currently running", "backend", backend, "op", op);
+            this.sent = registry.counter("local_meet_upstream_sent_bytes_total", "Request body bytes sent to OpenAI (when known)", "backend", backend, "op", op);
+            this.received = registry.counter("local_meet_upstream_received_bytes_total", "Response body bytes received from OpenAI", "backend", backend, "op", op);
+            this.failures = registry.counter("local_meet_upstream_failures_total", "OpenAI calls that ended without an HTTP response", "backend", backend, "op", op);
+            registry.family("local_meet_upstream_responses_total", "OpenAI responses by HTTP status code", "counter")
+                    .child(new String[]{"backend", backend, "op", op}, () -> (StatusCodes) statuses::get);
+        }
+
+        long begin() {
+            inFlight.increment();
+            return System.nanoTime();
+        }
+
+        /** status <= 0 means the call failed before a response arrived. */
+        void end(long startNanos, int status, long sentBytes, long receivedBytes) {
+            inFlight.decrement();
+            latency.recordNanos(System.nanoTime() - startNanos);
+            if (sentBytes > 0) sent.add(sentBytes);
+            if (receivedBytes > 0) received.add(receivedBytes);
+            if (status > 0 && status < MAX_STATUS) statuses.incrementAndGet(status);
+            else failures.increment();
+        }
+    }
+
+    /** Scrape-time view of per-status counters: count(code). */
+    @FunctionalInterface
+    private interface StatusCodes {
+        long count(int code);
+    }
+
+    // -------------------- Histogram --------------------
+
+    /** Log-linear latency histogram in microseconds. */
+    static final class Histogram {
+        private static final int SUB_BITS = 3;
+        private static final int SUB = 1 << SUB_BITS;
+        private static final int MAX_EXP = 36; // ~19 h; anything longer lands in the last bucket
+        private static final int BUCKETS = (MAX_EXP - SUB_BITS + 1) * SUB + SUB;
+
+        // Exposed bucket bounds: powers of two from 128 us to ~134 s (all exact fine-bucket boundaries).
+        private static final int FIRST_EXPOSED_EXP = 7;
+        private static final int LAST_EXPOSED_EXP = 27;
+        private static final String[] EXPOSED_LE = new String[LAST_EXPOSED_EXP - FIRST_EXPOSED_EXP + 1];
+
+        static {
+            for (int e = FIRST_EXPOSED_EXP; e <= LAST_EXPOSED_EXP; e++) {
+                EXPOSED_LE[e - FIRST_EXPOSED_EXP] = BigDecimal.valueOf(1L << e).movePointLeft(6).toPlainString();
+            }
+        }
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sumMicros = new LongAdder();
+
+        void recordNanos(long nanos) {
+            long micros = Math.max(0, nanos / 1000);
+            counts.incrementAndGet(index(micros));
+            count.increment();
+            sumMicros.add(micros);
+        }
+
+        long count() {
+            return count.sum();
+        }
+
+        /** Upper bound (us) of the bucket holding quantile q; 0 if empty. */
+        long quantileMicros(double q) {
+            long n = count.sum();
+            if (n == 0) return 0;
+            long rank = (long) Math.ceil(q * n);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts.get(i);
+                if (seen >= rank) return upperBound(i);
+            }
+            return upperBound(BUCKETS - 1);
+        }
+
+        static int index(long micros) {
+            if (micros < SUB) return (int) micros;
+            int exp = 63 - Long.numberOfLeadingZeros(micros);
+            if (exp > MAX_EXP) return BUCKETS - 1;
+            int sub = (int) (micros >>> (exp - SUB_BITS)) & (SUB - 1);
+            return (exp - SUB_BITS + 1) * SUB + sub;
+        }
+
+        /** Exclusive upper bound (us) of bucket i. */
+        static long upperBound(int i) {
+            if (i < SUB) return i + 1;
+            int exp = i / SUB + SUB_BITS - 1;
+            int sub = i % SUB;
+            return ((long) (SUB + sub + 1)) << (exp - SUB_BITS);
+        }
+
+        private void write(StringBuilder sb, String name, String labels) {
+            String sep = labels.isEmpty() ? "" : labels + ",";
+            long cumulative = 0;
+            int i = 0;
+            for (int e = FIRST_EXPOSED_EXP; e <= LAST_EXPOSED_EXP; e++) {
+                // Buckets whose values are all < 2^e us.
+                int end = index(1L << e);
+                for (; i < end; i++) cumulative += counts.get(i);
+                sb.append(name).append("_bucket{").append(sep).append("le=\"").append(EXPOSED_LE[e - FIRST_EXPOSED_EXP]).append("\"} ")
+                        .append(cumulative).append('\n');
+            }
+            for (; i < BUCKETS; i++) cumulative += counts.get(i);
+            sb.append(name).append("_bucket{").append(sep).append("le=\"+Inf\"} ").append(cumulative).append('\n');
+            sb.append(name).append("_sum").append(braces(labels)).append(' ')
+                    .append(BigDecimal.valueOf(sumMicros.sum()).movePointLeft(6).toPlainString()).append('\n');
+            sb.append(name).append("_count").append(braces(labels)).append(' ').append(cumulative).append('\n');
+        }
+    }
+
+    // -------------------- Exposition --------------------
+
+    private static final class Family {
+        final String name;
+        final String help;
+        final String type;
+        final Map<String, Object> children = new ConcurrentSkipListMap<>();
+
+        Family(String name, String help, String type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+
+        Object child(String[] labels, java.util.function.Supplier<Object> create) {
+            return children.computeIfAbsent(formatLabels(labels), l -> create.get());
+        }
+    }
+
+    /** Prometheus text format 0.0.4. */
+    String scrape() {
+        StringBuilder sb = new StringBuilder(16 * 1024);
+        Family[] snapshot;
+        synchronized (this) {
+            snapshot = families.values().toArray(new Family[0]);
+        }
+        for (Family f : snapshot) {
+            sb.append("# HELP ").append(f.name).append(' ').append(f.help).append('\n');
+            sb.append("# TYPE ").append(f.name).append(' ').append(f.type).append('\n');
+            for (Map.Entry<String, Object> c : f.children.entrySet()) {
+                String labels = c.getKey();
+                Object m = c.getValue();
+                if (m instanceof Histogram h) {
+                    h.write(sb, f.name, labels);
+                } else if (m instanceof LongAdder a) {
+                    sb.append(f.name).append(braces(labels)).append(' ').append(a.sum()).append('\n');
+                } else if (m instanceof StatusCodes s) {
+                    String sep = labels.isEmpty() ? "" : labels + ",";
+                    for (int code = 100; code < Upstream.MAX_STATUS; code++) {
+                        long n = s.count(code);
+                        if (n != 0) sb.append(f.name).append('{').append(sep).append("code=\"").append(code).append("\"} ").append(n).append('\n');
+                    }
+                } else if (m instanceof LongSupplier g) {
+                    sb.append(f.name).append(braces(labels)).append(' ').append(g.getAsLong()).append('\n');
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Appends the numeric fields of a /health stats object (cache, VAD, batcher, ...) as untyped samples
+     * named prefix_field, so the existing counters can be scraped too. Booleans become 0/1.
+     */
+    static void appendStats(StringBuilder sb, String prefix, JsonNode stats) {
+        for (Iterator<Map.Entry<String, JsonNode>> it = stats.fields(); it.hasNext(); ) {
+            Map.Entry<String, JsonNode> e = it.next();
+            JsonNode v = e.getValue();
+            String value;
+            if (v.isNumber()) value = v.asText();
+            else if (v.isBoolean()) value = v.asBoolean() ? "1" : "0";
+            else continue;
+            String name = prefix + "_" + snakeCase(e.getKey());
+            sb.append("# TYPE ").append(name).append(" untyped\n");
+            sb.append(name).append(' ').append(value).append('\n');
+        }
+    }
+
+    private static String snakeCase(String camel) {
+        StringBuilder sb = new StringBuilder(camel.length() + 4);
+        for (int i = 0; i < camel.length(); i++) {
+            char c = camel.charAt(i);
+            if (Character.isUpperCase(c)) {
+                if (i > 0) sb.append('_');
+                sb.append(Character.toLowerCase(c));
+            } else if (Character.isLetterOrDigit(c)) {
+                sb.append(c);
+            } else {
+                sb.append('_');
+            }
+        }
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+
+    private static String formatLabels(String[] labels) {
+        if (labels.length % 2 != 0) throw new IllegalArgumentException("labels must be name/value pairs");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) sb.append(',');
+            sb.append(labels[i]).append("=\"");
+            String v = labels[i + 1];
+            for (int j = 0; j < v.length(); j++) {
+                char c = v.charAt(j);
+                if (c == '\\' || c == '"') sb.append('\\').append(c);
+                else if (c == '\n') sb.append("\\n");
+                else sb.append(c);
+            }
+            sb.append('"');
+        }
+        return sb.toString();
+    }
+
+    private static String braces(String labels) {
+        return labels.isEmpty() ? "" : "{" + labels + "}";
+    }
+}
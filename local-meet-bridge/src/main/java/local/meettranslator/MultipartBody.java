@@ -0,0 +1,175 @@
+package local.meettranslator;
+
+import java.io.InputStream;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * multipart/form-data body for /v1/audio/transcriptions, built without copying the audio.
+ *
+ * The body is a sequence of segments:
+ *   [model field] [file part headers for the mime] [audio] [closing boundary]
+ *
+ * The boundary is fixed per instance, so the model field and closing boundary are encoded once,
+ * and the file part headers once per audio mime. The audio itself is handed to the HttpClient
+ * as read-only slices of the caller's array (BodyPublishers.ofByteArray would copy it into
+ * fresh 16 KB buffers first).
+ */
+final class MultipartBody {
+
+    private static final int SLICE_BYTES = 64 * 1024;
+    private static final int MAX_CACHED_MIMES = 32;
+
+    private final String boundary;
+    private final ByteBuffer modelPart;
+    private final ByteBuffer closing;
+    private final ConcurrentHashMap<String, ByteBuffer> fileHeaders = new ConcurrentHashMap<>();
+
+    MultipartBody(String boundary, String model) {
+        this.boundary = boundary;
+        this.modelPart = readOnly("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"model\"\r\n\r\n"
+                + model + "\r\n");
+        this.closing = readOnly("\r\n--" + boundary + "--\r\n");
+    }
+
+    String contentType() {
+        return "multipart/form-data; boundary=" + boundary;
+    }
+
+    /** Publisher over audio[offset, offset+length). The array must not change until the request completes. */
+    HttpRequest.BodyPublisher publisher(byte[] audio, int offset, int length, String audioMime) {
+        List<ByteBuffer> segments = new ArrayList<>(4 + length / SLICE_BYTES);
+        segments.add(modelPart.duplicate());
+        segments.add(fileHeader(audioMime).duplicate());
+        ByteBuffer whole = ByteBuffer.wrap(audio, offset, length).asReadOnlyBuffer();
+        for (int pos = offset; pos < offset + length; pos += SLICE_BYTES) {
+            whole.limit(Math.min(offset + length, pos + SLICE_BYTES)).position(pos);
+            segments.add(whole.slice());
+        }
+        segments.add(closing.duplicate());
+        return new BuffersPublisher(segments);
+    }
+
+    /** Publisher that pulls the audio from a stream while sending. length < 0 means unknown (chunked). */
+    HttpRequest.BodyPublisher publisher(InputStream audio, long length, String audioMime) {
+        HttpRequest.BodyPublisher audioPart = HttpRequest.BodyPublishers.ofInputStream(() -> audio);
+        if (length >= 0) {
+            audioPart = HttpRequest.BodyPublishers.fromPublisher(audioPart, length);
+        }
+        return HttpRequest.BodyPublishers.concat(
+                new BuffersPublisher(List.of(modelPart.duplicate(), fileHeader(audioMime).duplicate())),
+                audioPart,
+                new BuffersPublisher(List.of(closing.duplicate())));
+    }
+
+    private ByteBuffer fileHeader(String audioMime) {
+        ByteBuffer cached = fileHeaders.get(audioMime);
+        if (cached != null) return cached;
+
+        ByteBuffer header = readOnly("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"audio" + guessExt(audioMime) + "\"\r\n"
+                + "Content-Type: " + audioMime + "\r\n\r\n");
+        // Mimes come from clients; only remember a handful.
+        if (fileHeaders.size() < MAX_CACHED_MIMES) fileHeaders.putIfAbsent(audioMime, header);
+        return header;
+    }
+
+    static String guessExt(String mime) {
+        if (mime == null) return ".bin";
+        String m = mime.toLowerCase(Locale.ROOT);
+        if (m.contains("webm")) return ".webm";
+        if (m.contains("wav")) return ".wav";
+        if (m.contains("mpeg") || m.contains("mp3")) return ".mp3";
+        if (m.contains("mp4") || m.contains("m4a")) return ".m4a";
+        if (m.contains("ogg")) return ".ogg";
+        return ".bin";
+    }
+
+    private static ByteBuffer readOnly(String s) {
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+    }
+
+    /**
+     * BodyPublisher over a fixed list of buffers, emitted as-is (no copies).
+     * Every subscribe() replays the list from the start, so retries and redirects work.
+     */
+    static final class BuffersPublisher implements HttpRequest.BodyPublisher {
+        private final List<ByteBuffer> buffers;
+        private final long length;
+
+        BuffersPublisher(List<ByteBuffer> buffers) {
+            this.buffers = buffers;
+            long n = 0;
+            for (ByteBuffer b : buffers) n += b.remaining();
+            this.length = n;
+        }
+
+        @Override
+        public long contentLength() {
+            return length;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            subscriber.onSubscribe(new Subscription(subscriber, buffers));
+        }
+
+        private static final class Subscription implements Flow.Subscription {
+            private final Flow.Subscriber<? super ByteBuffer> subscriber;
+            private final List<ByteBuffer> buffers;
+            private final AtomicLong demand = new AtomicLong();
+            private final AtomicInteger wip = new AtomicInteger();
+            private final AtomicBoolean done = new AtomicBoolean();
+            private int next;
+
+            Subscription(Flow.Subscriber<? super ByteBuffer> subscriber, List<ByteBuffer> buffers) {
+                this.subscriber = subscriber;
+                this.buffers = buffers;
+            }
+
+            @Override
+            public void request(long n) {
+                if (done.get()) return;
+                if (n <= 0) {
+                    if (done.compareAndSet(false, true)) {
+                        subscriber.onError(new IllegalArgumentException("non-positive request: " + n));
+                    }
+                    return;
+                }
+                demand.getAndAccumulate(n, (a, b) -> (a + b < 0) ? Long.MAX_VALUE : a + b);
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                done.set(true);
+            }
+
+            // Classic work-in-progress loop: only one thread emits, re-entrant request() just adds demand.
+            private void drain() {
+                if (wip.getAndIncrement() != 0) return;
+                int missed = 1;
+                do {
+                    while (!done.get() && demand.get() > 0 && next < buffers.size()) {
+                        demand.decrementAndGet();
+                        subscriber.onNext(buffers.get(next++).duplicate());
+                    }
+                    if (next == buffers.size() && done.compareAndSet(false, true)) {
+                        subscriber.onComplete();
+                    }
+                    missed = wip.addAndGet(-missed);
+                } while (missed != 0);
+            }
+        }
+    }
+}
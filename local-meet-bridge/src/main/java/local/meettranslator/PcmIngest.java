@@ -0,0 +1,354 @@
+package local.meettranslator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Server-side PCM ingest: raw PCM (or WAV) from the client becomes the smallest upload Whisper is happy
+ * with, 16-bit mono WAV at targetRate (16 kHz), before it is transcribed.
+ *
+ * Accepted input:
+ *  - audio/pcm (s16le; ;format=f32le for 32-bit float), audio/L16 (s16be), with ;rate= and ;channels=
+ *  - WAV as SpeechDetector.Pcm decodes it (8/16/24/32-bit integer, 32-bit float)
+ *
+ * One pass over the input, in fixed-size blocks (a request body is never held twice): channels are
+ * averaged to mono and the rate is converted by area averaging (each output sample is the mean of the
+ * input it covers, a box low-pass when downsampling; a hold when upsampling). Leading and trailing
+ * silence (20 ms frames below trimThreshold RMS) is cut, keeping trimPadMs around the speech.
+ *
+ * 48 kHz stereo float from an AudioWorklet is 384 KB per second; the upload is 32 KB per second of speech.
+ */
+final class PcmIngest {
+
+    record Config(boolean enabled, int targetRate, double trimThreshold, int trimPadMs) {
+    }
+
+    /** Interleaved input samples: bits 8/16/24/32, integer or float, byte order. */
+    record Format(int sampleRate, int channels, int bitsPerSample, boolean floating, boolean bigEndian) {
+
+        int frameBytes() {
+            return channels * bitsPerSample / 8;
+        }
+
+        /** Raw PCM described by a mime type; null if the mime is not raw PCM or its parameters make no sense. */
+        static Format ofMime(String mime) {
+            String m = SpeechDetector.baseMime(mime);
+            if (!m.equals("audio/pcm") && !m.equals("audio/l16")) return null;
+            int rate = SpeechDetector.mimeParam(mime, "rate", 16000);
+            int channels = SpeechDetector.mimeParam(mime, "channels", 1);
+            if (rate < 8000 || rate > 192_000 || channels < 1 || channels > 8) return null;
+            if (m.equals("audio/l16")) return new Format(rate, channels, 16, false, true);
+            String format = mimeText(mime, "format", "s16le");
+            return switch (format) {
+                case "s16le" -> new Format(rate, channels, 16, false, false);
+                case "f32le" -> new Format(rate, channels, 32, true, false);
+                default -> null;
+            };
+        }
+
+        static Format of(SpeechDetector.Pcm pcm) {
+            return new Format(pcm.sampleRate, pcm.channels, pcm.bitsPerSample, pcm.encoding == SpeechDetector.Pcm.FLOAT, pcm.bigEndian);
+        }
+    }
+
+    /** A converted chunk: a complete WAV in wav[0, length). speechSeconds == 0 means nothing but silence. */
+    record Result(byte[] wav, int length, double inputSeconds, double speechSeconds) {
+    }
+
+    private static final int BLOCK_BYTES = 16 * 1024;
+    private static final int TRIM_FRAME_MS = 20;
+
+    /**
+     * Streaming converter to s16le mono at outRate. Keeps a partial input frame and the resampler state
+     * between feed() calls; output accumulates in a reusable buffer until clear().
+     */
+    static final class Converter {
+        private final Format in;
+        private final int outRate;
+        private final boolean passThrough;
+        private final byte[] partial;
+        private int partialFill;
+
+        // Area-averaging resampler: an input sample spans outRate units, an output sample inRate units.
+        private double acc;
+        private int filled;
+
+        private byte[] out;
+        private int outLen;
+        private long inputFrames;
+
+        Converter(Format in, int outRate, int initialOutBytes) {
+            this.in = in;
+            this.outRate = outRate;
+            this.passThrough = in.sampleRate() == outRate && in.channels() == 1 && in.bitsPerSample() == 16
+                    && !in.floating() && !in.bigEndian();
+            this.partial = new byte[in.frameBytes()];
+            this.out = new byte[Math.max(1024, initialOutBytes)];
+        }
+
+        /** A converter whose output starts after room for a WAV header, sized for inputBytesHint bytes of input. */
+        static Converter withHeader(Format in, int outRate, long inputBytesHint) {
+            long estimate = inputBytesHint > 0
+                    ? inputBytesHint / in.frameBytes() * outRate / in.sampleRate() * 2 + 64
+                    : 64 * 1024;
+            Converter c = new Converter(in, outRate, (int) Math.min(Integer.MAX_VALUE - 64, Wav.HEADER_BYTES + estimate));
+            c.outLen = Wav.HEADER_BYTES;
+            return c;
+        }
+
+        void feed(byte[] b, int off, int len) {
+            if (passThrough) {
+                ensure(len);
+                System.arraycopy(b, off, out, outLen, len);
+                outLen += len;
+                inputFrames += len / 2;
+                return;
+            }
+            int fb = partial.length;
+            if (partialFill > 0) {
+                int n = Math.min(len, fb - partialFill);
+                System.arraycopy(b, off, partial, partialFill, n);
+                partialFill += n;
+                off += n;
+                len -= n;
+                if (partialFill < fb) return;
+                frame(partial, 0);
+                partialFill = 0;
+            }
+            int frames = len / fb;
+            // Downsampling emits at most one sample per input frame (plus one), upsampling outRate/inRate.
+            ensure((int) Math.min(Integer.MAX_VALUE / 2, ((long) frames * outRate / in.sampleRate() + 2) * 2));
+            int end = off + frames * fb;
+            for (int p = off; p < end; p += fb) frame(b, p);
+            int rest = len - frames * fb;
+            if (rest > 0) {
+                System.arraycopy(b, end, partial, 0, rest);
+                partialFill = rest;
+            }
+        }
+
+        private void frame(byte[] b, int p) {
+            inputFrames++;
+            double sum = 0;
+            int bytes = in.bitsPerSample() / 8;
+            for (int c = 0; c < in.channels(); c++, p += bytes) sum += sample(b, p);
+            double x = sum / in.channels();
+
+            int inRate = in.sampleRate();
+            int remaining = outRate;
+            while (remaining > 0) {
+                int take = Math.min(inRate - filled, remaining);
+                acc += x * take;
+                filled += take;
+                remaining -= take;
+                if (filled == inRate) {
+                    put(acc / inRate);
+                    acc = 0;
+                    filled = 0;
+                }
+            }
+        }
+
+        private double sample(byte[] b, int p) {
+            switch (in.bitsPerSample()) {
+                case 8:
+                    return ((b[p] & 0xff) - 128) / 128.0;
+                case 16: {
+                    int v = in.bigEndian()
+                            ? (b[p] << 8) | (b[p + 1] & 0xff)
+                            : (b[p + 1] << 8) | (b[p] & 0xff);
+                    return v / 32768.0;
+                }
+                case 24: {
+                    int v = (b[p + 2] << 16) | ((b[p + 1] & 0xff) << 8) | (b[p] & 0xff);
+                    return v / 8388608.0;
+                }
+                case 32: {
+                    int bits = (b[p + 3] << 24) | ((b[p + 2] & 0xff) << 16) | ((b[p + 1] & 0xff) << 8) | (b[p] & 0xff);
+                    return in.floating() ? Float.intBitsToFloat(bits) : bits / 2147483648.0;
+                }
+                default:
+                    return 0;
+            }
+        }
+
+        private void put(double v) {
+            int s = (int) Math.round(v * 32767.0);
+            if (s > Short.MAX_VALUE) s = Short.MAX_VALUE;
+            else if (s < Short.MIN_VALUE) s = Short.MIN_VALUE;
+            if (outLen + 2 > out.length) ensure(2);
+            out[outLen++] = (byte) s;
+            out[outLen++] = (byte) (s >> 8);
+        }
+
+        private void ensure(int more) {
+            if (outLen + more <= out.length) return;
+            out = Arrays.copyOf(out, Math.max(out.length * 2, outLen + more));
+        }
+
+        byte[] buffer() {
+            return out;
+        }
+
+        int size() {
+            return outLen;
+        }
+
+        void clear() {
+            outLen = 0;
+        }
+
+        double inputSeconds() {
+            return (double) inputFrames / in.sampleRate();
+        }
+    }
+
+    private final Config config;
+
+    private final AtomicLong chunks = new AtomicLong();
+    private final AtomicLong silentChunks = new AtomicLong();
+    private final AtomicLong inputBytes = new AtomicLong();
+    private final AtomicLong uploadBytes = new AtomicLong();
+    private final AtomicLong inputMillis = new AtomicLong();
+    private final AtomicLong speechMillis = new AtomicLong();
+
+    PcmIngest(Config config) {
+        this.config = config;
+    }
+
+    boolean isEnabled() {
+        return config.enabled();
+    }
+
+    int targetRate() {
+        return config.targetRate();
+    }
+
+    /** True for chunks this converts: raw PCM always (Whisper does not take it as is), WAV too. */
+    boolean wants(String mime) {
+        if (!config.enabled()) return false;
+        String m = SpeechDetector.baseMime(mime);
+        return Format.ofMime(mime) != null
+                || m.equals("audio/wav") || m.equals("audio/x-wav") || m.equals("audio/wave");
+    }
+
+    /** Converts raw PCM read from a stream (a request body), block by block. */
+    Result convert(InputStream body, Format format, long lengthHint) throws IOException {
+        Converter c = Converter.withHeader(format, config.targetRate(), lengthHint);
+        byte[] block = new byte[BLOCK_BYTES];
+        long read = 0;
+        int n;
+        while ((n = body.read(block)) != -1) {
+            c.feed(block, 0, n);
+            read += n;
+        }
+        return finish(c, read);
+    }
+
+    /** Converts a buffered chunk (raw PCM or WAV); null if it cannot be decoded (the caller sends it as is). */
+    Result convert(byte[] audio, int length, String mime) {
+        Format format = Format.ofMime(mime);
+        int off = 0;
+        int len = length;
+        if (format == null) {
+            SpeechDetector.Pcm pcm = SpeechDetector.Pcm.locate(audio, 0, length, mime);
+            if (pcm == null) return null;
+            format = Format.of(pcm);
+            off = pcm.start;
+            len = pcm.length;
+        }
+        Converter c = Converter.withHeader(format, config.targetRate(), len);
+        c.feed(audio, off, len);
+        return finish(c, length);
+    }
+
+    /** A session's converter: any accepted format in, s16le mono at targetRate out. */
+    Converter sessionConverter(Format format) {
+        return new Converter(format, config.targetRate(), 16 * 1024);
+    }
+
+    /** Trims silence at both ends, moves the kept samples right behind the header and fills the header in. */
+    private Result finish(Converter c, long inBytes) {
+        byte[] wav = c.buffer();
+        int dataLen = c.size() - Wav.HEADER_BYTES;
+        int rate = config.targetRate();
+        int frameBytes = Math.max(2, rate * TRIM_FRAME_MS / 1000 * 2);
+        int frames = (dataLen + frameBytes - 1) / frameBytes;
+
+        int first = 0;
+        int last = frames - 1;
+        if (config.trimThreshold() > 0) {
+            first = -1;
+            for (int f = 0; f < frames; f++) {
+                if (!isSilent(wav, f, frameBytes, dataLen)) {
+                    if (first < 0) first = f;
+                    last = f;
+                }
+            }
+        }
+
+        int keepFrom = 0;
+        int keepTo = 0;
+        if (first >= 0 && frames > 0) {
+            int pad = config.trimPadMs() / TRIM_FRAME_MS;
+            keepFrom = Math.max(0, first - pad) * frameBytes;
+            keepTo = Math.min(dataLen, (last + 1 + pad) * frameBytes);
+        }
+        int kept = keepTo - keepFrom;
+        if (keepFrom > 0) System.arraycopy(wav, Wav.HEADER_BYTES + keepFrom, wav, Wav.HEADER_BYTES, kept);
+        Wav.writeHeader(wav, kept, rate, 1, 16);
+
+        double speech = kept / 2.0 / rate;
+        chunks.incrementAndGet();
+        if (kept == 0) silentChunks.incrementAndGet();
+        inputBytes.addAndGet(inBytes);
+        uploadBytes.addAndGet(kept == 0 ? 0 : Wav.HEADER_BYTES + kept);
+        inputMillis.addAndGet(Math.round(c.inputSeconds() * 1000));
+        speechMillis.addAndGet(Math.round(speech * 1000));
+        return new Result(wav, Wav.HEADER_BYTES + kept, c.inputSeconds(), speech);
+    }
+
+    private boolean isSilent(byte[] wav, int frame, int frameBytes, int dataLen) {
+        int from = Wav.HEADER_BYTES + frame * frameBytes;
+        int to = Wav.HEADER_BYTES + Math.min(dataLen, (frame + 1) * frameBytes);
+        double sum = 0;
+        int n = 0;
+        for (int p = from; p + 1 < to; p += 2, n++) {
+            double v = ((wav[p + 1] << 8) | (wav[p] & 0xff)) / 32768.0;
+            sum += v * v;
+        }
+        return n == 0 || Math.sqrt(sum / n) < config.trimThreshold();
+    }
+
+    /** Value of a ;name=value mime parameter (lower case), or def. */
+    private static String mimeText(String mime, String name, String def) {
+        for (String part : mime.split(";")) {
+            int eq = part.indexOf('=');
+            if (eq >= 0 && part.substring(0, eq).trim().equalsIgnoreCase(name)) {
+                return part.substring(eq + 1).trim().toLowerCase(Locale.ROOT);
+            }
+        }
+        return def;
+    }
+
+    ObjectNode statsJson(ObjectMapper mapper) {
+        double speechSeconds = speechMillis.get() / 1000.0;
+        return mapper.createObjectNode()
+                .put("enabled", config.enabled())
+                .put("targetRate", config.targetRate())
+                .put("chunks", chunks.get())
+                .put("silentChunks", silentChunks.get())
+                .put("inputBytes", inputBytes.get())
+                .put("uploadBytes", uploadBytes.get())
+                .put("inputSeconds", inputMillis.get() / 1000.0)
+                .put("speechSeconds", speechSeconds)
+                .put("inputBytesPerSpeechSecond", speechSeconds == 0 ? 0 : Math.round(inputBytes.get() / speechSeconds))
+                .put("uploadBytesPerSpeechSecond", speechSeconds == 0 ? 0 : Math.round(uploadBytes.get() / speechSeconds));
+    }
+}
@@ -0,0 +1,84 @@
+package local.meettranslator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * What the bridge needs from a speech/translation provider.
+ *
+ * Implementations:
+ *  - Main.OpenAiClient: any OpenAI-compatible endpoint (the cloud, or a local Whisper/TTS server)
+ *  - FakeBackend:       in process, canned answers with configurable latency and failures (tests, benchmarks)
+ *  - BackendRouter:     spreads each call over several backends by recent latency and error rate
+ *
+ * A backend only has to do what its capabilities say; the router never sends it anything else.
+ * The parameter and exception types of the calls live here, so no implementation depends on another.
+ */
+interface SpeechBackend {
+
+    /** A /v1/audio/speech request with every default resolved; also identifies the resulting audio. */
+    record TtsParams(String text, String voice, String model, String format, double speed, String instructions) {
+    }
+
+    /** Receives the translation piece by piece (translateTextStreaming). */
+    interface DeltaListener {
+        void onDelta(String delta) throws IOException;
+    }
+
+    /** The model answered a batch, but not with one string per text; the caller falls back to single calls. */
+    final class BatchFormatException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        BatchFormatException(String message) {
+            super(message);
+        }
+    }
+
+    enum Capability {
+        TRANSCRIBE, TRANSLATE, TTS;
+
+        String label() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+        /** "transcribe,translate" -> [TRANSCRIBE, TRANSLATE]; blank means all of them. */
+        static Set<Capability> parse(String csv) {
+            if (csv == null || csv.isBlank()) return EnumSet.allOf(Capability.class);
+            Set<Capability> out = EnumSet.noneOf(Capability.class);
+            for (String part : csv.split(",")) {
+                String c = part.trim();
+                if (!c.isEmpty()) out.add(valueOf(c.toUpperCase(Locale.ROOT)));
+            }
+            return out;
+        }
+    }
+
+    /** Short name used in logs, /health and metric names. */
+    String name();
+
+    Set<Capability> capabilities();
+
+    /** Transcribes audio[offset, offset+length); the array must not change until the call returns. */
+    String transcribe(byte[] audio, int offset, int length, String audioMime) throws IOException;
+
+    /** Transcribes audio pulled from a stream while sending; length < 0 means unknown. */
+    String transcribe(InputStream audio, long length, String audioMime) throws IOException;
+
+    String translateText(String sourceLang, String targetLang, String text) throws IOException;
+
+    /** One translation per text, in order; BatchFormatException if the answer cannot be split. */
+    List<String> translateBatch(String sourceLang, String targetLang, List<String> texts) throws IOException;
+
+    /** Same as translateText, handing each piece of the translation to onDelta as it arrives. */
+    String translateTextStreaming(String sourceLang, String targetLang, String text, DeltaListener onDelta)
+            throws IOException;
+
+    byte[] ttsAudio(TtsParams p) throws IOException;
+
+    /** Audio as it is synthesized; throws before returning if synthesis failed. The caller closes the stream. */
+    InputStream ttsAudioStream(TtsParams p) throws IOException;
+}
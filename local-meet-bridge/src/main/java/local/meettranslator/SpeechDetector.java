@@ -0,0 +1,278 @@
+package local.meettranslator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Server-side voice activity detection, run before a chunk is sent to Whisper.
+ *
+ * Decodes WAV (PCM 8/16/24/32-bit, IEEE float) and raw PCM (audio/pcm = s16le, audio/L16 = s16be,
+ * with ;rate= and ;channels= parameters), splits it into 20 ms frames and counts speech frames:
+ *  - frame RMS above max(energyThreshold, 3 x noise floor), where the noise floor is the 10th
+ *    percentile of frame energies in the chunk, and
+ *  - zero-crossing rate below 0.5 crossings per sample (rejects broadband hiss).
+ * Chunks whose speech ratio is below minSpeechRatio are reported as silence.
+ *
+ * Compressed formats (webm/ogg/opus/mp3/...) are not decoded; they pass through untouched.
+ */
+final class SpeechDetector {
+
+    /** Result of analyzing one chunk. decoded == false means the format is not supported. */
+    record Analysis(boolean decoded, int frames, int speechFrames) {
+        double speechRatio() {
+            return frames == 0 ? 0.0 : (double) speechFrames / frames;
+        }
+    }
+
+    private static final Analysis NOT_DECODED = new Analysis(false, 0, 0);
+    private static final double FRAME_SECONDS = 0.020;
+    private static final double MAX_ZERO_CROSSING_RATE = 0.5;
+    private static final double NOISE_FLOOR_FACTOR = 3.0;
+
+    private final boolean enabled;
+    private final double minSpeechRatio;
+    private final double energyThreshold;
+
+    private final AtomicLong analyzed = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong passedThrough = new AtomicLong();
+    private final AtomicLong skippedBytes = new AtomicLong();
+
+    SpeechDetector(boolean enabled, double minSpeechRatio, double energyThreshold) {
+        this.enabled = enabled;
+        this.minSpeechRatio = minSpeechRatio;
+        this.energyThreshold = energyThreshold;
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /** True if VAD is on and this mime is something we can decode (so the caller should buffer it). */
+    boolean wantsBytes(String mime) {
+        return enabled && canDecode(mime);
+    }
+
+    /**
+     * True if the chunk is confidently silence and the upstream call should be skipped.
+     * Undecodable input is never reported as silence.
+     */
+    boolean isSilence(byte[] audio, int offset, int length, String mime) {
+        if (!enabled) return false;
+        Analysis a = analyze(audio, offset, length, mime);
+        if (!a.decoded()) {
+            passedThrough.incrementAndGet();
+            return false;
+        }
+        analyzed.incrementAndGet();
+        if (a.speechRatio() < minSpeechRatio) {
+            skipped.incrementAndGet();
+            skippedBytes.addAndGet(length);
+            return true;
+        }
+        return false;
+    }
+
+    /** Counts a chunk that reached the upstream without being inspected (streamed, compressed format). */
+    void passThrough() {
+        if (enabled) passedThrough.incrementAndGet();
+    }
+
+    ObjectNode statsJson(ObjectMapper mapper) {
+        return mapper.createObjectNode()
+                .put("enabled", enabled)
+                .put("minSpeechRatio", minSpeechRatio)
+                .put("analyzed", analyzed.get())
+                .put("skipped", skipped.get())
+                .put("skippedBytes", skippedBytes.get())
+                .put("passedThrough", passedThrough.get());
+    }
+
+    // -------------------- Analysis --------------------
+
+    Analysis analyze(byte[] audio, int offset, int length, String mime) {
+        Pcm pcm = Pcm.locate(audio, offset, length, mime);
+        if (pcm == null || pcm.frameCount() == 0) return NOT_DECODED;
+
+        int samplesPerFrame = Math.max(1, (int) Math.round(pcm.sampleRate * FRAME_SECONDS));
+        int frames = (int) (pcm.frameCount() / samplesPerFrame);
+        if (frames == 0) return NOT_DECODED;
+
+        double[] rms = new double[frames];
+        double[] zcr = new double[frames];
+        for (int f = 0; f < frames; f++) {
+            double sumSq = 0;
+            int crossings = 0;
+            double prev = 0;
+            long base = (long) f * samplesPerFrame;
+            for (int i = 0; i < samplesPerFrame; i++) {
+                double v = pcm.mono(base + i);
+                sumSq += v * v;
+                if (i > 0 && ((v >= 0) != (prev >= 0))) crossings++;
+                prev = v;
+            }
+            rms[f] = Math.sqrt(sumSq / samplesPerFrame);
+            zcr[f] = (double) crossings / samplesPerFrame;
+        }
+
+        double[] sorted = rms.clone();
+        Arrays.sort(sorted);
+        double noiseFloor = sorted[(int) (0.10 * (frames - 1))];
+        double threshold = Math.max(energyThreshold, noiseFloor * NOISE_FLOOR_FACTOR);
+
+        int speech = 0;
+        for (int f = 0; f < frames; f++) {
+            if (rms[f] >= threshold && zcr[f] < MAX_ZERO_CROSSING_RATE) speech++;
+        }
+        return new Analysis(true, frames, speech);
+    }
+
+    static boolean canDecode(String mime) {
+        String m = baseMime(mime);
+        return m.equals("audio/wav") || m.equals("audio/x-wav") || m.equals("audio/wave")
+                || m.equals("audio/pcm") || m.equals("audio/l16");
+    }
+
+    static String baseMime(String mime) {
+        if (mime == null) return "";
+        int semi = mime.indexOf(';');
+        return (semi >= 0 ? mime.substring(0, semi) : mime).trim().toLowerCase(Locale.ROOT);
+    }
+
+    /** Value of a ;name=value mime parameter, or def. */
+    static int mimeParam(String mime, String name, int def) {
+        if (mime == null) return def;
+        for (String part : mime.split(";")) {
+            int eq = part.indexOf('=');
+            if (eq < 0) continue;
+            if (part.substring(0, eq).trim().equalsIgnoreCase(name)) {
+                try {
+                    return Integer.parseInt(part.substring(eq + 1).trim());
+                } catch (NumberFormatException e) {
+                    return def;
+                }
+            }
+        }
+        return def;
+    }
+
+    /**
+     * View over interleaved PCM samples inside a byte array, normalized to [-1, 1].
+     * No samples are copied.
+     */
+    static final class Pcm {
+        static final int INT = 1;
+        static final int FLOAT = 3;
+
+        final byte[] data;
+        final int start;
+        final int length;
+        final int sampleRate;
+        final int channels;
+        final int bitsPerSample;
+        final int encoding;
+        final boolean bigEndian;
+
+        Pcm(byte[] data, int start, int length, int sampleRate, int channels, int bitsPerSample, int encoding, boolean bigEndian) {
+            this.data = data;
+            this.start = start;
+            this.length = length;
+            this.sampleRate = sampleRate;
+            this.channels = channels;
+            this.bitsPerSample = bitsPerSample;
+            this.encoding = encoding;
+            this.bigEndian = bigEndian;
+        }
+
+        long frameCount() {
+            return length / ((long) channels * (bitsPerSample / 8));
+        }
+
+        /** Average of all channels of one sample frame. */
+        double mono(long frame) {
+            int bytes = bitsPerSample / 8;
+            int pos = (int) (start + frame * channels * bytes);
+            double sum = 0;
+            for (int c = 0; c < channels; c++, pos += bytes) sum += sample(pos);
+            return sum / channels;
+        }
+
+        private double sample(int p) {
+            switch (bitsPerSample) {
+                case 8:
+                    return ((data[p] & 0xff) - 128) / 128.0; // 8-bit WAV is unsigned
+                case 16: {
+                    int v = bigEndian
+                            ? (data[p] << 8) | (data[p + 1] & 0xff)
+                            : (data[p + 1] << 8) | (data[p] & 0xff);
+                    return v / 32768.0;
+                }
+                case 24: {
+                    int v = (data[p + 2] << 16) | ((data[p + 1] & 0xff) << 8) | (data[p] & 0xff);
+                    return v / 8388608.0;
+                }
+                case 32: {
+                    int bits = (data[p + 3] << 24) | ((data[p + 2] & 0xff) << 16) | ((data[p + 1] & 0xff) << 8) | (data[p] & 0xff);
+                    return encoding == FLOAT ? Float.intBitsToFloat(bits) : bits / 2147483648.0;
+                }
+                default:
+                    return 0;
+            }
+        }
+
+        /** Finds the PCM samples for a WAV or raw PCM chunk; null if the format is not supported. */
+        static Pcm locate(byte[] b, int off, int len, String mime) {
+            String m = baseMime(mime);
+            if (m.equals("audio/pcm") || m.equals("audio/l16")) {
+                int rate = mimeParam(mime, "rate", 16000);
+                int channels = mimeParam(mime, "channels", 1);
+                if (rate <= 0 || channels <= 0) return null;
+                // audio/L16 is network byte order (RFC 2586); audio/pcm here means s16le.
+                return new Pcm(b, off, len, rate, channels, 16, INT, m.equals("audio/l16"));
+            }
+            if (!canDecode(mime) || len < 12) return null;
+            if (!tag(b, off, "RIFF") || !tag(b, off + 8, "WAVE")) return null;
+
+            int rate = 0, channels = 0, bits = 0, format = 0;
+            int p = off + 12;
+            int end = off + len;
+            while (p + 8 <= end) {
+                int size = le32(b, p + 4);
+                int body = p + 8;
+                if (tag(b, p, "fmt ") && body + 16 <= end) {
+                    format = le16(b, body);
+                    channels = le16(b, body + 2);
+                    rate = le32(b, body + 4);
+                    bits = le16(b, body + 14);
+                    if (format == 0xFFFE && body + 26 <= end) format = le16(b, body + 24); // WAVE_FORMAT_EXTENSIBLE
+                } else if (tag(b, p, "data")) {
+                    // Streaming writers put 0 or 0xFFFFFFFF here; take whatever is present.
+                    int dataLen = (size <= 0 || size > end - body) ? end - body : size;
+                    if (rate <= 0 || channels <= 0 || (format != INT && format != FLOAT)) return null;
+                    if (bits != 8 && bits != 16 && bits != 24 && bits != 32) return null;
+                    return new Pcm(b, body, dataLen, rate, channels, bits, format, false);
+                }
+                // Compared without adding, so a size near Integer.MAX_VALUE cannot wrap p around.
+                if (size < 0 || size > end - body) return null;
+                p = body + size + (size & 1);
+            }
+            return null;
+        }
+
+        private static boolean tag(byte[] b, int p, String t) {
+            return b[p] == t.charAt(0) && b[p + 1] == t.charAt(1) && b[p + 2] == t.charAt(2) && b[p + 3] == t.charAt(3);
+        }
+
+        private static int le16(byte[] b, int p) {
+            return (b[p] & 0xff) | ((b[p + 1] & 0xff) << 8);
+        }
+
+        private static int le32(byte[] b, int p) {
+            return (b[p] & 0xff) | ((b[p + 1] & 0xff) << 8) | ((b[p + 2] & 0xff) << 16) | ((b[p + 3] & 0xff) << 24);
+        }
+    }
+}
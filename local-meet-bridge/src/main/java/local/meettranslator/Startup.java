@@ -0,0 +1,217 @@
+package local.meettranslator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The bridge's startup phase, measured.
+ *
+ *  - listening: JVM start until the HTTP server accepts connections.
+ *  - pre-connect: one GET /v1/models per HTTP backend, so DNS, TCP, TLS and HTTP/2 setup are paid before
+ *    the first chunk.
+ *    With keep-alive pings on, the same request is repeated whenever the upstream has been idle that long,
+ *    so the pooled connection is not closed between utterances.
+ *  - warm-up: the bridge's own hot paths (JSON envelope, Responses parsing, multipart body, base64, VAD,
+ *    one request through the local server) run on synthetic data. Class loading, Jackson's serializer
+ *    caches and the first JIT tiers are done before live traffic. No upstream calls are made.
+ *
+ * The same warm-up is the training run for the AppCDS archive (mvn -Pcds, Main --cds-training).
+ */
+final class Startup {
+
+    private static final int WARMUP_AUDIO_BYTES = 32_000; // 1 s of 16 kHz s16le
+
+    /** Pre-connect outcome of one backend; millis < 0 if it failed. */
+    private record Preconnect(long millis, String upstream) {
+    }
+
+    private final long jvmStartMillis;
+    private volatile long listeningMillis = -1;
+    private volatile long warmupMillis = -1;
+    private volatile int warmupIterations;
+    private final Map<String, Preconnect> preconnects = new LinkedHashMap<>(); // guarded by itself
+    private volatile long pings;
+    private volatile long pingFailures;
+    private volatile long blackhole;
+
+    Startup() {
+        // The JVM's own start time; ProcessHandle's start instant is only accurate to the second on Linux.
+        this.jvmStartMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+    }
+
+    /** Call once the server is accepting connections; returns ms since JVM start. */
+    long listening() {
+        listeningMillis = System.currentTimeMillis() - jvmStartMillis;
+        return listeningMillis;
+    }
+
+    // -------------------- Upstream --------------------
+
+    /** Opens the upstream connection now; failures are reported, not thrown (the first real call retries). */
+    void preconnect(Main.OpenAiClient client) {
+        long t = System.nanoTime();
+        Preconnect p;
+        try {
+            HttpResponse<byte[]> resp = client.ping();
+            p = new Preconnect((System.nanoTime() - t) / 1_000_000, "HTTP " + resp.statusCode() + " over " + resp.version());
+            System.out.println("Startup: upstream " + client.name() + " connected in " + p.millis() + " ms (" + p.upstream() + ")");
+        } catch (Exception e) {
+            p = new Preconnect(-1, "failed: " + e.getClass().getSimpleName());
+            System.err.println("Startup: pre-connect of " + client.name() + " failed: " + e.getMessage());
+        }
+        synchronized (preconnects) {
+            preconnects.put(client.name(), p);
+        }
+    }
+
+    /** Pings the upstream whenever it has been idle for everySeconds. */
+    void startKeepAlive(Main.OpenAiClient client, long everySeconds) {
+        if (everySeconds <= 0) return;
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "upstream-keepalive");
+            t.setDaemon(true);
+            return t;
+        });
+        long everyMillis = everySeconds * 1000L;
+        timer.scheduleWithFixedDelay(() -> {
+            if (client.idleMillis() < everyMillis) return;
+            try {
+                client.ping();
+                pings++;
+            } catch (Exception e) {
+                pingFailures++;
+            }
+        }, everySeconds, Math.max(1, everySeconds / 2), TimeUnit.SECONDS);
+    }
+
+    // -------------------- Warm-up --------------------
+
+    /**
+     * Runs the local hot paths iterations times, then one GET /health through the real server
+     * (healthUri may be null to skip it). Returns the elapsed ms.
+     */
+    long warmUp(ObjectMapper mapper, int iterations, URI healthUri, String token) {
+        long t = System.nanoTime();
+        try {
+            byte[] pcm = new byte[WARMUP_AUDIO_BYTES];
+            new Random(1).nextBytes(pcm);
+            byte[] wav = Wav.allocate(pcm.length, 16000, 1, 16);
+            System.arraycopy(pcm, 0, wav, Wav.HEADER_BYTES, pcm.length);
+            String b64 = Base64.getEncoder().encodeToString(wav);
+            byte[] envelope = mapper.writeValueAsBytes(mapper.createObjectNode()
+                    .put("audioBase64", b64)
+                    .put("audioMime", "audio/wav")
+                    .put("sourceLang", "en")
+                    .put("targetLang", "ru"));
+            byte[] responses = mapper.writeValueAsBytes(mapper.createObjectNode()
+                    .putArray("output").addObject()
+                    .putArray("content").addObject()
+                    .put("type", "output_text")
+                    .put("text", "Давайте начнём."));
+
+            MultipartBody multipart = new MultipartBody("warmup", "whisper-1");
+            SpeechDetector vad = new SpeechDetector(true, 0.05, 0.01); // own instance, so /health counters stay clean
+            long sink = 0;
+            for (int i = 0; i < iterations; i++) {
+                Main.AudioEnvelope env = Main.readAudioEnvelope(new ByteArrayInputStream(envelope), envelope.length);
+                sink += env.audioLength();
+                sink += vad.isSilence(env.audio(), 0, env.audioLength(), env.audioMime()) ? 1 : 0;
+                sink += drain(multipart.publisher(env.audio(), 0, env.audioLength(), env.audioMime()));
+                JsonNode parsed = mapper.readTree(responses);
+                sink += Main.OpenAiClient.extractOutputText(parsed).length();
+                sink += mapper.writeValueAsBytes(mapper.createObjectNode()
+                        .put("audioMime", "audio/mpeg")
+                        .put("audioBase64", Base64.getEncoder().encodeToString(pcm))).length;
+                sink += Base64.getDecoder().decode(b64).length;
+            }
+            sink += Main.METRICS.scrape().length();
+
+            if (healthUri != null) {
+                HttpClient local = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+                sink += local.send(HttpRequest.newBuilder(healthUri)
+                        .timeout(Duration.ofSeconds(5))
+                        .header("X-Auth-Token", token)
+                        .GET()
+                        .build(), HttpResponse.BodyHandlers.ofByteArray()).body().length;
+            }
+            blackhole = sink; // keeps the results alive
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.err.println("Startup: warm-up failed: " + e.getMessage());
+        }
+        warmupIterations = iterations;
+        warmupMillis = (System.nanoTime() - t) / 1_000_000;
+        return warmupMillis;
+    }
+
+    /** Pulls every buffer out of a body publisher (synchronously for the multipart publishers). */
+    private static long drain(HttpRequest.BodyPublisher publisher) {
+        long[] total = {0};
+        publisher.subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                s.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                total[0] += item.remaining();
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                // nothing to clean up
+            }
+
+            @Override
+            public void onComplete() {
+                // nothing to clean up
+            }
+        });
+        return total[0];
+    }
+
+    // -------------------- Stats --------------------
+
+    /** preconnectMs is the slowest backend (-1 until one connected); upstreams has each one. */
+    ObjectNode statsJson(ObjectMapper mapper) {
+        ObjectNode json = mapper.createObjectNode()
+                .put("listeningMs", listeningMillis)
+                .put("warmupMs", warmupMillis)
+                .put("warmupIterations", warmupIterations)
+                .put("keepAlivePings", pings)
+                .put("keepAlivePingFailures", pingFailures);
+        long slowest = -1;
+        ObjectNode upstreams = mapper.createObjectNode();
+        synchronized (preconnects) {
+            for (Map.Entry<String, Preconnect> e : preconnects.entrySet()) {
+                slowest = Math.max(slowest, e.getValue().millis());
+                upstreams.putObject(e.getKey())
+                        .put("preconnectMs", e.getValue().millis())
+                        .put("upstream", e.getValue().upstream());
+            }
+        }
+        json.put("preconnectMs", slowest);
+        json.set("upstreams", upstreams);
+        return json;
+    }
+}
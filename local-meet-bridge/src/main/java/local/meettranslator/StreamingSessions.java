@@ -0,0 +1,491 @@
+package local.meettranslator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Session-oriented ingest for continuous audio (one session per channel).
+ *
+ * Instead of restarting MediaRecorder every few seconds and sending each chunk as a separate
+ * request, the client opens a session, posts small raw PCM frames (s16le mono) as they are captured,
+ * and keeps one long-lived event stream open. The bridge keeps a rolling buffer, decides segment
+ * boundaries itself (pause in speech, or a maximum length with overlap so words on the boundary are
+ * not cut), and pushes transcript/translation events back on the stream.
+ *
+ * Segments of one session are processed in order by a single worker; different sessions run in parallel.
+ */
+final class StreamingSessions {
+
+    /**
+     * Upstream work for one segment. capturedAt is the wall-clock time the segment was cut, so the
+     * scheduler can drop it if it waits too long (DeadlineScheduler.StaleException).
+     */
+    interface Pipeline {
+        String transcribe(String channel, long capturedAt, byte[] wav, String mime) throws IOException;
+
+        String translate(String channel, long capturedAt, String sourceLang, String targetLang, String text) throws IOException;
+    }
+
+    record Event(String name, ObjectNode data) {
+    }
+
+    record Segment(long seq, byte[] wav, long startMs, long endMs, long capturedAt) {
+    }
+
+    private static final int MAX_PENDING_EVENTS = 256;
+    private static final int MAX_PENDING_SEGMENTS = 8;
+    private static final long CLOSED_GRACE_MS = 30_000;
+    private static final long WORKER_POLL_MS = 250;
+
+    private final ObjectMapper mapper;
+    private final TranscriptHistory history;
+    private final TranscriptJournal journal;
+    private final Pipeline pipeline;
+    private final int maxSessions;
+    private final long idleTimeoutMs;
+    private final Segmenter.Config segmenterConfig;
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+
+    private final AtomicLong opened = new AtomicLong();
+    private final AtomicLong segments = new AtomicLong();
+    private final AtomicLong pcmBytes = new AtomicLong();
+    private final AtomicLong segmenterBytes = new AtomicLong();
+    private final AtomicLong droppedSegments = new AtomicLong();
+
+    StreamingSessions(ObjectMapper mapper, TranscriptHistory history, TranscriptJournal journal, Pipeline pipeline, int maxSessions, long idleTimeoutMs, Segmenter.Config segmenterConfig) {
+        this.mapper = mapper;
+        this.history = history;
+        this.journal = journal;
+        this.pipeline = pipeline;
+        this.maxSessions = maxSessions;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.segmenterConfig = segmenterConfig;
+
+        ScheduledExecutorService reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "session-reaper");
+            t.setDaemon(true);
+            return t;
+        });
+        reaper.scheduleWithFixedDelay(this::closeIdle, 10, 10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Opens a session, or returns null if the session limit is reached. With a converter, posted frames
+     * are converted to s16le mono at sampleRate first; without one they already are.
+     */
+    Session open(String channel, String sourceLang, String targetLang, int sampleRate, PcmIngest.Converter converter) {
+        Session s;
+        // Check and insert together so concurrent opens cannot overshoot maxSessions; removals only lower the count.
+        synchronized (sessions) {
+            if (sessions.size() >= maxSessions) return null;
+            s = new Session(newId(), channel, sourceLang, targetLang, sampleRate, converter);
+            sessions.put(s.id, s);
+        }
+        opened.incrementAndGet();
+        s.worker.start();
+        return s;
+    }
+
+    Session get(String id) {
+        return id == null ? null : sessions.get(id);
+    }
+
+    /**
+     * Stops accepting audio. The session stays readable until its listener has received the
+     * remaining events and the final "closed" event (or until it has been idle for a while).
+     */
+    void close(String id) {
+        Session s = get(id);
+        if (s != null) s.close();
+    }
+
+    private void closeIdle() {
+        long now = System.currentTimeMillis();
+        for (Session s : sessions.values()) {
+            long idle = now - s.lastActivity;
+            if (s.closed && idle > CLOSED_GRACE_MS) sessions.remove(s.id);
+            else if (idle > idleTimeoutMs) s.close();
+        }
+    }
+
+    private String newId() {
+        final String alphabet = "abcdefghijklmnopqrstuvwxyz0123456789";
+        StringBuilder sb = new StringBuilder(20);
+        for (int i = 0; i < 20; i++) sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        return sb.toString();
+    }
+
+    ObjectNode statsJson(ObjectMapper mapper) {
+        return mapper.createObjectNode()
+                .put("open", sessions.size())
+                .put("maxSessions", maxSessions)
+                .put("opened", opened.get())
+                .put("segments", segments.get())
+                .put("droppedSegments", droppedSegments.get())
+                .put("pcmBytes", pcmBytes.get())
+                .put("segmenterBytes", segmenterBytes.get());
+    }
+
+    // -------------------- Session --------------------
+
+    final class Session {
+        final String id;
+        final String channel;
+        final String sourceLang;
+        final String targetLang;
+        final int sampleRate;
+
+        private final Segmenter segmenter;
+        private final PcmIngest.Converter converter; // null = frames arrive as s16le mono at sampleRate
+        private final BlockingQueue<Event> events = new LinkedBlockingQueue<>(MAX_PENDING_EVENTS);
+        private final BlockingQueue<Segment> pending = new LinkedBlockingQueue<>(MAX_PENDING_SEGMENTS);
+        private final Thread worker;
+        private final byte[] readBuf = new byte[16 * 1024];
+
+        private volatile long lastActivity = System.currentTimeMillis();
+        private volatile boolean closed;
+
+        private Session(String id, String channel, String sourceLang, String targetLang, int sampleRate,
+                        PcmIngest.Converter converter) {
+            this.id = id;
+            this.channel = channel;
+            this.sourceLang = sourceLang;
+            this.targetLang = targetLang;
+            this.sampleRate = sampleRate;
+            this.segmenter = new Segmenter(sampleRate, segmenterConfig);
+            this.converter = converter;
+            this.worker = Thread.ofVirtual().name("session-" + id).unstarted(this::work);
+        }
+
+        /** Feeds PCM frames from a request body (in the session's input format). */
+        synchronized void append(InputStream in) throws IOException {
+            if (closed) throw new IOException("Session is closed");
+            lastActivity = System.currentTimeMillis();
+            int n;
+            while ((n = in.read(readBuf)) != -1) {
+                pcmBytes.addAndGet(n);
+                if (converter == null) {
+                    segment(readBuf, n);
+                } else {
+                    converter.feed(readBuf, 0, n);
+                    segment(converter.buffer(), converter.size());
+                    converter.clear();
+                }
+            }
+        }
+
+        private void segment(byte[] pcm, int n) {
+            segmenterBytes.addAndGet(n);
+            for (Segment seg : segmenter.feed(pcm, 0, n)) enqueue(seg);
+        }
+
+        /**
+         * Next event for the listener, or null after waitMs without one.
+         * Returns an event named "closed" once the session has ended and everything was delivered.
+         */
+        Event nextEvent(long waitMs) throws InterruptedException {
+            // Polling a closed session does not keep it alive; the reaper removes it after the grace period.
+            if (!closed) lastActivity = System.currentTimeMillis();
+            Event e = events.poll(waitMs, TimeUnit.MILLISECONDS);
+            if (e != null && "closed".equals(e.name())) sessions.remove(id);
+            if (e == null && closed && sessions.get(id) != this) {
+                // Reaped before the listener saw "closed".
+                e = new Event("closed", mapper.createObjectNode().put("sessionId", id));
+            }
+            return e;
+        }
+
+        boolean isClosed() {
+            return closed;
+        }
+
+        private synchronized void close() {
+            if (closed) return;
+            Segment last = segmenter.flush();
+            if (last != null) enqueue(last);
+            // Set after the last segment is queued: the worker exits once it sees closed and nothing pending.
+            // A flag rather than a sentinel in the queue, so a full backlog cannot lose the end of the session.
+            closed = true;
+        }
+
+        private void enqueue(Segment seg) {
+            if (!pending.offer(seg)) {
+                // Upstream cannot keep up; dropping is better than falling further behind.
+                droppedSegments.incrementAndGet();
+                emit("dropped", mapper.createObjectNode().put("segment", seg.seq()).put("reason", "backlog"));
+            }
+        }
+
+        private void work() {
+            try {
+                while (true) {
+                    Segment seg = pending.poll(WORKER_POLL_MS, TimeUnit.MILLISECONDS);
+                    if (seg != null) process(seg);
+                    else if (closed && pending.isEmpty()) break;
+                }
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            } finally {
+                emit("closed", mapper.createObjectNode().put("sessionId", id));
+            }
+        }
+
+        private void process(Segment seg) {
+            segments.incrementAndGet();
+            TranscriptJournal.Entry je = journal.entry("session", id, channel, seg.capturedAt())
+                    .segment(seg.seq())
+                    .sourceLang(sourceLang);
+            try {
+                long t = System.nanoTime();
+                String transcript = pipeline.transcribe(channel, seg.capturedAt(), seg.wav(), "audio/wav");
+                t = je.lap(null, "transcribe", t);
+                if (transcript == null || transcript.isBlank()) {
+                    je.skipped("empty");
+                    return;
+                }
+                transcript = transcript.trim();
+                je.transcript(transcript);
+
+                emit("transcript", segmentJson(seg)
+                        .put("transcript", transcript));
+
+                // Segments start with the tail of the previous one; that overlap is not translated twice.
+                TranscriptHistory.Verdict seen = history.check("session/" + id, transcript);
+                String translation = seen.isRepeat() ? ""
+                        : pipeline.translate(channel, seg.capturedAt(), sourceLang, targetLang, seen.text());
+                je.lap(null, "translate", t);
+                je.translation(targetLang, translation);
+                if (seen.isRepeat()) je.skipped("repeat");
+                emit("translation", Main.overlap(segmentJson(seg)
+                        .put("transcript", transcript)
+                        .put("translation", translation), seen));
+            } catch (DeadlineScheduler.StaleException e) {
+                // Waited too long for the upstream; a late subtitle is worse than a missing one.
+                droppedSegments.incrementAndGet();
+                je.skipped("stale");
+                emit("dropped", mapper.createObjectNode()
+                        .put("segment", seg.seq())
+                        .put("reason", "stale")
+                        .put("lagMs", e.ticket().ageMillis()));
+            } catch (Exception e) {
+                e.printStackTrace(System.err);
+                je.failed(e);
+                String msg = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+                emit("error", segmentJson(seg).put("ok", false).put("error", e.getClass().getSimpleName() + ": " + msg));
+            } finally {
+                journal.append(je);
+            }
+        }
+
+        private ObjectNode segmentJson(Segment seg) {
+            return mapper.createObjectNode()
+                    .put("sessionId", id)
+                    .put("channel", channel)
+                    .put("segment", seg.seq())
+                    .put("startMs", seg.startMs())
+                    .put("endMs", seg.endMs())
+                    .put("sourceLang", sourceLang)
+                    .put("targetLang", targetLang);
+        }
+
+        private void emit(String name, ObjectNode data) {
+            Event e = new Event(name, data);
+            while (!events.offer(e)) {
+                // Nobody is listening: keep the newest events.
+                events.poll();
+            }
+        }
+    }
+
+    // -------------------- Segmenter --------------------
+
+    /**
+     * Cuts a continuous s16le mono PCM stream into speech segments using 20 ms frame energy.
+     *
+     *  - A segment starts at the first speech frame, with preroll frames of audio before it.
+     *  - It ends after silenceCutMs of non-speech (trailing silence trimmed to 200 ms), or
+     *    when it reaches maxSegmentMs; then the next segment starts with the last overlapMs
+     *    of the previous one, so a word on the boundary is heard in full at least once.
+     *  - Segments with less than minSpeechMs of speech are discarded.
+     */
+    static final class Segmenter {
+
+        record Config(double energyThreshold, int silenceCutMs, int maxSegmentMs, int minSpeechMs, int overlapMs) {
+        }
+
+        private static final int FRAME_MS = 20;
+        private static final int KEEP_TRAILING_MS = 200;
+
+        private final int sampleRate;
+        private final int frameBytes;
+        private final double energyThreshold;
+        private final int silenceCutFrames;
+        private final int maxFrames;
+        private final int minSpeechFrames;
+        private final int overlapFrames;
+        private final int keepTrailingFrames;
+
+        private final byte[] frame;
+        private int frameFill;
+
+        // Current segment (or preroll ring while idle), in whole frames.
+        private final byte[] seg;
+        private int segFrames;
+        private final byte[] preroll;
+        private int prerollFrames;
+        private int prerollHead;
+
+        private boolean inSpeech;
+        private int speechFrames;
+        private int trailingSilence;
+        private long framesSeen;
+        private long segStartFrame;
+        private long seq;
+        private double noiseFloor;
+
+        Segmenter(int sampleRate, Config c) {
+            this.sampleRate = sampleRate;
+            this.frameBytes = Math.max(2, sampleRate * FRAME_MS / 1000 * 2);
+            this.energyThreshold = c.energyThreshold();
+            this.silenceCutFrames = Math.max(1, c.silenceCutMs() / FRAME_MS);
+            this.maxFrames = Math.max(10, c.maxSegmentMs() / FRAME_MS);
+            this.minSpeechFrames = Math.max(1, c.minSpeechMs() / FRAME_MS);
+            this.overlapFrames = Math.max(0, Math.min(maxFrames / 2, c.overlapMs() / FRAME_MS));
+            this.keepTrailingFrames = KEEP_TRAILING_MS / FRAME_MS;
+            this.frame = new byte[frameBytes];
+            this.seg = new byte[maxFrames * frameBytes];
+            this.preroll = new byte[Math.max(1, overlapFrames) * frameBytes];
+        }
+
+        List<Segment> feed(byte[] b, int off, int len) {
+            List<Segment> out = new ArrayList<>(1);
+            while (len > 0) {
+                int n = Math.min(len, frameBytes - frameFill);
+                System.arraycopy(b, off, frame, frameFill, n);
+                frameFill += n;
+                off += n;
+                len -= n;
+                if (frameFill == frameBytes) {
+                    Segment s = onFrame();
+                    if (s != null) out.add(s);
+                    frameFill = 0;
+                }
+            }
+            return out;
+        }
+
+        /** Emits whatever speech is buffered (end of stream). */
+        Segment flush() {
+            if (!inSpeech) return null;
+            inSpeech = false;
+            return emit(segFrames);
+        }
+
+        private Segment onFrame() {
+            double rms = rms(frame);
+            double threshold = Math.max(energyThreshold, noiseFloor * 3.0);
+            boolean speech = rms >= threshold;
+            if (!speech) noiseFloor = noiseFloor == 0 ? rms : noiseFloor * 0.95 + rms * 0.05;
+
+            Segment out = null;
+            if (!inSpeech) {
+                if (speech) {
+                    inSpeech = true;
+                    segFrames = 0;
+                    drainPrerollIntoSegment();
+                    segStartFrame = framesSeen - segFrames;
+                    appendFrame();
+                    speechFrames = 1;
+                    trailingSilence = 0;
+                } else {
+                    pushPreroll();
+                }
+            } else {
+                appendFrame();
+                if (speech) {
+                    speechFrames++;
+                    trailingSilence = 0;
+                } else {
+                    trailingSilence++;
+                }
+
+                if (trailingSilence >= silenceCutFrames) {
+                    inSpeech = false;
+                    out = emit(segFrames - trailingSilence + Math.min(trailingSilence, keepTrailingFrames));
+                } else if (segFrames >= maxFrames) {
+                    out = emit(segFrames);
+                    // Keep the tail as the start of the next segment.
+                    int keep = overlapFrames;
+                    System.arraycopy(seg, (segFrames - keep) * frameBytes, seg, 0, keep * frameBytes);
+                    segFrames = keep;
+                    segStartFrame = framesSeen + 1 - keep;
+                    speechFrames = 0;
+                }
+            }
+            framesSeen++;
+            return out;
+        }
+
+        private Segment emit(int frames) {
+            int speech = speechFrames;
+            speechFrames = 0;
+            if (speech < minSpeechFrames || frames <= 0) return null;
+
+            int dataLen = frames * frameBytes;
+            byte[] wav = Wav.allocate(dataLen, sampleRate, 1, 16);
+            System.arraycopy(seg, 0, wav, Wav.HEADER_BYTES, dataLen);
+            long startMs = segStartFrame * FRAME_MS;
+            return new Segment(seq++, wav, startMs, startMs + (long) frames * FRAME_MS, System.currentTimeMillis());
+        }
+
+        private void appendFrame() {
+            System.arraycopy(frame, 0, seg, segFrames * frameBytes, frameBytes);
+            segFrames++;
+        }
+
+        private void pushPreroll() {
+            if (overlapFrames == 0) return;
+            System.arraycopy(frame, 0, preroll, prerollHead * frameBytes, frameBytes);
+            prerollHead = (prerollHead + 1) % overlapFrames;
+            if (prerollFrames < overlapFrames) prerollFrames++;
+        }
+
+        private void drainPrerollIntoSegment() {
+            int start = (prerollHead - prerollFrames + overlapFrames) % Math.max(1, overlapFrames);
+            for (int i = 0; i < prerollFrames; i++) {
+                int idx = (start + i) % overlapFrames;
+                System.arraycopy(preroll, idx * frameBytes, seg, segFrames * frameBytes, frameBytes);
+                segFrames++;
+            }
+            prerollFrames = 0;
+            prerollHead = 0;
+        }
+
+        private static double rms(byte[] f) {
+            double sum = 0;
+            int n = f.length / 2;
+            for (int i = 0; i < n; i++) {
+                int v = (f[2 * i + 1] << 8) | (f[2 * i] & 0xff);
+                double x = v / 32768.0;
+                sum += x * x;
+            }
+            return Math.sqrt(sum / n);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package local.meettranslator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rolling transcript state per stream, so the bridge does not pay for translating text the client
+ * would throw away as a repeat.
+ *
+ * Recorder chunks and session segments overlap at their boundaries, and Whisper often hears the
+ * same words twice. Each new transcript is normalized to tokens (case and Unicode form folded,
+ * punctuation and symbols dropped, as normalizeForDedupe in the extension) and compared with the
+ * recent tokens of the same stream:
+ *  - repeat: it is contained in the last segment, or is near-identical to it (token-set Jaccard)
+ *    -> nothing is translated. Only the last segment, as isNearDuplicate in the extension: short
+ *    replies ("yes", "thank you") recur in the rolling tokens without being repeats;
+ *  - overlap: it starts with the end of the recent tokens (at least minOverlapTokens) -> only the
+ *    new tail, cut from the original text, is translated;
+ *  - otherwise the whole transcript is translated.
+ *
+ * A stream is a client/channel pair or a session; state older than windowMillis is forgotten.
+ * A null key (client that did not name itself) is passed through unchanged.
+ */
+final class TranscriptHistory {
+
+    enum Kind { NEW, TRIMMED, REPEAT }
+
+    /** text is what should be translated: the transcript, its new tail, or "" for a repeat. */
+    record Verdict(Kind kind, String text, int skippedTokens) {
+        boolean isRepeat() {
+            return kind == Kind.REPEAT;
+        }
+    }
+
+    /** Recent tokens kept per stream; enough for a few sentences of overlap. */
+    private static final int MAX_TOKENS = 64;
+
+    private static final class Track {
+        final List<String> tokens = new ArrayList<>();
+        List<String> last = List.of();
+        long lastAtMillis;
+    }
+
+    private final long windowMillis;
+    private final int minOverlapTokens;
+    private final double repeatJaccard;
+    private final int maxTracks;
+
+    // Access-ordered: the least recently heard stream is dropped first. Guarded by "this".
+    private final LinkedHashMap<String, Track> tracks;
+
+    private final AtomicLong segments = new AtomicLong();
+    private final AtomicLong repeats = new AtomicLong();
+    private final AtomicLong trimmed = new AtomicLong();
+    private final AtomicLong skippedTokens = new AtomicLong();
+
+    /**
+     * @param windowMillis     how long a stream's last transcript counts; 0 turns the check off
+     * @param minOverlapTokens shortest prefix/suffix match treated as overlap
+     * @param repeatJaccard    token-set similarity to the last segment treated as a repeat (above 1 = never)
+     * @param maxTracks        streams tracked at most
+     */
+    TranscriptHistory(long windowMillis, int minOverlapTokens, double repeatJaccard, int maxTracks) {
+        this.windowMillis = Math.max(0, windowMillis);
+        this.minOverlapTokens = Math.max(1, minOverlapTokens);
+        this.repeatJaccard = repeatJaccard;
+        this.maxTracks = Math.max(1, maxTracks);
+        this.tracks = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Track> eldest) {
+                return size() > TranscriptHistory.this.maxTracks;
+            }
+        };
+    }
+
+    boolean isEnabled() {
+        return windowMillis > 0;
+    }
+
+    /** Stream key of a recorder client: null (no state) unless the client sent an id. */
+    static String key(String client, String channel) {
+        if (client == null || client.isBlank()) return null;
+        return client.trim() + "/" + (channel == null || channel.isBlank() ? "incoming" : channel.trim());
+    }
+
+    /** Compares transcript with the stream's recent text and records it. */
+    Verdict check(String key, String transcript) {
+        String text = transcript == null ? "" : transcript.trim();
+        if (!isEnabled() || key == null || text.isEmpty()) return new Verdict(Kind.NEW, text, 0);
+
+        List<Token> words = tokenize(text);
+        if (words.isEmpty()) return new Verdict(Kind.NEW, text, 0);
+        List<String> tokens = new ArrayList<>(words.size());
+        for (Token w : words) tokens.add(w.norm());
+
+        Verdict v;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            Track track = tracks.get(key);
+            if (track == null || now - track.lastAtMillis > windowMillis) {
+                track = new Track();
+                tracks.put(key, track);
+            }
+
+            if (isRepeat(track, tokens)) {
+                v = new Verdict(Kind.REPEAT, "", tokens.size());
+            } else {
+                int k = overlap(track.tokens, tokens);
+                v = k == 0
+                        ? new Verdict(Kind.NEW, text, 0)
+                        : new Verdict(Kind.TRIMMED, text.substring(words.get(k).start()).trim(), k);
+                // Only the new words extend the stream, so the next overlap is matched against real speech order.
+                track.tokens.addAll(tokens.subList(k, tokens.size()));
+                int excess = track.tokens.size() - MAX_TOKENS;
+                if (excess > 0) track.tokens.subList(0, excess).clear();
+            }
+            track.last = tokens;
+            track.lastAtMillis = now;
+        }
+
+        segments.incrementAndGet();
+        if (v.kind() == Kind.REPEAT) repeats.incrementAndGet();
+        if (v.kind() == Kind.TRIMMED) trimmed.incrementAndGet();
+        skippedTokens.addAndGet(v.skippedTokens());
+        return v;
+    }
+
+    private boolean isRepeat(Track track, List<String> tokens) {
+        if (track.last.isEmpty()) return false;
+        if (indexOf(track.last, tokens) >= 0) return true;
+        return jaccard(track.last, tokens) >= repeatJaccard;
+    }
+
+    /** Longest k >= minOverlapTokens (and shorter than next) with history's last k tokens == next's first k. */
+    private int overlap(List<String> history, List<String> next) {
+        int max = Math.min(history.size(), next.size() - 1);
+        for (int k = max; k >= minOverlapTokens; k--) {
+            if (history.subList(history.size() - k, history.size()).equals(next.subList(0, k))) return k;
+        }
+        return 0;
+    }
+
+    private static int indexOf(List<String> haystack, List<String> needle) {
+        for (int i = 0; i + needle.size() <= haystack.size(); i++) {
+            if (haystack.subList(i, i + needle.size()).equals(needle)) return i;
+        }
+        return -1;
+    }
+
+    private static double jaccard(List<String> a, List<String> b) {
+        Set<String> sa = new HashSet<>(a);
+        Set<String> sb = new HashSet<>(b);
+        int union = sa.size() + sb.size();
+        sa.retainAll(sb);
+        union -= sa.size();
+        return union == 0 ? 0 : (double) sa.size() / union;
+    }
+
+    /** A normalized word and where it starts in the original text. */
+    record Token(String norm, int start) {
+    }
+
+    /** Words are runs of letters, digits and combining marks; everything else separates them. */
+    static List<Token> tokenize(String text) {
+        List<Token> out = new ArrayList<>();
+        int i = 0;
+        int n = text.length();
+        while (i < n) {
+            while (i < n && !isWordChar(text.codePointAt(i))) i += Character.charCount(text.codePointAt(i));
+            int start = i;
+            while (i < n && isWordChar(text.codePointAt(i))) i += Character.charCount(text.codePointAt(i));
+            if (i > start) {
+                String norm = Normalizer.normalize(text.substring(start, i), Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+                out.add(new Token(norm, start));
+            }
+        }
+        return out;
+    }
+
+    private static boolean isWordChar(int cp) {
+        if (Character.isLetterOrDigit(cp)) return true;
+        int type = Character.getType(cp);
+        return type == Character.NON_SPACING_MARK || type == Character.COMBINING_SPACING_MARK || type == Character.ENCLOSING_MARK;
+    }
+
+    // -------------------- Stats --------------------
+
+    ObjectNode statsJson(ObjectMapper mapper) {
+        int size;
+        synchronized (this) {
+            size = tracks.size();
+        }
+        return mapper.createObjectNode()
+                .put("enabled", isEnabled())
+                .put("streams", size)
+                .put("segments", segments.get())
+                .put("repeats", repeats.get())
+                .put("trimmed", trimmed.get())
+                .put("skippedTokens", skippedTokens.get());
+    }
+}
@@ -0,0 +1,530 @@
+package local.meettranslator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Append-only journal of every transcribed segment, for reviewing a call afterwards and for offline
+ * quality and latency analysis.
+ *
+ * Handlers fill in an Entry (session, channel, capture and completion time, per-stage latencies,
+ * transcript, translations, cache and skip flags) and append() it to a lock-free queue; nothing on the
+ * request path touches the disk. A single writer thread turns entries into JSON lines, appends them to
+ * the current segment file and fsyncs at most every syncMillis, so one fsync covers everything written
+ * since the last one. Segment files roll at segmentBytes; the oldest are deleted beyond maxBytes.
+ *
+ * The writer also keeps an index of where each session's lines are (segment, offset, length), so a
+ * session is exported with a few positional reads instead of a scan. The index of existing files is
+ * rebuilt in the background at startup.
+ *
+ * A full queue (maxQueued) drops entries rather than slowing the caller down.
+ */
+final class TranscriptJournal {
+
+    record Config(Path dir, long segmentBytes, long maxBytes, long syncMillis, int maxQueued) {
+    }
+
+    /** Where one journal line is. */
+    record Ref(long segment, long offset, int length) {
+    }
+
+    /** One segment's line: filled in by the handler, handed to append() when the segment is done. */
+    static final class Entry {
+        private final String endpoint;
+        private final String session;
+        private final String channel;
+        private final long captureTs;
+        private long segment = -1;
+        private final Map<String, Double> stagesMs = new LinkedHashMap<>();
+        private final Map<String, String> translations = new LinkedHashMap<>();
+        private final Set<String> cached = new TreeSet<>();
+        private String sourceLang = "";
+        private String transcript = "";
+        private String skipped;
+        private String error;
+        private long completedTs;
+
+        private Entry(String endpoint, String session, String channel, long captureTs) {
+            this.endpoint = endpoint;
+            this.session = session;
+            this.channel = channel;
+            this.captureTs = captureTs;
+        }
+
+        /** Like Metrics.Endpoint.lap (which is also called, if m != null), and keeps the stage time for the journal. */
+        long lap(Metrics.Endpoint m, String stage, long sinceNanos) {
+            long now = m == null ? System.nanoTime() : m.lap(stage, sinceNanos);
+            stagesMs.merge(stage, (now - sinceNanos) / 1_000_000.0, Double::sum);
+            return now;
+        }
+
+        Entry segment(long seq) {
+            this.segment = seq;
+            return this;
+        }
+
+        Entry sourceLang(String lang) {
+            this.sourceLang = lang == null ? "" : lang;
+            return this;
+        }
+
+        Entry transcript(String text) {
+            this.transcript = text == null ? "" : text;
+            return this;
+        }
+
+        Entry translation(String lang, String text) {
+            translations.put(lang, text == null ? "" : text);
+            return this;
+        }
+
+        /** The translation into lang came from the translation cache. */
+        void cached(String lang) {
+            cached.add(lang);
+        }
+
+        /** Why the segment was not (fully) processed: silence, stale, repeat, empty. */
+        Entry skipped(String reason) {
+            this.skipped = reason;
+            return this;
+        }
+
+        void failed(Exception e) {
+            this.error = e.getClass().getSimpleName() + (e.getMessage() == null ? "" : ": " + e.getMessage());
+        }
+    }
+
+    private static final int MAX_BATCH_BYTES = 256 * 1024;
+    private static final long IDLE_PARK_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final String PREFIX = "transcripts-";
+    private static final String SUFFIX = ".jsonl";
+
+    private final ObjectMapper mapper;
+    private final Config config;
+    private final Thread writer;
+
+    private final ConcurrentLinkedQueue<Entry> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private volatile boolean parked;
+    private volatile boolean closing;
+
+    // Segment files, oldest first, with their sizes; writer thread only.
+    private final TreeMap<Long, Long> segments = new TreeMap<>();
+    private FileChannel current;
+    private long currentSegment = -1;
+    private boolean failing;
+
+    // Guarded by "index".
+    private final Map<String, SessionIndex> index = new HashMap<>();
+
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong writtenBytes = new AtomicLong();
+    private final AtomicLong storedBytes = new AtomicLong();
+    private final AtomicLong syncs = new AtomicLong();
+    private final AtomicLong syncNanos = new AtomicLong();
+    private final AtomicLong writeErrors = new AtomicLong();
+    private final AtomicLong deletedSegments = new AtomicLong();
+    private volatile int segmentCount;
+    private volatile boolean indexed;
+
+    private static final class SessionIndex {
+        final List<Ref> refs = new ArrayList<>();
+        long firstTs = Long.MAX_VALUE;
+        long lastTs;
+    }
+
+    /** config.dir() == null turns the journal off. */
+    TranscriptJournal(ObjectMapper mapper, Config config) {
+        this.mapper = mapper;
+        this.config = config;
+        this.writer = isEnabled() ? Thread.ofPlatform().daemon().name("transcript-journal").start(this::run) : null;
+    }
+
+    boolean isEnabled() {
+        return config.dir() != null;
+    }
+
+    /** A new entry; append() it when the segment is done (also when the journal is off, which costs nothing). */
+    Entry entry(String endpoint, String session, String channel, long captureTs) {
+        return new Entry(endpoint, session == null || session.isBlank() ? "anonymous" : session, channel, captureTs);
+    }
+
+    /** Queues the entry for the writer and returns at once; null is ignored. */
+    void append(Entry e) {
+        if (e == null || !isEnabled() || closing) return;
+        e.completedTs = System.currentTimeMillis();
+        if (queued.incrementAndGet() > config.maxQueued()) {
+            queued.decrementAndGet();
+            dropped.incrementAndGet();
+            return;
+        }
+        queue.offer(e);
+        appended.incrementAndGet();
+        if (parked) LockSupport.unpark(writer);
+    }
+
+    /** Writes and syncs what is queued, then stops the writer (shutdown hook). */
+    void close() {
+        if (!isEnabled()) return;
+        closing = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(5_000);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // -------------------- Writer --------------------
+
+    private void run() {
+        try {
+            Files.createDirectories(config.dir());
+            rebuildIndex();
+        } catch (IOException | RuntimeException e) {
+            writeErrors.incrementAndGet();
+            System.err.println("Transcript journal: cannot read " + config.dir() + ": " + e);
+        }
+        indexed = true;
+
+        ByteArrayOutputStream batch = new ByteArrayOutputStream(64 * 1024);
+        List<Entry> batchEntries = new ArrayList<>();
+        List<int[]> batchLines = new ArrayList<>(); // offset in batch, length
+        long syncEvery = TimeUnit.MILLISECONDS.toNanos(Math.max(0, config.syncMillis()));
+        long lastSync = System.nanoTime();
+        boolean unsynced = false;
+
+        while (true) {
+            Entry e;
+            while (batch.size() < MAX_BATCH_BYTES && (e = queue.poll()) != null) {
+                queued.decrementAndGet();
+                byte[] line = line(e);
+                batchEntries.add(e);
+                batchLines.add(new int[]{batch.size(), line.length});
+                batch.write(line, 0, line.length);
+            }
+            if (batch.size() > 0) {
+                write(batch, batchEntries, batchLines);
+                unsynced = true;
+                batch.reset();
+                batchEntries.clear();
+                batchLines.clear();
+            }
+
+            long now = System.nanoTime();
+            boolean idle = queue.isEmpty();
+            if (unsynced && now - lastSync >= syncEvery) {
+                sync();
+                lastSync = now;
+                unsynced = false;
+            }
+            if (!idle) continue;
+            if (closing) {
+                if (unsynced) sync();
+                closeCurrent();
+                return;
+            }
+
+            parked = true;
+            // Re-checked after announcing the park, so an append() in between is not missed.
+            if (queue.isEmpty() && !closing) {
+                LockSupport.parkNanos(this, unsynced ? Math.max(1, syncEvery - (now - lastSync)) : IDLE_PARK_NANOS);
+            }
+            parked = false;
+        }
+    }
+
+    private byte[] line(Entry e) {
+        ObjectNode json = mapper.createObjectNode()
+                .put("session", e.session)
+                .put("channel", e.channel)
+                .put("endpoint", e.endpoint);
+        if (e.segment >= 0) json.put("segment", e.segment);
+        json.put("captureTs", e.captureTs)
+                .put("completedTs", e.completedTs)
+                .put("latencyMs", e.captureTs > 0 ? e.completedTs - e.captureTs : -1);
+        ObjectNode stages = json.putObject("stagesMs");
+        e.stagesMs.forEach((k, v) -> stages.put(k, Math.round(v * 10) / 10.0));
+        json.put("sourceLang", e.sourceLang)
+                .put("transcript", e.transcript);
+        ObjectNode tr = json.putObject("translations");
+        e.translations.forEach(tr::put);
+        ArrayNode cached = json.putArray("cached");
+        e.cached.forEach(cached::add);
+        if (e.skipped != null) json.put("skipped", e.skipped);
+        if (e.error != null) json.put("error", e.error);
+        try {
+            byte[] bytes = mapper.writeValueAsBytes(json);
+            byte[] line = new byte[bytes.length + 1];
+            System.arraycopy(bytes, 0, line, 0, bytes.length);
+            line[bytes.length] = '\n';
+            return line;
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex); // an ObjectNode always serializes
+        }
+    }
+
+    private void write(ByteArrayOutputStream batch, List<Entry> entries, List<int[]> lines) {
+        try {
+            if (current == null || (segments.get(currentSegment) > 0
+                    && segments.get(currentSegment) + batch.size() > config.segmentBytes())) {
+                roll();
+            }
+            long base = segments.get(currentSegment);
+            ByteBuffer buf = ByteBuffer.wrap(batch.toByteArray());
+            while (buf.hasRemaining()) current.write(buf);
+            segments.put(currentSegment, base + batch.size());
+            storedBytes.addAndGet(batch.size());
+            writtenBytes.addAndGet(batch.size());
+            written.addAndGet(entries.size());
+            synchronized (index) {
+                for (int i = 0; i < entries.size(); i++) {
+                    Entry e = entries.get(i);
+                    int[] l = lines.get(i);
+                    add(e.session, e.completedTs, new Ref(currentSegment, base + l[0], l[1]));
+                }
+            }
+            failing = false;
+        } catch (IOException e) {
+            writeErrors.incrementAndGet();
+            // Reported once per run of failures (a full disk would otherwise log every batch).
+            if (!failing) System.err.println("Transcript journal: write failed, " + entries.size() + " lines lost: " + e);
+            failing = true;
+            closeCurrent();
+        }
+    }
+
+    private void sync() {
+        if (current == null) return;
+        long started = System.nanoTime();
+        try {
+            current.force(false);
+            syncs.incrementAndGet();
+            syncNanos.addAndGet(System.nanoTime() - started);
+        } catch (IOException e) {
+            writeErrors.incrementAndGet();
+            System.err.println("Transcript journal: fsync failed: " + e);
+        }
+    }
+
+    /** Starts a new segment file after the last one, and deletes the oldest beyond maxBytes. */
+    private void roll() throws IOException {
+        if (current != null) {
+            sync();
+            closeCurrent();
+        }
+        long next = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        current = FileChannel.open(file(next), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        currentSegment = next;
+        segments.put(next, 0L);
+
+        while (storedBytes.get() > config.maxBytes() && segments.size() > 1) {
+            Map.Entry<Long, Long> oldest = segments.pollFirstEntry();
+            try {
+                Files.deleteIfExists(file(oldest.getKey()));
+            } catch (IOException e) {
+                writeErrors.incrementAndGet();
+                System.err.println("Transcript journal: cannot delete " + file(oldest.getKey()) + ": " + e);
+            }
+            storedBytes.addAndGet(-oldest.getValue());
+            deletedSegments.incrementAndGet();
+            forget(oldest.getKey());
+        }
+        segmentCount = segments.size();
+    }
+
+    private void closeCurrent() {
+        if (current == null) return;
+        try {
+            current.close();
+        } catch (IOException ignore) {
+            // nothing left to do with it
+        }
+        current = null;
+    }
+
+    private Path file(long segment) {
+        return config.dir().resolve(String.format("%s%012d%s", PREFIX, segment, SUFFIX));
+    }
+
+    // -------------------- Index --------------------
+
+    /** Indexes the lines of the segment files already on disk; a torn last line (crash) is skipped. */
+    private void rebuildIndex() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(config.dir(), PREFIX + "*" + SUFFIX)) {
+            for (Path f : files) {
+                String name = f.getFileName().toString();
+                try {
+                    segments.put(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())), Files.size(f));
+                } catch (NumberFormatException ignore) {
+                    // not one of ours
+                }
+            }
+        }
+        for (Map.Entry<Long, Long> s : segments.entrySet()) {
+            storedBytes.addAndGet(s.getValue());
+            byte[] data = Files.readAllBytes(file(s.getKey()));
+            int start = 0;
+            for (int i = 0; i < data.length; i++) {
+                if (data[i] != '\n') continue;
+                try {
+                    JsonNode line = mapper.readTree(data, start, i - start);
+                    synchronized (index) {
+                        add(line.path("session").asText("anonymous"), line.path("completedTs").asLong(0),
+                                new Ref(s.getKey(), start, i - start + 1));
+                    }
+                } catch (IOException ignore) {
+                    // damaged line; the export still copies its neighbours
+                }
+                start = i + 1;
+            }
+        }
+        segmentCount = segments.size();
+    }
+
+    private void add(String session, long ts, Ref ref) {
+        SessionIndex s = index.computeIfAbsent(session, k -> new SessionIndex());
+        s.refs.add(ref);
+        s.firstTs = Math.min(s.firstTs, ts);
+        s.lastTs = Math.max(s.lastTs, ts);
+    }
+
+    private void forget(long segment) {
+        synchronized (index) {
+            Iterator<SessionIndex> it = index.values().iterator();
+            while (it.hasNext()) {
+                SessionIndex s = it.next();
+                s.refs.removeIf(r -> r.segment() == segment);
+                if (s.refs.isEmpty()) it.remove();
+            }
+        }
+    }
+
+    // -------------------- Export --------------------
+
+    /** Where the session's lines are, oldest first; null if the journal has none. */
+    List<Ref> lines(String session) {
+        synchronized (index) {
+            SessionIndex s = index.get(session);
+            return s == null ? null : List.copyOf(s.refs);
+        }
+    }
+
+    /**
+     * Copies the lines to out as they are (JSON lines). Adjacent lines are read in one go; lines in a
+     * segment deleted meanwhile are skipped. Returns the bytes copied.
+     */
+    long copy(List<Ref> refs, OutputStream out) throws IOException {
+        long total = 0;
+        ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+        int i = 0;
+        while (i < refs.size()) {
+            long segment = refs.get(i).segment();
+            int end = i;
+            while (end < refs.size() && refs.get(end).segment() == segment) end++;
+            try (FileChannel ch = FileChannel.open(file(segment), StandardOpenOption.READ)) {
+                int j = i;
+                while (j < end) {
+                    long from = refs.get(j).offset();
+                    long to = from + refs.get(j).length();
+                    while (j + 1 < end && refs.get(j + 1).offset() == to) {
+                        j++;
+                        to += refs.get(j).length();
+                    }
+                    total += copyRange(ch, from, to, buf, out);
+                    j++;
+                }
+            } catch (NoSuchFileException gone) {
+                // rolled away while exporting
+            }
+            i = end;
+        }
+        return total;
+    }
+
+    private static long copyRange(FileChannel ch, long from, long to, ByteBuffer buf, OutputStream out) throws IOException {
+        long pos = from;
+        while (pos < to) {
+            buf.clear();
+            buf.limit((int) Math.min(buf.capacity(), to - pos));
+            int n = ch.read(buf, pos);
+            if (n < 0) break;
+            out.write(buf.array(), 0, n);
+            pos += n;
+        }
+        return pos - from;
+    }
+
+    /** Sessions in the journal, most recent first: id, lines, first and last completion time. */
+    ArrayNode sessionsJson(ObjectMapper mapper) {
+        record Summary(String session, int lines, long firstTs, long lastTs) {
+        }
+        List<Summary> all = new ArrayList<>();
+        synchronized (index) {
+            index.forEach((id, s) -> all.add(new Summary(id, s.refs.size(), s.firstTs, s.lastTs)));
+        }
+        all.sort(Comparator.comparingLong(Summary::lastTs).reversed());
+        ArrayNode arr = mapper.createArrayNode();
+        for (Summary s : all) {
+            arr.addObject()
+                    .put("session", s.session())
+                    .put("lines", s.lines())
+                    .put("firstTs", s.firstTs())
+                    .put("lastTs", s.lastTs());
+        }
+        return arr;
+    }
+
+    ObjectNode statsJson(ObjectMapper mapper) {
+        int sessions;
+        synchronized (index) {
+            sessions = index.size();
+        }
+        long s = syncs.get();
+        return mapper.createObjectNode()
+                .put("enabled", isEnabled())
+                .put("indexed", indexed)
+                .put("queued", queued.get())
+                .put("appended", appended.get())
+                .put("dropped", dropped.get())
+                .put("written", written.get())
+                .put("writtenBytes", writtenBytes.get())
+                .put("syncs", s)
+                .put("avgSyncMs", s == 0 ? 0.0 : syncNanos.get() / 1_000_000.0 / s)
+                .put("segments", segmentCount)
+                .put("storedBytes", storedBytes.get())
+                .put("deletedSegments", deletedSegments.get())
+                .put("sessions", sessions)
+                .put("writeErrors", writeErrors.get());
+    }
+}
@@ -0,0 +1,176 @@
+package local.meettranslator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shares one Whisper call between clients that upload the same audio.
+ *
+ * Several listeners of one call each run the extension, so the same chunk can arrive several times,
+ * each asking for a different target language. Chunks are keyed by SHA-256 of (audioMime, audio bytes):
+ *  - a chunk whose twin is being transcribed right now waits for that call ("joined");
+ *  - a chunk whose twin was transcribed less than ttlMs ago gets the stored transcript ("hits").
+ * Only the first one takes an upstream slot, so Whisper cost does not grow with the number of listeners.
+ *
+ * If the shared call fails (or is dropped as stale), everyone waiting on it gets the same exception.
+ * Blank transcripts are kept as well: silence is silence for every listener.
+ */
+final class TranscriptionDeduper {
+
+    interface Loader {
+        String load() throws IOException;
+    }
+
+    private record Entry(String transcript, long createdAtMillis) {
+    }
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final long ttlMillis;
+    private final int maxEntries;
+
+    // Insertion-ordered: the oldest entry is also the first to expire. Guarded by "this".
+    private final LinkedHashMap<String, Entry> recent = new LinkedHashMap<>();
+    private final ConcurrentHashMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong joined = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param ttlMillis  how long a finished transcript is reused; 0 turns deduplication off
+     * @param maxEntries finished transcripts kept at most
+     */
+    TranscriptionDeduper(long ttlMillis, int maxEntries) {
+        this.ttlMillis = Math.max(0, ttlMillis);
+        this.maxEntries = Math.max(1, maxEntries);
+    }
+
+    boolean isEnabled() {
+        return ttlMillis > 0;
+    }
+
+    /** Transcript of audio[off, off + len): shared with an identical chunk if there is one, else loaded. */
+    String transcribe(byte[] audio, int off, int len, String audioMime, Loader loader) throws IOException {
+        if (!isEnabled()) return loader.load();
+
+        String key = key(audio, off, len, audioMime);
+        String cached = lookup(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+
+        CompletableFuture<String> mine = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            joined.incrementAndGet();
+            return await(existing);
+        }
+
+        try {
+            // The previous twin may have finished between the lookup and putIfAbsent.
+            String late = lookup(key);
+            if (late != null) {
+                hits.incrementAndGet();
+                mine.complete(late);
+                return late;
+            }
+            misses.incrementAndGet();
+            String transcript = loader.load();
+            if (transcript == null) transcript = "";
+            store(key, transcript);
+            mine.complete(transcript);
+            return transcript;
+        } catch (IOException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private synchronized String lookup(String key) {
+        expire(System.currentTimeMillis());
+        Entry e = recent.get(key);
+        return e == null ? null : e.transcript();
+    }
+
+    private synchronized void store(String key, String transcript) {
+        long now = System.currentTimeMillis();
+        expire(now);
+        recent.remove(key);
+        recent.put(key, new Entry(transcript, now));
+        while (recent.size() > maxEntries) {
+            recent.remove(recent.keySet().iterator().next());
+        }
+    }
+
+    private void expire(long now) {
+        var it = recent.values().iterator();
+        while (it.hasNext() && now - it.next().createdAtMillis() > ttlMillis) {
+            it.remove();
+        }
+    }
+
+    private static String await(CompletableFuture<String> f) throws IOException {
+        try {
+            return f.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a shared transcription", ie);
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof IOException io) throw io;
+            if (cause instanceof RuntimeException re) throw re;
+            throw new IOException(cause);
+        }
+    }
+
+    static String key(byte[] audio, int off, int len, String audioMime) {
+        MessageDigest sha;
+        try {
+            sha = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] mime = (audioMime == null ? "" : audioMime.trim().toLowerCase(Locale.ROOT)).getBytes(StandardCharsets.UTF_8);
+        sha.update(ByteBuffer.allocate(4).putInt(0, mime.length));
+        sha.update(mime);
+        sha.update(audio, off, len);
+        return HEX.formatHex(sha.digest());
+    }
+
+    // -------------------- Stats --------------------
+
+    ObjectNode statsJson(ObjectMapper mapper) {
+        int size;
+        synchronized (this) {
+            size = recent.size();
+        }
+        long h = hits.get();
+        long j = joined.get();
+        long m = misses.get();
+        return mapper.createObjectNode()
+                .put("enabled", isEnabled())
+                .put("ttlMs", ttlMillis)
+                .put("entries", size)
+                .put("hits", h)
+                .put("joined", j)
+                .put("misses", m)
+                .put("sharedRatio", (h + j + m) == 0 ? 0.0 : (double) (h + j) / (h + j + m));
+    }
+}
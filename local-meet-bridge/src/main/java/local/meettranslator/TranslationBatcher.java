@@ -0,0 +1,228 @@
+package local.meettranslator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * Coalesces translation requests that arrive close together.
+ *
+ * Requests for the same (sourceLang, targetLang) within windowMs of the first one are sent
+ * as one structured /v1/responses call (a JSON array in, a JSON array out) and the results
+ * are handed back to each waiting caller. A batch is flushed early once it has maxBatch items.
+ * If the model's answer cannot be split back into items, every item falls back to a single call.
+ *
+ * windowMs == 0 turns batching off: every call goes straight to translateText.
+ *
+ * Texts the translation memory knows as a whole are answered right away, without a slot or a batch.
+ *
+ * A caller may pass an upstream timer: it gets the time spent waiting for a slot and in the upstream
+ * call (for a batch, the batch's call), not the batching window; nothing for memory answers.
+ *
+ * Each call carries its scheduler ticket. A batch waits for its slot with the merged ticket of its
+ * items (most urgent lane, latest deadline), so it is dropped as stale only if all of them are.
+ */
+final class TranslationBatcher {
+
+    private final SpeechBackend client;
+    private final TranslationMemory memory;
+    private final Main.EndpointLimiter limiter;
+    private final long windowMs;
+    private final int maxBatch;
+
+    private final Object lock = new Object();
+    private final Map<String, Batch> open = new HashMap<>(); // guarded by lock
+
+    private final ScheduledExecutorService timer;
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong batchedItems = new AtomicLong();
+    private final AtomicLong singles = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    private static final class Batch {
+        final String sourceLang;
+        final String targetLang;
+        final List<String> texts = new ArrayList<>();
+        final List<DeadlineScheduler.Ticket> tickets = new ArrayList<>();
+        final List<LongConsumer> timers = new ArrayList<>();
+        final List<CompletableFuture<String>> results = new ArrayList<>();
+
+        Batch(String sourceLang, String targetLang) {
+            this.sourceLang = sourceLang;
+            this.targetLang = targetLang;
+        }
+    }
+
+    TranslationBatcher(SpeechBackend client, TranslationMemory memory, Main.EndpointLimiter limiter, long windowMs, int maxBatch) {
+        this.client = client;
+        this.memory = memory;
+        this.limiter = limiter;
+        this.windowMs = Math.max(0, windowMs);
+        this.maxBatch = Math.max(1, maxBatch);
+        this.timer = isEnabled() ? Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "translate-batcher");
+            t.setDaemon(true);
+            return t;
+        }) : null;
+    }
+
+    boolean isEnabled() {
+        return windowMs > 0 && maxBatch > 1;
+    }
+
+    /**
+     * Translates text, possibly together with other requests. Blocks until the result is known.
+     *
+     * @param ticket the request's place in the upstream queue; null = no deadline, lowest priority
+     * @throws DeadlineScheduler.StaleException if the request (or its whole batch) was dropped as stale
+     */
+    String translate(String sourceLang, String targetLang, String text, DeadlineScheduler.Ticket ticket) throws IOException {
+        return translate(sourceLang, targetLang, text, ticket, null);
+    }
+
+    /** As translate(), reporting upstream time (nanos) to upstreamTimer if it is not null. */
+    String translate(String sourceLang, String targetLang, String text, DeadlineScheduler.Ticket ticket,
+                     LongConsumer upstreamTimer) throws IOException {
+        String remembered = memory.lookup(sourceLang, targetLang, text);
+        if (remembered != null) return remembered;
+        if (!isEnabled()) {
+            return single(sourceLang, targetLang, text, ticket, upstreamTimer);
+        }
+
+        String key = TranslationCache.key(sourceLang, targetLang, "");
+        CompletableFuture<String> result = new CompletableFuture<>();
+        Batch full = null;
+        synchronized (lock) {
+            Batch b = open.get(key);
+            if (b == null) {
+                Batch created = new Batch(sourceLang, targetLang);
+                open.put(key, created);
+                timer.schedule(() -> flushIfOpen(key, created), windowMs, TimeUnit.MILLISECONDS);
+                b = created;
+            }
+            b.texts.add(text);
+            b.tickets.add(ticket);
+            b.timers.add(upstreamTimer);
+            b.results.add(result);
+            if (b.texts.size() >= maxBatch) {
+                open.remove(key);
+                full = b;
+            }
+        }
+        if (full != null) {
+            Batch ready = full;
+            workers.execute(() -> run(ready));
+        }
+        return await(result);
+    }
+
+    private void flushIfOpen(String key, Batch b) {
+        synchronized (lock) {
+            // Already flushed because it filled up.
+            if (!open.remove(key, b)) return;
+        }
+        workers.execute(() -> run(b));
+    }
+
+    @SuppressWarnings("try") // the permit is only held, not referenced
+    private void run(Batch b) {
+        if (b.texts.size() == 1) {
+            complete(b.results.get(0), b.sourceLang, b.targetLang, b.texts.get(0), b.tickets.get(0), b.timers.get(0));
+            return;
+        }
+
+        List<String> translations;
+        long started = System.nanoTime();
+        try (Main.EndpointLimiter.Permit ignored = limiter.acquire(DeadlineScheduler.Ticket.merge(b.tickets))) {
+            translations = client.translateBatch(b.sourceLang, b.targetLang, b.texts);
+        } catch (SpeechBackend.BatchFormatException e) {
+            // The model did not return a usable array: answer each item on its own.
+            fallbacks.incrementAndGet();
+            for (int i = 0; i < b.texts.size(); i++) {
+                CompletableFuture<String> r = b.results.get(i);
+                String text = b.texts.get(i);
+                DeadlineScheduler.Ticket ticket = b.tickets.get(i);
+                LongConsumer timer = b.timers.get(i);
+                workers.execute(() -> complete(r, b.sourceLang, b.targetLang, text, ticket, timer));
+            }
+            return;
+        } catch (IOException | RuntimeException e) {
+            for (CompletableFuture<String> r : b.results) r.completeExceptionally(e);
+            return;
+        }
+
+        long upstreamNanos = System.nanoTime() - started;
+        batches.incrementAndGet();
+        batchedItems.addAndGet(b.texts.size());
+        for (LongConsumer timer : b.timers) {
+            if (timer != null) timer.accept(upstreamNanos);
+        }
+        for (int i = 0; i < b.results.size(); i++) {
+            b.results.get(i).complete(translations.get(i));
+        }
+    }
+
+    private void complete(CompletableFuture<String> r, String sourceLang, String targetLang, String text,
+                          DeadlineScheduler.Ticket ticket, LongConsumer timer) {
+        try {
+            r.complete(single(sourceLang, targetLang, text, ticket, timer));
+        } catch (IOException | RuntimeException e) {
+            r.completeExceptionally(e);
+        }
+    }
+
+    @SuppressWarnings("try") // the permit is only held, not referenced
+    private String single(String sourceLang, String targetLang, String text, DeadlineScheduler.Ticket ticket,
+                          LongConsumer timer) throws IOException {
+        singles.incrementAndGet();
+        long started = System.nanoTime();
+        String translation;
+        try (Main.EndpointLimiter.Permit ignored = limiter.acquire(ticket)) {
+            translation = client.translateText(sourceLang, targetLang, text);
+        }
+        if (timer != null) timer.accept(System.nanoTime() - started);
+        return translation;
+    }
+
+    private static String await(CompletableFuture<String> f) throws IOException {
+        try {
+            return f.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a batched translation", ie);
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof IOException io) throw io;
+            if (cause instanceof RuntimeException re) throw re;
+            throw new IOException(cause);
+        }
+    }
+
+    ObjectNode statsJson(ObjectMapper mapper) {
+        long b = batches.get();
+        return mapper.createObjectNode()
+                .put("enabled", isEnabled())
+                .put("windowMs", windowMs)
+                .put("maxBatch", maxBatch)
+                .put("batches", b)
+                .put("batchedItems", batchedItems.get())
+                .put("avgBatchSize", b == 0 ? 0.0 : (double) batchedItems.get() / b)
+                .put("singleCalls", singles.get())
+                .put("fallbacks", fallbacks.get());
+    }
+}
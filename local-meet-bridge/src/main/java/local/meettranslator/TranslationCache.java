@@ -0,0 +1,266 @@
+package local.meettranslator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded in-process cache of translations.
+ *
+ * Key: (sourceLang, targetLang, normalized text). Normalization folds case, Unicode forms and
+ * whitespace so "Can you hear me?" and "can you  hear me?" share one entry.
+ *
+ * Eviction: LRU by entry count, plus a TTL checked on read.
+ * Concurrent misses for the same key share one upstream call.
+ * Optional snapshot file (JSON) is loaded at startup and rewritten periodically and on shutdown,
+ * so a restarted bridge starts warm.
+ */
+final class TranslationCache {
+
+    interface Loader {
+        String load() throws IOException;
+    }
+
+    private record Entry(String translation, long createdAtMillis) {
+    }
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final Path snapshotFile;
+
+    // Access-ordered LinkedHashMap = LRU. Guarded by "this".
+    private final LinkedHashMap<String, Entry> entries;
+    private final ConcurrentHashMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    TranslationCache(int maxEntries, long ttlMillis, Path snapshotFile) {
+        this.maxEntries = Math.max(0, maxEntries);
+        this.ttlMillis = ttlMillis;
+        this.snapshotFile = snapshotFile;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > TranslationCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    boolean isEnabled() {
+        return maxEntries > 0;
+    }
+
+    /**
+     * Returns the cached translation or runs the loader (once per key, even under concurrency)
+     * and caches a non-blank result.
+     */
+    String getOrLoad(String sourceLang, String targetLang, String text, Loader loader) throws IOException {
+        if (!isEnabled()) {
+            return loader.load();
+        }
+
+        String key = key(sourceLang, targetLang, text);
+        String cached = lookup(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        CompletableFuture<String> mine = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            return await(existing);
+        }
+
+        try {
+            String translation = loader.load();
+            store(key, translation);
+            mine.complete(translation);
+            return translation;
+        } catch (IOException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    String get(String sourceLang, String targetLang, String text) {
+        if (!isEnabled()) return null;
+        return lookup(key(sourceLang, targetLang, text));
+    }
+
+    void put(String sourceLang, String targetLang, String text, String translation) {
+        if (!isEnabled()) return;
+        store(key(sourceLang, targetLang, text), translation);
+    }
+
+    /** Drops every entry, e.g. after the translation memory changed what a translation should be. */
+    void clear() {
+        synchronized (this) {
+            entries.clear();
+        }
+    }
+
+    private String lookup(String key) {
+        synchronized (this) {
+            Entry e = entries.get(key);
+            if (e != null) {
+                if (isExpired(e, System.currentTimeMillis())) {
+                    entries.remove(key);
+                    expirations.incrementAndGet();
+                } else {
+                    hits.incrementAndGet();
+                    return e.translation();
+                }
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    private void store(String key, String translation) {
+        if (translation == null || translation.isBlank()) return;
+        synchronized (this) {
+            entries.put(key, new Entry(translation, System.currentTimeMillis()));
+        }
+    }
+
+    private boolean isExpired(Entry e, long now) {
+        return ttlMillis > 0 && now - e.createdAtMillis() > ttlMillis;
+    }
+
+    private static String await(CompletableFuture<String> f) throws IOException {
+        try {
+            return f.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a shared translation", ie);
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof IOException io) throw io;
+            if (cause instanceof RuntimeException re) throw re;
+            throw new IOException(cause);
+        }
+    }
+
+    static String key(String sourceLang, String targetLang, String text) {
+        String src = (sourceLang == null || sourceLang.isBlank()) ? "auto" : sourceLang.trim().toLowerCase(Locale.ROOT);
+        String tgt = (targetLang == null || targetLang.isBlank()) ? "ru" : targetLang.trim().toLowerCase(Locale.ROOT);
+        return src + "\u0000" + tgt + "\u0000" + normalizeText(text);
+    }
+
+    static String normalizeText(String text) {
+        if (text == null) return "";
+        String n = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        StringBuilder sb = new StringBuilder(n.length());
+        boolean space = false;
+        for (int i = 0; i < n.length(); i++) {
+            char c = n.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = sb.length() > 0;
+            } else {
+                if (space) sb.append(' ');
+                space = false;
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    // -------------------- Stats --------------------
+
+    ObjectNode statsJson(ObjectMapper mapper) {
+        long h = hits.get();
+        long m = misses.get();
+        int size;
+        synchronized (this) {
+            size = entries.size();
+        }
+        return mapper.createObjectNode()
+                .put("enabled", isEnabled())
+                .put("size", size)
+                .put("maxEntries", maxEntries)
+                .put("hits", h)
+                .put("misses", m)
+                .put("hitRatio", (h + m) == 0 ? 0.0 : (double) h / (h + m))
+                .put("evictions", evictions.get())
+                .put("expirations", expirations.get());
+    }
+
+    // -------------------- Snapshot --------------------
+
+    /** Loads entries from the snapshot file (if configured and present). Returns the number loaded. */
+    int loadSnapshot(ObjectMapper mapper) throws IOException {
+        if (!isEnabled() || snapshotFile == null || !Files.isRegularFile(snapshotFile)) return 0;
+
+        JsonNode root = mapper.readTree(snapshotFile.toFile());
+        JsonNode list = root.path("entries");
+        if (!list.isArray()) return 0;
+
+        long now = System.currentTimeMillis();
+        int loaded = 0;
+        synchronized (this) {
+            // Stored oldest-first, so re-inserting keeps the LRU order.
+            for (JsonNode n : list) {
+                String k = n.path("key").asText("");
+                String v = n.path("translation").asText("");
+                long at = n.path("createdAt").asLong(now);
+                Entry e = new Entry(v, at);
+                if (k.isEmpty() || v.isBlank() || isExpired(e, now)) continue;
+                entries.put(k, e);
+                loaded++;
+            }
+        }
+        return loaded;
+    }
+
+    /** Writes all live entries to the snapshot file atomically (temp file + move). */
+    void saveSnapshot(ObjectMapper mapper) throws IOException {
+        if (!isEnabled() || snapshotFile == null) return;
+
+        List<Map.Entry<String, Entry>> copy;
+        synchronized (this) {
+            copy = new ArrayList<>(entries.entrySet());
+        }
+
+        ObjectNode root = mapper.createObjectNode().put("version", 1);
+        ArrayNode list = root.putArray("entries");
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Entry> e : copy) {
+            if (isExpired(e.getValue(), now)) continue;
+            list.addObject()
+                    .put("key", e.getKey())
+                    .put("translation", e.getValue().translation())
+                    .put("createdAt", e.getValue().createdAtMillis());
+        }
+
+        Path dir = snapshotFile.toAbsolutePath().getParent();
+        if (dir != null) Files.createDirectories(dir);
+        Path tmp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        mapper.writeValue(tmp.toFile(), root);
+        Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,374 @@
+package local.meettranslator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local translation memory: fixed translations of product names, jargon and standard phrases.
+ *
+ * One file per language pair in a directory, named {@code <source>-<target>.tsv} (e.g. en-ru.tsv),
+ * one {@code source<TAB>target} entry per line; blank lines and lines starting with # are ignored.
+ * Every entry is used twice:
+ *  - a text that is exactly an entry (as is, or after normalization: NFKC, case, whitespace and
+ *    surrounding punctuation) is answered from the memory, with no upstream call
+ *  - inside longer texts, entries are found in one pass by an Aho-Corasick automaton (whole words
+ *    only, leftmost-longest) and passed to the model as fixed translations
+ * A request with sourceLang "auto", or a pair without its own file, uses all files of the target language.
+ *
+ * The directory is polled for changes and reloaded as a whole; a file that fails to parse keeps the
+ * previous memory in place.
+ */
+final class TranslationMemory {
+
+    /** Most glossary terms put into one prompt. */
+    static final int MAX_PROMPT_TERMS = 32;
+
+    record Term(String source, String target) {
+    }
+
+    private static final String ANY_SOURCE = "*";
+
+    private final Path dir;
+    private volatile Map<String, Table> tables = Map.of(); // "source\0target" and "*\0target"
+    private volatile Map<Path, Long> loadedStamps = Map.of();
+    private Map<Path, Long> failedStamps = Map.of(); // only touched by the reload thread (and the constructor)
+    private volatile Runnable onReload = () -> { };
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong exactHits = new AtomicLong();
+    private final AtomicLong normalizedHits = new AtomicLong();
+    private final AtomicLong glossaryPrompts = new AtomicLong();
+    private final AtomicLong glossaryTerms = new AtomicLong();
+    private final AtomicLong reloads = new AtomicLong();
+    private final AtomicLong reloadErrors = new AtomicLong();
+
+    /** dir == null turns the memory off. reloadSeconds <= 0 loads once. */
+    TranslationMemory(Path dir, long reloadSeconds) {
+        this.dir = dir;
+        if (dir == null) return;
+        reloadIfChanged();
+        if (reloadSeconds > 0) {
+            ScheduledExecutorService watcher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "translation-memory-reload");
+                t.setDaemon(true);
+                return t;
+            });
+            watcher.scheduleWithFixedDelay(this::reloadIfChanged, reloadSeconds, reloadSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    boolean isEnabled() {
+        return dir != null;
+    }
+
+    /** Called after every successful reload (e.g. to drop translations made with the old glossary). */
+    void onReload(Runnable r) {
+        this.onReload = r;
+    }
+
+    // -------------------- Lookups --------------------
+
+    /** The remembered translation of the whole text, or null. */
+    String lookup(String sourceLang, String targetLang, String text) {
+        Table t = table(sourceLang, targetLang);
+        if (t == null || text == null || text.isBlank()) return null;
+        lookups.incrementAndGet();
+        String hit = t.exact.get(text.trim());
+        if (hit != null) {
+            exactHits.incrementAndGet();
+            return hit;
+        }
+        hit = t.normalized.get(normalize(text));
+        if (hit != null) normalizedHits.incrementAndGet();
+        return hit;
+    }
+
+    /** Entries that occur in the text as whole words, in order of appearance; at most MAX_PROMPT_TERMS. */
+    List<Term> glossary(String sourceLang, String targetLang, String text) {
+        Table t = table(sourceLang, targetLang);
+        if (t == null || t.automaton == null || text == null || text.isBlank()) return List.of();
+        List<Term> found = t.automaton.match(TranslationCache.normalizeText(text), MAX_PROMPT_TERMS);
+        if (!found.isEmpty()) {
+            glossaryPrompts.incrementAndGet();
+            glossaryTerms.addAndGet(found.size());
+        }
+        return found;
+    }
+
+    /** Union of the glossaries of several texts (a batch), first occurrence first. */
+    List<Term> glossary(String sourceLang, String targetLang, List<String> texts) {
+        LinkedHashMap<String, Term> all = new LinkedHashMap<>();
+        for (String text : texts) {
+            for (Term term : glossary(sourceLang, targetLang, text)) {
+                if (all.size() >= MAX_PROMPT_TERMS) break;
+                all.putIfAbsent(term.source(), term);
+            }
+        }
+        return List.copyOf(all.values());
+    }
+
+    private Table table(String sourceLang, String targetLang) {
+        if (dir == null) return null;
+        Map<String, Table> current = tables;
+        String src = lang(sourceLang, "auto");
+        String tgt = lang(targetLang, "ru");
+        Table t = src.equals("auto") ? null : current.get(src + "\u0000" + tgt);
+        return t != null ? t : current.get(ANY_SOURCE + "\u0000" + tgt);
+    }
+
+    private static String lang(String l, String def) {
+        return (l == null || l.isBlank()) ? def : l.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /** Whole-segment form: TranslationCache normalization without leading/trailing punctuation. */
+    static String normalize(String text) {
+        String n = TranslationCache.normalizeText(text);
+        int from = 0;
+        int to = n.length();
+        while (from < to && isTrim(n.charAt(from))) from++;
+        while (to > from && isTrim(n.charAt(to - 1))) to--;
+        return n.substring(from, to);
+    }
+
+    private static boolean isTrim(char c) {
+        return Character.isWhitespace(c) || isPunctuation(c);
+    }
+
+    private static boolean isPunctuation(char c) {
+        return switch (Character.getType(c)) {
+            case Character.CONNECTOR_PUNCTUATION, Character.DASH_PUNCTUATION, Character.START_PUNCTUATION,
+                 Character.END_PUNCTUATION, Character.INITIAL_QUOTE_PUNCTUATION, Character.FINAL_QUOTE_PUNCTUATION,
+                 Character.OTHER_PUNCTUATION -> true;
+            default -> false;
+        };
+    }
+
+    // -------------------- Loading --------------------
+
+    private void reloadIfChanged() {
+        Map<Path, Long> stamps = new TreeMap<>();
+        try {
+            if (Files.isDirectory(dir)) {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*-*.tsv")) {
+                    for (Path f : files) stamps.put(f, Files.getLastModifiedTime(f).toMillis());
+                }
+            }
+            // Unchanged since the last load, or since a load that failed (reported once).
+            if (stamps.equals(loadedStamps) || stamps.equals(failedStamps)) return;
+
+            Map<String, Map<String, String>> pairs = new HashMap<>();
+            for (Path f : stamps.keySet()) {
+                String name = f.getFileName().toString();
+                String pair = name.substring(0, name.length() - ".tsv".length()).toLowerCase(Locale.ROOT);
+                int dash = pair.indexOf('-');
+                String src = pair.substring(0, dash);
+                String tgt = pair.substring(dash + 1);
+                Map<String, String> entries = read(f);
+                pairs.put(src + "\u0000" + tgt, entries);
+                pairs.computeIfAbsent(ANY_SOURCE + "\u0000" + tgt, k -> new LinkedHashMap<>()).putAll(entries);
+            }
+            Map<String, Table> built = new HashMap<>();
+            int total = 0;
+            for (Map.Entry<String, Map<String, String>> e : pairs.entrySet()) {
+                built.put(e.getKey(), new Table(e.getValue()));
+                if (!e.getKey().startsWith(ANY_SOURCE)) total += e.getValue().size();
+            }
+            tables = Map.copyOf(built);
+            loadedStamps = Map.copyOf(stamps);
+            reloads.incrementAndGet();
+            System.out.println("Translation memory: " + total + " entries in " + stamps.size() + " files from " + dir);
+            onReload.run();
+        } catch (IOException | RuntimeException e) {
+            failedStamps = stamps;
+            reloadErrors.incrementAndGet();
+            System.err.println("Translation memory reload failed (keeping the previous one): " + e);
+        }
+    }
+
+    private static Map<String, String> read(Path f) throws IOException {
+        Map<String, String> entries = new LinkedHashMap<>();
+        int lineNo = 0;
+        for (String line : Files.readAllLines(f, StandardCharsets.UTF_8)) {
+            lineNo++;
+            if (lineNo == 1 && line.startsWith("\uFEFF")) line = line.substring(1);
+            if (line.isBlank() || line.startsWith("#")) continue;
+            int tab = line.indexOf('\t');
+            if (tab <= 0 || line.substring(tab + 1).isBlank()) {
+                throw new IOException(f.getFileName() + ":" + lineNo + ": expected source<TAB>target");
+            }
+            entries.put(line.substring(0, tab).trim(), line.substring(tab + 1).trim());
+        }
+        return entries;
+    }
+
+    /** Lookup structures of one language pair. */
+    private static final class Table {
+        final Map<String, String> exact = new HashMap<>();
+        final Map<String, String> normalized = new HashMap<>();
+        final Automaton automaton;
+
+        Table(Map<String, String> entries) {
+            List<Term> terms = new ArrayList<>(entries.size());
+            for (Map.Entry<String, String> e : entries.entrySet()) {
+                exact.put(e.getKey(), e.getValue());
+                normalized.put(normalize(e.getKey()), e.getValue());
+                terms.add(new Term(e.getKey(), e.getValue()));
+            }
+            automaton = terms.isEmpty() ? null : new Automaton(terms);
+        }
+    }
+
+    // -------------------- Aho-Corasick --------------------
+
+    /**
+     * Multi-pattern matcher over normalized text: one pass finds every term occurrence, whatever the
+     * number of terms. Transitions live in one hash map keyed by (state, char).
+     */
+    static final class Automaton {
+        private final List<Term> terms;
+        private final int[] termLength;       // normalized length of each term
+        private final Map<Long, Integer> next = new HashMap<>();
+        private int[] fail;
+        private int[] output;                 // longest term ending in this state, -1 if none
+        private int[] outputLink;             // next state on the fail chain that has an output, -1 if none
+
+        Automaton(List<Term> terms) {
+            this.terms = terms;
+            this.termLength = new int[terms.size()];
+            List<Integer> outputs = new ArrayList<>();
+            outputs.add(-1);
+            int states = 1;
+            for (int i = 0; i < terms.size(); i++) {
+                String key = TranslationCache.normalizeText(terms.get(i).source());
+                termLength[i] = key.length();
+                if (key.isEmpty()) continue;
+                int s = 0;
+                for (int k = 0; k < key.length(); k++) {
+                    long edge = edge(s, key.charAt(k));
+                    Integer to = next.get(edge);
+                    if (to == null) {
+                        to = states++;
+                        next.put(edge, to);
+                        outputs.add(-1);
+                    }
+                    s = to;
+                }
+                if (outputs.get(s) < 0) outputs.set(s, i); // first entry of a duplicate wins
+            }
+            output = outputs.stream().mapToInt(Integer::intValue).toArray();
+            buildLinks(states);
+        }
+
+        private static long edge(int state, char c) {
+            return ((long) state << 16) | c;
+        }
+
+        private void buildLinks(int states) {
+            fail = new int[states];
+            outputLink = new int[states];
+            Arrays.fill(outputLink, -1);
+            // Children of each state, for the breadth-first walk.
+            Map<Integer, List<long[]>> children = new HashMap<>();
+            for (Map.Entry<Long, Integer> e : next.entrySet()) {
+                int from = (int) (e.getKey() >>> 16);
+                children.computeIfAbsent(from, k -> new ArrayList<>()).add(new long[]{e.getKey() & 0xFFFF, e.getValue()});
+            }
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            for (long[] c : children.getOrDefault(0, List.of())) {
+                fail[(int) c[1]] = 0;
+                queue.add((int) c[1]);
+            }
+            while (!queue.isEmpty()) {
+                int s = queue.poll();
+                for (long[] c : children.getOrDefault(s, List.of())) {
+                    char ch = (char) c[0];
+                    int child = (int) c[1];
+                    int f = fail[s];
+                    while (f != 0 && !next.containsKey(edge(f, ch))) f = fail[f];
+                    Integer to = next.get(edge(f, ch));
+                    fail[child] = (to != null && to != child) ? to : 0;
+                    outputLink[child] = output[fail[child]] >= 0 ? fail[child] : outputLink[fail[child]];
+                    queue.add(child);
+                }
+            }
+        }
+
+        /**
+         * Terms found in text (already normalized), whole words only. Overlaps are resolved leftmost
+         * first, longest first; a term is reported once.
+         */
+        List<Term> match(String text, int limit) {
+            // Best (longest) whole-word match starting at each position.
+            int[] bestAt = new int[text.length()];
+            Arrays.fill(bestAt, -1);
+            int s = 0;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                Integer to;
+                while ((to = next.get(edge(s, c))) == null && s != 0) s = fail[s];
+                s = to == null ? 0 : to;
+                for (int o = output[s] >= 0 ? s : outputLink[s]; o >= 0; o = outputLink[o]) {
+                    int term = output[o];
+                    int start = i - termLength[term] + 1;
+                    if (!isBoundary(text, start - 1) || !isBoundary(text, i + 1)) continue;
+                    if (bestAt[start] < 0 || termLength[term] > termLength[bestAt[start]]) bestAt[start] = term;
+                }
+            }
+            LinkedHashMap<String, Term> found = new LinkedHashMap<>();
+            for (int i = 0; i < text.length() && found.size() < limit; i++) {
+                int term = bestAt[i];
+                if (term < 0) continue;
+                found.putIfAbsent(terms.get(term).source(), terms.get(term));
+                i += termLength[term] - 1;
+            }
+            return List.copyOf(found.values());
+        }
+
+        private static boolean isBoundary(String text, int i) {
+            if (i < 0 || i >= text.length()) return true;
+            return !Character.isLetterOrDigit(text.charAt(i));
+        }
+    }
+
+    // -------------------- Stats --------------------
+
+    ObjectNode statsJson(ObjectMapper mapper) {
+        long n = lookups.get();
+        long hits = exactHits.get() + normalizedHits.get();
+        int entries = 0;
+        for (Map.Entry<String, Table> e : tables.entrySet()) {
+            if (!e.getKey().startsWith(ANY_SOURCE)) entries += e.getValue().exact.size();
+        }
+        return mapper.createObjectNode()
+                .put("enabled", isEnabled())
+                .put("files", loadedStamps.size())
+                .put("entries", entries)
+                .put("lookups", n)
+                .put("exactHits", exactHits.get())
+                .put("normalizedHits", normalizedHits.get())
+                .put("hitRatio", n == 0 ? 0.0 : (double) hits / n)
+                .put("glossaryPrompts", glossaryPrompts.get())
+                .put("glossaryTerms", glossaryTerms.get())
+                .put("reloads", reloads.get())
+                .put("reloadErrors", reloadErrors.get());
+    }
+}
@@ -0,0 +1,394 @@
+package local.meettranslator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Content-addressed cache of synthesized speech.
+ *
+ * Key: SHA-256 of the resolved TTS parameters (text, voice, model, format, speed, instructions), so
+ * every request that would make the same /v1/audio/speech call shares one entry.
+ *
+ * Two tiers:
+ *  - heap: LRU of byte arrays, bounded by total bytes. Holds what was synthesized recently.
+ *  - disk (optional): a ring of fixed-size segment files, memory-mapped. Clips are appended to the
+ *    active segment; when it is full the oldest segment is reused and its clips are dropped, so the
+ *    disk footprint never exceeds the configured size. Segments are rescanned at startup (records
+ *    carry a CRC), so a restarted bridge starts warm.
+ *
+ * Hits are read-only ByteBuffers over the heap array or over the mapping itself; nothing is copied.
+ * A disk hit pins its segment until the Hit is closed, so a clip is never overwritten while it is
+ * being sent. A write that would reuse a pinned segment is skipped rather than waiting: puts run on
+ * request threads and under appendLock, so waiting on a slow client would stall every TTS request.
+ */
+final class TtsCache {
+
+    // Segment header: magic, version, segment size, reserved, generation (0 = never used).
+    private static final int SEGMENT_MAGIC = 0x4C4D5453; // "LMTS"
+    private static final int VERSION = 1;
+    private static final int SEGMENT_HEADER_BYTES = 24;
+
+    // Record: magic, SHA-256 key, CRC32 of the audio, audio length, audio.
+    private static final int RECORD_MAGIC = 0x434C4950; // "CLIP"
+    private static final int KEY_BYTES = 32;
+    private static final int RECORD_HEADER_BYTES = 4 + KEY_BYTES + 4 + 4;
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    /** A cached clip. Close it when the audio has been sent (releases the disk segment). */
+    static final class Hit implements AutoCloseable {
+        private final ByteBuffer audio;
+        private final Lock pin;
+
+        private Hit(ByteBuffer audio, Lock pin) {
+            this.audio = audio;
+            this.pin = pin;
+        }
+
+        /** Read-only view of the clip; position 0, limit = length. */
+        ByteBuffer audio() {
+            return audio;
+        }
+
+        boolean fromDisk() {
+            return pin != null;
+        }
+
+        @Override
+        public void close() {
+            if (pin != null) pin.unlock();
+        }
+    }
+
+    private static final class Segment {
+        final int slot;
+        final MappedByteBuffer map;
+        final ReentrantReadWriteLock pins = new ReentrantReadWriteLock();
+        final List<String> keys = new ArrayList<>(); // guarded by appendLock
+        long generation;
+        int writePos = SEGMENT_HEADER_BYTES;
+
+        Segment(int slot, MappedByteBuffer map) {
+            this.slot = slot;
+            this.map = map;
+        }
+    }
+
+    private record Location(Segment segment, int offset, int length) {
+    }
+
+    // Heap tier. Access-ordered LinkedHashMap = LRU. Guarded by "heap".
+    private final long heapMaxBytes;
+    private final LinkedHashMap<String, byte[]> heap = new LinkedHashMap<>(16, 0.75f, true);
+    private long heapBytes;
+
+    // Disk tier. Empty array when off.
+    private final Path dir;
+    private final int segmentBytes;
+    private final Segment[] segments;
+    private final ConcurrentHashMap<String, Location> index = new ConcurrentHashMap<>();
+    private final Object appendLock = new Object();
+    private Segment active; // guarded by appendLock
+
+    private final AtomicLong heapHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stores = new AtomicLong();
+    private final AtomicLong heapEvictions = new AtomicLong();
+    private final AtomicLong diskEvictions = new AtomicLong();
+    private final AtomicLong skippedWrites = new AtomicLong();
+
+    /**
+     * @param dir          segment directory; null turns the disk tier off
+     * @param diskBytes    total size of the segment files (at least two segments are kept)
+     * @param segmentBytes size of one segment file; also the largest clip the disk tier can hold
+     */
+    TtsCache(long heapMaxBytes, Path dir, long diskBytes, int segmentBytes) throws IOException {
+        this.heapMaxBytes = Math.max(0, heapMaxBytes);
+        this.dir = dir;
+        this.segmentBytes = Math.max(SEGMENT_HEADER_BYTES + RECORD_HEADER_BYTES + 1, segmentBytes);
+        if (dir == null) {
+            this.segments = new Segment[0];
+            return;
+        }
+
+        Files.createDirectories(dir);
+        int count = (int) Math.max(2, Math.min(4096, diskBytes / this.segmentBytes));
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            Path file = dir.resolve(String.format("tts-%04d.seg", i));
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                // The mapping outlives the channel.
+                segments[i] = new Segment(i, ch.map(FileChannel.MapMode.READ_WRITE, 0, this.segmentBytes));
+            }
+        }
+        recover();
+    }
+
+    boolean isEnabled() {
+        return heapMaxBytes > 0 || segments.length > 0;
+    }
+
+    boolean isDiskEnabled() {
+        return segments.length > 0;
+    }
+
+    /** Cache key of one /v1/audio/speech call. */
+    static String key(SpeechBackend.TtsParams p) {
+        MessageDigest sha;
+        try {
+            sha = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        // Length-prefixed so no two parameter sets concatenate to the same bytes.
+        for (String part : new String[]{p.text(), p.voice(), p.model(), p.format(), Double.toString(p.speed()), p.instructions()}) {
+            byte[] b = (part == null ? "" : part).getBytes(StandardCharsets.UTF_8);
+            sha.update(ByteBuffer.allocate(4).putInt(0, b.length));
+            sha.update(b);
+        }
+        return HEX.formatHex(sha.digest());
+    }
+
+    /** The cached clip, or null on a miss. The caller must close a non-null Hit. */
+    Hit get(String key) {
+        if (!isEnabled()) return null;
+
+        if (heapMaxBytes > 0) {
+            byte[] audio;
+            synchronized (heap) {
+                audio = heap.get(key);
+            }
+            if (audio != null) {
+                heapHits.incrementAndGet();
+                return new Hit(ByteBuffer.wrap(audio).asReadOnlyBuffer(), null);
+            }
+        }
+
+        Location loc = index.get(key);
+        if (loc != null) {
+            Lock pin = loc.segment().pins.readLock();
+            pin.lock();
+            // The segment may have been reused between the lookup and the pin.
+            if (loc.equals(index.get(key))) {
+                diskHits.incrementAndGet();
+                return new Hit(loc.segment().map.slice(loc.offset(), loc.length()).asReadOnlyBuffer(), pin);
+            }
+            pin.unlock();
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /** Whether a clip is cached, without counting a hit or a miss. */
+    boolean contains(String key) {
+        if (!isEnabled()) return false;
+        if (heapMaxBytes > 0) {
+            synchronized (heap) {
+                if (heap.containsKey(key)) return true;
+            }
+        }
+        return index.containsKey(key);
+    }
+
+    /** Stores a freshly synthesized clip in both tiers. The array must not be modified afterwards. */
+    void put(String key, byte[] audio) {
+        if (!isEnabled() || audio == null || audio.length == 0) return;
+        stores.incrementAndGet();
+        putHeap(key, audio);
+        putDisk(key, audio);
+    }
+
+    private void putHeap(String key, byte[] audio) {
+        if (audio.length > heapMaxBytes) return;
+        synchronized (heap) {
+            byte[] old = heap.put(key, audio);
+            if (old != null) heapBytes -= old.length;
+            heapBytes += audio.length;
+            Iterator<Map.Entry<String, byte[]>> it = heap.entrySet().iterator();
+            while (heapBytes > heapMaxBytes && it.hasNext()) {
+                heapBytes -= it.next().getValue().length;
+                it.remove();
+                heapEvictions.incrementAndGet();
+            }
+        }
+    }
+
+    private void putDisk(String key, byte[] audio) {
+        int need = RECORD_HEADER_BYTES + audio.length;
+        if (segments.length == 0 || need > segmentBytes - SEGMENT_HEADER_BYTES) return;
+
+        synchronized (appendLock) {
+            if (index.containsKey(key)) return;
+
+            Segment s = active;
+            if (s.writePos + need > segmentBytes) {
+                s = reuseNext();
+                if (s == null) {
+                    skippedWrites.incrementAndGet();
+                    return;
+                }
+            }
+
+            int pos = s.writePos;
+            int next = pos + need;
+            CRC32 crc = new CRC32();
+            crc.update(audio);
+            MappedByteBuffer b = s.map;
+            if (next + 4 <= segmentBytes) b.putInt(next, 0); // end marker for the startup scan
+            b.put(pos + RECORD_HEADER_BYTES, audio);
+            b.put(pos + 4, HEX.parseHex(key));
+            b.putInt(pos + 4 + KEY_BYTES, (int) crc.getValue());
+            b.putInt(pos + 8 + KEY_BYTES, audio.length);
+            b.putInt(pos, RECORD_MAGIC); // last, so a torn write is never a valid record
+
+            s.writePos = next;
+            s.keys.add(key);
+            index.put(key, new Location(s, pos + RECORD_HEADER_BYTES, audio.length));
+        }
+    }
+
+    /** Drops the oldest segment's clips and makes it the active one. Null, at once, if a reader has it pinned. */
+    private Segment reuseNext() {
+        Segment s = segments[(active.slot + 1) % segments.length];
+        Lock w = s.pins.writeLock();
+        if (!w.tryLock()) return null;
+        try {
+            for (String k : s.keys) {
+                Location loc = index.get(k);
+                if (loc != null && loc.segment() == s && index.remove(k, loc)) diskEvictions.incrementAndGet();
+            }
+            s.keys.clear();
+            initSegment(s, active.generation + 1);
+        } finally {
+            w.unlock();
+        }
+        active = s;
+        return s;
+    }
+
+    private void initSegment(Segment s, long generation) {
+        s.map.putInt(SEGMENT_HEADER_BYTES, 0);
+        s.map.putInt(0, SEGMENT_MAGIC);
+        s.map.putInt(4, VERSION);
+        s.map.putInt(8, segmentBytes);
+        s.map.putInt(12, 0);
+        s.map.putLong(16, generation);
+        s.generation = generation;
+        s.writePos = SEGMENT_HEADER_BYTES;
+    }
+
+    // -------------------- Startup scan --------------------
+
+    /** Rebuilds the index from the segment files, oldest generation first so newer records win. */
+    private void recover() {
+        synchronized (appendLock) {
+            for (Segment s : segments) {
+                MappedByteBuffer b = s.map;
+                boolean valid = b.getInt(0) == SEGMENT_MAGIC && b.getInt(4) == VERSION && b.getInt(8) == segmentBytes;
+                s.generation = valid ? b.getLong(16) : 0;
+            }
+
+            Segment[] byAge = segments.clone();
+            Arrays.sort(byAge, Comparator.comparingLong(s -> s.generation));
+            for (Segment s : byAge) {
+                if (s.generation > 0) scan(s);
+            }
+
+            Segment newest = byAge[byAge.length - 1];
+            if (newest.generation > 0) {
+                active = newest;
+            } else {
+                active = segments[0];
+                initSegment(active, 1);
+            }
+        }
+    }
+
+    private void scan(Segment s) {
+        MappedByteBuffer b = s.map;
+        int pos = SEGMENT_HEADER_BYTES;
+        byte[] rawKey = new byte[KEY_BYTES];
+        while (pos + RECORD_HEADER_BYTES <= segmentBytes && b.getInt(pos) == RECORD_MAGIC) {
+            int crc = b.getInt(pos + 4 + KEY_BYTES);
+            int len = b.getInt(pos + 8 + KEY_BYTES);
+            int data = pos + RECORD_HEADER_BYTES;
+            if (len <= 0 || len > segmentBytes - data) break;
+
+            CRC32 c = new CRC32();
+            c.update(b.slice(data, len));
+            if ((int) c.getValue() != crc) break;
+
+            b.get(pos + 4, rawKey);
+            String key = HEX.formatHex(rawKey);
+            index.put(key, new Location(s, data, len));
+            s.keys.add(key);
+            pos = data + len;
+        }
+        s.writePos = pos;
+    }
+
+    // -------------------- Stats --------------------
+
+    ObjectNode statsJson(ObjectMapper mapper) {
+        long hh = heapHits.get();
+        long dh = diskHits.get();
+        long m = misses.get();
+        int heapEntries;
+        long heapUsed;
+        synchronized (heap) {
+            heapEntries = heap.size();
+            heapUsed = heapBytes;
+        }
+        long diskUsed = 0;
+        synchronized (appendLock) {
+            for (Segment s : segments) {
+                if (s.generation > 0) diskUsed += s.writePos;
+            }
+        }
+        return mapper.createObjectNode()
+                .put("enabled", isEnabled())
+                .put("heapEntries", heapEntries)
+                .put("heapBytes", heapUsed)
+                .put("heapMaxBytes", heapMaxBytes)
+                .put("diskEnabled", isDiskEnabled())
+                .put("diskDir", dir == null ? "" : dir.toString())
+                .put("diskEntries", index.size())
+                .put("diskBytes", diskUsed)
+                .put("diskMaxBytes", (long) segments.length * segmentBytes)
+                .put("hits", hh + dh)
+                .put("heapHits", hh)
+                .put("diskHits", dh)
+                .put("misses", m)
+                .put("hitRatio", (hh + dh + m) == 0 ? 0.0 : (double) (hh + dh) / (hh + dh + m))
+                .put("stores", stores.get())
+                .put("heapEvictions", heapEvictions.get())
+                .put("diskEvictions", diskEvictions.get())
+                .put("skippedWrites", skippedWrites.get());
+    }
+}
@@ -0,0 +1,235 @@
+package local.meettranslator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Speculative TTS: speech for a translation is synthesized while the answer with that translation
+ * is still on its way to the client, so the client's follow-up /tts usually finds it ready.
+ *
+ * start() hands out an id and synthesizes in the background; /tts with that id claims the clip (waiting
+ * for it if it is not done yet). Clips nobody claims are bounded three ways:
+ *  - at most maxClips at a time (pending or ready); start() refuses more
+ *  - ready clips hold at most maxBytes together; the oldest ready ones are dropped first
+ *  - after ttlMs an unclaimed clip is dropped, and its synthesis cancelled if it is still running
+ * A client can also drop a clip it will not play (/tts/cancel).
+ */
+final class TtsPrefetch {
+
+    interface Synthesizer {
+        byte[] synthesize(SpeechBackend.TtsParams p) throws IOException;
+    }
+
+    record Config(long ttlMs, long maxBytes, int maxClips) {
+    }
+
+    private static final class Entry {
+        final String id;
+        final String cacheKey;
+        final long createdMillis;
+        Future<byte[]> future;
+        long bytes = -1; // size once ready, -1 while pending; guarded by TtsPrefetch.this
+
+        Entry(String id, String cacheKey, long createdMillis) {
+            this.id = id;
+            this.cacheKey = cacheKey;
+            this.createdMillis = createdMillis;
+        }
+    }
+
+    private final Config config;
+    private final ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor();
+    private final SecureRandom random = new SecureRandom();
+
+    // Oldest first; guarded by "this".
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+    private long storedBytes;
+
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong claimedPending = new AtomicLong();
+    private final AtomicLong missed = new AtomicLong();
+    private final AtomicLong mismatched = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+
+    TtsPrefetch(Config config) {
+        this.config = config;
+        if (isEnabled()) {
+            ScheduledExecutorService reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "tts-prefetch-reaper");
+                t.setDaemon(true);
+                return t;
+            });
+            long every = Math.max(100, config.ttlMs() / 4);
+            reaper.scheduleWithFixedDelay(this::expire, every, every, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    boolean isEnabled() {
+        return config.ttlMs() > 0 && config.maxClips() > 0 && config.maxBytes() > 0;
+    }
+
+    /** Starts synthesizing p in the background; returns its id, or null if disabled or full. */
+    String start(SpeechBackend.TtsParams p, String cacheKey, Synthesizer synth) {
+        if (!isEnabled() || p.text().isBlank()) return null;
+        Entry e;
+        synchronized (this) {
+            if (entries.size() >= config.maxClips()) {
+                rejected.incrementAndGet();
+                return null;
+            }
+            e = new Entry(newId(), cacheKey, System.currentTimeMillis());
+            entries.put(e.id, e);
+            // Submitted under the lock so a claim or cancel never sees an entry without its future.
+            e.future = pool.submit(() -> {
+                byte[] audio = synth.synthesize(p);
+                ready(e, audio.length);
+                return audio;
+            });
+        }
+        started.incrementAndGet();
+        return e.id;
+    }
+
+    /**
+     * Takes the clip with this id, waiting for its synthesis if needed. Returns null when the caller has
+     * to synthesize itself: unknown or dropped id, other TTS settings (cacheKey differs), or a failed
+     * synthesis. A prefetch dropped by the scheduler is rethrown, so the caller answers "stale" as usual.
+     */
+    byte[] claim(String id, String cacheKey) throws IOException {
+        Entry e = take(id);
+        if (e == null) {
+            missed.incrementAndGet();
+            return null;
+        }
+        if (!e.cacheKey.equals(cacheKey)) {
+            e.future.cancel(true);
+            mismatched.incrementAndGet();
+            return null;
+        }
+        if (!e.future.isDone()) claimedPending.incrementAndGet();
+        try {
+            byte[] audio = e.future.get();
+            claimed.incrementAndGet();
+            return audio;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for prefetched TTS", ie);
+        } catch (CancellationException ce) {
+            missed.incrementAndGet();
+            return null;
+        } catch (ExecutionException ee) {
+            if (ee.getCause() instanceof DeadlineScheduler.StaleException se) throw se;
+            failed.incrementAndGet();
+            return null;
+        }
+    }
+
+    /** Drops a clip the client will not play; true if it was still there. */
+    boolean cancel(String id) {
+        Entry e = take(id);
+        if (e == null) return false;
+        e.future.cancel(true);
+        cancelled.incrementAndGet();
+        return true;
+    }
+
+    private synchronized Entry take(String id) {
+        Entry e = id == null ? null : entries.remove(id);
+        if (e != null && e.bytes >= 0) storedBytes -= e.bytes;
+        return e;
+    }
+
+    /** Counts a finished clip against maxBytes; the oldest ready clips make room (this one too, if it alone is too big). */
+    private void ready(Entry e, long bytes) {
+        int dropped = 0;
+        synchronized (this) {
+            if (entries.get(e.id) != e) return; // claimed or dropped meanwhile
+            e.bytes = bytes;
+            storedBytes += bytes;
+            Iterator<Entry> it = entries.values().iterator();
+            while (storedBytes > config.maxBytes() && it.hasNext()) {
+                Entry old = it.next();
+                if (old.bytes < 0) continue;
+                it.remove();
+                storedBytes -= old.bytes;
+                dropped++;
+            }
+        }
+        evicted.addAndGet(dropped);
+    }
+
+    private void expire() {
+        long cutoff = System.currentTimeMillis() - config.ttlMs();
+        List<Entry> dropped = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                Entry e = it.next();
+                if (e.createdMillis > cutoff) break; // oldest first
+                it.remove();
+                if (e.bytes >= 0) storedBytes -= e.bytes;
+                dropped.add(e);
+            }
+        }
+        // Interrupting a running synthesis aborts its upstream request.
+        for (Entry e : dropped) e.future.cancel(true);
+        expired.addAndGet(dropped.size());
+    }
+
+    private String newId() {
+        final String alphabet = "abcdefghijklmnopqrstuvwxyz0123456789";
+        StringBuilder sb = new StringBuilder(20);
+        for (int i = 0; i < 20; i++) sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        return sb.toString();
+    }
+
+    ObjectNode statsJson(ObjectMapper mapper) {
+        int pending = 0;
+        int ready = 0;
+        long bytes;
+        synchronized (this) {
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                if (e.getValue().bytes < 0) pending++;
+                else ready++;
+            }
+            bytes = storedBytes;
+        }
+        return mapper.createObjectNode()
+                .put("enabled", isEnabled())
+                .put("pending", pending)
+                .put("ready", ready)
+                .put("storedBytes", bytes)
+                .put("maxBytes", config.maxBytes())
+                .put("started", started.get())
+                .put("claimed", claimed.get())
+                .put("claimedPending", claimedPending.get())
+                .put("missed", missed.get())
+                .put("mismatched", mismatched.get())
+                .put("failed", failed.get())
+                .put("rejected", rejected.get())
+                .put("expired", expired.get())
+                .put("evicted", evicted.get())
+                .put("cancelled", cancelled.get());
+    }
+}
@@ -0,0 +1,373 @@
+package local.meettranslator;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resilience around one kind of upstream call (transcribe, translate, tts).
+ *
+ *  - Latency budget: the request timeout is a multiple of the recent p95 of successful calls,
+ *    between minBudgetMs and the fixed timeout the call had before (maxBudgetMs). Until enough
+ *    calls were seen, the fixed timeout applies.
+ *  - Retries: 408, 409, 429, 5xx and transport errors (including the budget timeout) are retried
+ *    up to maxRetries times with full-jitter exponential backoff. Retry-After / retry-after-ms is
+ *    honored; a retry that would wait longer than maxBackoffMs, or end past maxBudgetMs from the
+ *    start, is not made and the last answer goes back to the caller. Bodies that cannot be replayed
+ *    (a streamed request body) are never retried.
+ *  - Hedging (optional): if an attempt has not answered after the recent p95, an identical second
+ *    request is sent and the first 2xx wins; the other one is cancelled.
+ *  - Circuit breaker: after breakerFailures failed attempts in a row, calls fail fast with
+ *    CircuitOpenException for breakerOpenMs. Then one probe call is let through (no retries);
+ *    its success closes the breaker, its failure opens it again.
+ *
+ * 4xx answers other than the retryable ones count as a healthy upstream: the request was wrong.
+ */
+final class UpstreamGuard {
+
+    /**
+     * @param maxRetries       retries after the first attempt (0 = none)
+     * @param backoffMs        base of the exponential backoff
+     * @param maxBackoffMs     longest wait before a retry, Retry-After included
+     * @param budgetFactor     timeout = p95 * budgetFactor
+     * @param minBudgetMs      shortest timeout the budget may shrink to
+     * @param breakerFailures  failed attempts in a row that open the breaker (0 = never)
+     * @param breakerOpenMs    how long an open breaker fails fast before letting a probe through
+     * @param hedge            send a hedged second request after p95 (only used for idempotent calls)
+     */
+    record Config(int maxRetries, long backoffMs, long maxBackoffMs, double budgetFactor, long minBudgetMs,
+                  int breakerFailures, long breakerOpenMs, boolean hedge) {
+    }
+
+    /** The breaker is open: the upstream was not called. */
+    static final class CircuitOpenException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final long retryAfterMillis;
+
+        CircuitOpenException(String upstream, long retryAfterMillis) {
+            super(upstream + " is failing; not called for another " + retryAfterMillis + " ms");
+            this.retryAfterMillis = retryAfterMillis;
+        }
+
+        long retryAfterMillis() {
+            return retryAfterMillis;
+        }
+    }
+
+    private static final int SAMPLES = 128;
+    private static final int MIN_SAMPLES = 20;
+
+    private final String upstream;
+    private final Config config;
+    private final long maxBudgetMs;
+    private final boolean hedge;
+
+    // Ring of recent successful latencies (ms). Guarded by "this".
+    private final long[] samples = new long[SAMPLES];
+    private int sampleCount;
+    private int sampleNext;
+
+    // Breaker state. Guarded by "this".
+    private int consecutiveFailures;
+    private long openUntilMillis;
+    private boolean probing;
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong opened = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * @param backend     the backend's name, for error messages
+     * @param op          the call, e.g. "translate"
+     * @param maxBudgetMs the call's fixed timeout; also caps the time spent on retries
+     * @param hedge       whether this call may be hedged (config.hedge() must be on as well)
+     */
+    UpstreamGuard(String backend, String op, Config config, long maxBudgetMs, boolean hedge) {
+        this.upstream = backend + " " + op;
+        this.config = config;
+        this.maxBudgetMs = maxBudgetMs;
+        this.hedge = hedge && config.hedge();
+    }
+
+    /**
+     * Sends request (its own timeout is replaced by the budget) and returns the first 2xx answer,
+     * or the last answer or error once retrying is not possible or not worth it.
+     *
+     * @param replayable whether the request body can be sent again
+     */
+    <T> HttpResponse<T> send(HttpClient http, HttpRequest request, HttpResponse.BodyHandler<T> handler, boolean replayable)
+            throws IOException {
+        boolean probe = admit();
+        try {
+            return attempts(http, request, handler, replayable, probe);
+        } finally {
+            // A probe that ended without an answer or an IOException (interrupt, RuntimeException) must
+            // not leave the breaker waiting for it forever: the next call probes again.
+            if (probe) endProbe();
+        }
+    }
+
+    private <T> HttpResponse<T> attempts(HttpClient http, HttpRequest request, HttpResponse.BodyHandler<T> handler,
+                                         boolean replayable, boolean probe) throws IOException {
+        calls.incrementAndGet();
+        long start = System.nanoTime();
+        for (int attempt = 0; ; attempt++) {
+            long budget = budgetMillis();
+            HttpRequest timed = HttpRequest.newBuilder(request, (name, value) -> true)
+                    .timeout(Duration.ofMillis(budget))
+                    .build();
+            boolean more = replayable && !probe && attempt < config.maxRetries();
+
+            long attemptStart = System.nanoTime();
+            HttpResponse<T> resp;
+            try {
+                resp = hedge && attempt == 0 && !probe && hasSamples()
+                        ? hedged(http, timed, handler, percentile(0.95))
+                        : http.send(timed, handler);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new IOException(upstream + " interrupted", ie);
+            } catch (IOException e) {
+                if (e instanceof HttpTimeoutException) timeouts.incrementAndGet();
+                onFailure();
+                long wait = backoffMillis(attempt);
+                if (!more || isOpen() || !fits(start, wait)) throw e;
+                retries.incrementAndGet();
+                pause(wait);
+                continue;
+            }
+
+            int status = resp.statusCode();
+            if (!isRetryable(status)) {
+                onSuccess(status / 100 == 2 ? (System.nanoTime() - attemptStart) / 1_000_000 : -1);
+                return resp;
+            }
+            onFailure();
+            long retryAfter = retryAfterMillis(resp);
+            long wait = Math.max(backoffMillis(attempt), retryAfter);
+            if (!more || isOpen() || wait > config.maxBackoffMs() || !fits(start, wait)) return resp;
+            discard(resp);
+            retries.incrementAndGet();
+            pause(wait);
+        }
+    }
+
+    static boolean isRetryable(int status) {
+        return status == 408 || status == 409 || status == 429 || status / 100 == 5;
+    }
+
+    // -------------------- Hedging --------------------
+
+    /** First 2xx of two identical requests, the second sent after delayMs; the first one's outcome if neither is 2xx. */
+    private <T> HttpResponse<T> hedged(HttpClient http, HttpRequest request, HttpResponse.BodyHandler<T> handler, long delayMs)
+            throws IOException, InterruptedException {
+        CompletableFuture<HttpResponse<T>> first = http.sendAsync(request, handler);
+        try {
+            return first.get(delayMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException slow) {
+            // fall through: hedge
+        } catch (ExecutionException ee) {
+            throw unwrap(ee);
+        }
+
+        hedges.incrementAndGet();
+        CompletableFuture<HttpResponse<T>> second = http.sendAsync(request, handler);
+        CompletableFuture<HttpResponse<T>> winner = new CompletableFuture<>();
+        AtomicInteger failed = new AtomicInteger();
+        for (CompletableFuture<HttpResponse<T>> f : List.of(first, second)) {
+            f.whenComplete((r, e) -> {
+                if (e == null && r.statusCode() / 100 == 2) {
+                    winner.complete(r);
+                } else if (failed.incrementAndGet() == 2) {
+                    first.whenComplete((r1, e1) -> {
+                        if (e1 != null) winner.completeExceptionally(e1);
+                        else winner.complete(r1);
+                    });
+                }
+            });
+        }
+        try {
+            HttpResponse<T> r = winner.get();
+            if (second.isDone() && !second.isCompletedExceptionally() && second.getNow(null) == r) hedgeWins.incrementAndGet();
+            return r;
+        } catch (ExecutionException ee) {
+            throw unwrap(ee);
+        } finally {
+            first.cancel(true);
+            second.cancel(true);
+        }
+    }
+
+    private static IOException unwrap(ExecutionException ee) {
+        Throwable cause = ee.getCause();
+        if (cause instanceof IOException io) return io;
+        return new IOException(cause);
+    }
+
+    // -------------------- Breaker --------------------
+
+    /** Lets a call through (true if it is the half-open probe) or throws CircuitOpenException. */
+    private synchronized boolean admit() throws CircuitOpenException {
+        if (openUntilMillis == 0) return false;
+        long now = System.currentTimeMillis();
+        if (now < openUntilMillis || probing) {
+            rejected.incrementAndGet();
+            throw new CircuitOpenException(upstream, Math.max(0, openUntilMillis - now));
+        }
+        probing = true;
+        return true;
+    }
+
+    private synchronized void endProbe() {
+        probing = false;
+    }
+
+    private synchronized boolean isOpen() {
+        return openUntilMillis != 0;
+    }
+
+    /** latencyMs < 0: an answer that says nothing about latency (a non-retryable error status). */
+    private synchronized void onSuccess(long latencyMs) {
+        consecutiveFailures = 0;
+        openUntilMillis = 0;
+        probing = false;
+        if (latencyMs >= 0) {
+            samples[sampleNext] = latencyMs;
+            sampleNext = (sampleNext + 1) % SAMPLES;
+            if (sampleCount < SAMPLES) sampleCount++;
+        }
+    }
+
+    private synchronized void onFailure() {
+        consecutiveFailures++;
+        boolean trip = probing || (config.breakerFailures() > 0 && consecutiveFailures >= config.breakerFailures());
+        if (trip && (openUntilMillis == 0 || probing)) {
+            openUntilMillis = System.currentTimeMillis() + config.breakerOpenMs();
+            opened.incrementAndGet();
+        }
+        probing = false;
+    }
+
+    // -------------------- Budget --------------------
+
+    private synchronized boolean hasSamples() {
+        return sampleCount >= MIN_SAMPLES;
+    }
+
+    private synchronized long percentile(double q) {
+        long[] sorted = Arrays.copyOf(samples, sampleCount);
+        Arrays.sort(sorted);
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(q * sorted.length) - 1)];
+    }
+
+    /** Timeout for the next attempt: p95 * budgetFactor within [minBudgetMs, maxBudgetMs]. */
+    long budgetMillis() {
+        if (!hasSamples()) return maxBudgetMs;
+        long budget = (long) (percentile(0.95) * config.budgetFactor());
+        return Math.max(Math.min(config.minBudgetMs(), maxBudgetMs), Math.min(maxBudgetMs, budget));
+    }
+
+    private boolean fits(long startNanos, long waitMs) {
+        return (System.nanoTime() - startNanos) / 1_000_000 + waitMs < maxBudgetMs;
+    }
+
+    private long backoffMillis(int attempt) {
+        long cap = Math.min(config.maxBackoffMs(), config.backoffMs() << Math.min(attempt, 20));
+        return cap <= 0 ? 0 : ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    /** retry-after-ms (OpenAI), else Retry-After in seconds or as an HTTP date; 0 if absent. */
+    static long retryAfterMillis(HttpResponse<?> resp) {
+        var headers = resp.headers();
+        var ms = headers.firstValue("retry-after-ms");
+        if (ms.isPresent()) {
+            try {
+                return Math.max(0, (long) Double.parseDouble(ms.get().trim()));
+            } catch (NumberFormatException ignore) {
+                // try Retry-After
+            }
+        }
+        var after = headers.firstValue("retry-after");
+        if (after.isEmpty()) return 0;
+        String v = after.get().trim();
+        try {
+            return Math.max(0, (long) (Double.parseDouble(v) * 1000));
+        } catch (NumberFormatException notSeconds) {
+            try {
+                long at = ZonedDateTime.parse(v, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+                return Math.max(0, at - System.currentTimeMillis());
+            } catch (DateTimeParseException notDate) {
+                return 0;
+            }
+        }
+    }
+
+    private void pause(long ms) throws IOException {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IOException(upstream + " interrupted", ie);
+        }
+    }
+
+    /** Releases the connection of an answer that is retried instead of returned. */
+    private static void discard(HttpResponse<?> resp) {
+        if (resp.body() instanceof InputStream in) {
+            try {
+                in.close();
+            } catch (IOException ignore) {
+                // ignore
+            }
+        }
+    }
+
+    // -------------------- Stats --------------------
+
+    ObjectNode statsJson(ObjectMapper mapper) {
+        boolean open;
+        int failures;
+        boolean enough;
+        synchronized (this) {
+            open = openUntilMillis != 0;
+            failures = consecutiveFailures;
+            enough = sampleCount >= MIN_SAMPLES;
+        }
+        return mapper.createObjectNode()
+                .put("calls", calls.get())
+                .put("retries", retries.get())
+                .put("hedges", hedges.get())
+                .put("hedgeWins", hedgeWins.get())
+                .put("timeouts", timeouts.get())
+                .put("breakerOpen", open)
+                .put("breakerOpened", opened.get())
+                .put("rejected", rejected.get())
+                .put("consecutiveFailures", failures)
+                .put("p95Ms", enough ? percentile(0.95) : 0)
+                .put("budgetMs", budgetMillis());
+    }
+}
@@ -0,0 +1,52 @@
+package local.meettranslator;
+
+/**
+ * Canonical 44-byte WAV (RIFF, PCM) header, for PCM the bridge assembles itself.
+ */
+final class Wav {
+
+    static final int HEADER_BYTES = 44;
+
+    private Wav() {
+    }
+
+    /** Allocates header + dataLen bytes with the header filled in; PCM goes at offset HEADER_BYTES. */
+    static byte[] allocate(int dataLen, int sampleRate, int channels, int bitsPerSample) {
+        byte[] out = new byte[HEADER_BYTES + dataLen];
+        writeHeader(out, dataLen, sampleRate, channels, bitsPerSample);
+        return out;
+    }
+
+    static void writeHeader(byte[] b, int dataLen, int sampleRate, int channels, int bitsPerSample) {
+        int blockAlign = channels * bitsPerSample / 8;
+        ascii(b, 0, "RIFF");
+        le32(b, 4, 36 + dataLen);
+        ascii(b, 8, "WAVE");
+        ascii(b, 12, "fmt ");
+        le32(b, 16, 16);
+        le16(b, 20, 1); // PCM
+        le16(b, 22, channels);
+        le32(b, 24, sampleRate);
+        le32(b, 28, sampleRate * blockAlign);
+        le16(b, 32, blockAlign);
+        le16(b, 34, bitsPerSample);
+        ascii(b, 36, "data");
+        le32(b, 40, dataLen);
+    }
+
+    private static void ascii(byte[] b, int p, String s) {
+        for (int i = 0; i < s.length(); i++) b[p + i] = (byte) s.charAt(i);
+    }
+
+    private static void le16(byte[] b, int p, int v) {
+        b[p] = (byte) v;
+        b[p + 1] = (byte) (v >>> 8);
+    }
+
+    private static void le32(byte[] b, int p, int v) {
+        b[p] = (byte) v;
+        b[p + 1] = (byte) (v >>> 8);
+        b[p + 2] = (byte) (v >>> 16);
+        b[p + 3] = (byte) (v >>> 24);
+    }
+}
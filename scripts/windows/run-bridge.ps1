@@ -56,8 +56,8 @@ Push-Location $BridgeDir
 # Build with Maven if available (optional). The bridge can also run from an existing jar in target/.
 $mvn = Get-Command mvn -ErrorAction SilentlyContinue
 if ($mvn) {
-  Write-Host "Building (Maven)..."
-  & mvn -q -DskipTests package
+  Write-Host "Building (Maven, with the AppCDS startup archive)..."
+  & mvn -q -Pcds -DskipTests package
 } else {
   Write-Host "Maven (mvn) not found in PATH. Will try to run a prebuilt jar from target/."
 }
@@ -83,11 +83,16 @@ if (-not $Jar) {
 Install Maven and run: mvn -DskipTests package"
 }
 
+# Class data sharing archive: built by mvn -Pcds; if it is missing or stale (jar rebuilt without -Pcds),
+# the JVM writes a fresh one when this run exits, and the next start uses it.
+$Jsa = Join-Path $TargetDir "local-meet-bridge.jsa"
+
 Write-Host "Running bridge (java -jar)..."
 Write-Host ("  JAR:  {0}" -f $Jar.FullName)
+Write-Host ("  CDS:  {0}" -f $Jsa)
 Write-Host "Press Ctrl+C to stop."
 Write-Host ""
 
-& java -jar $Jar.FullName
+& java "-XX:SharedArchiveFile=$Jsa" -XX:+AutoCreateSharedArchive -Xlog:cds=off -Xlog:cds+dynamic=off -jar $Jar.FullName
 
 Pop-Location